@@ -0,0 +1,337 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+
+import ca.team2994.frc.utils.Clock;
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Checks that the control loops allocate nothing per tick once they are
+ * warmed up, so a change that brings allocation back is caught before a GC
+ * pause lands in the middle of a match. Each loop runs against a
+ * {@link SimDriveIO} that reads the allocation counter of the thread on every
+ * update, so only the loop body between updates is measured, not the setup
+ * and summary of each drive or turn. Waypoint logging is driven by a script
+ * that presses the drive and turn buttons in turn, and the autonomous
+ * scheduler runs alloc.routine, or a short routine of its own if that is not
+ * set. Run it with:
+ *
+ * <pre>
+ * java ca.team2994.frc.autonomous.AllocationCheck [drive.properties]
+ * </pre>
+ *
+ * It exits with status 1 if any loop allocates more than
+ * alloc.maxBytesPerTick bytes per tick.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class AllocationCheck {
+
+	/**
+	 * A simulated robot that measures the allocation between its updates
+	 */
+	private class MeteredIO extends SimDriveIO {
+
+		/*
+		 * The current measurement
+		 */
+		private long updates;
+		private long first;
+		private long last;
+
+		/*
+		 * The motions measured before the current one
+		 */
+		private long bytes;
+		private long ticks;
+
+		/**
+		 * The updates between scripted button presses, or 0 for none
+		 */
+		private int pressEvery;
+
+		MeteredIO(DrivetrainModel model) {
+			super(model, 0);
+		}
+
+		/**
+		 * Start measuring a run of the loop
+		 */
+		void reset() {
+			updates = 0;
+			bytes = 0;
+			ticks = 0;
+		}
+
+		/**
+		 * End the current measurement and start another with the next
+		 * update, so what runs between the two is not measured
+		 */
+		void endMotion() {
+			if (updates > 2) {
+				bytes += last - first;
+				ticks += updates - 2;
+			}
+			updates = 0;
+		}
+
+		/**
+		 * Hold the stick forward and press the drive and turn buttons in
+		 * turn, each for one update
+		 *
+		 * @param ticks
+		 *            The updates between presses, or 0 to let go of both
+		 */
+		void setPressEvery(int ticks) {
+			pressEvery = ticks;
+			stickY = ticks > 0 ? -0.5 : 0;
+			buttons = 0;
+		}
+
+		@Override
+		public void update() {
+			super.update();
+			if (pressEvery > 0) {
+				long press = updates / pressEvery;
+				buttons = updates % pressEvery == 0 ? (press % 2 == 0 ? 1 : 2)
+						: 0;
+			}
+			long now = allocatedBytes();
+			if (++updates == 2) {
+				// The first update comes before the loop starts
+				first = now;
+			}
+			last = now;
+		}
+
+		/**
+		 *
+		 * @return The bytes allocated per tick since the second update of
+		 *         each measurement, less what measuring allocates
+		 */
+		double getBytesPerTick() {
+			endMotion();
+			if (ticks <= 0) {
+				return 0;
+			}
+			return Math.max(0, (double) bytes / ticks - overhead);
+		}
+	}
+
+	/**
+	 * The allocation counters of the JVM's threads
+	 */
+	private final com.sun.management.ThreadMXBean threads;
+
+	/**
+	 * The bytes reading the allocation counter allocates by itself
+	 */
+	private final long overhead;
+
+	/**
+	 * The robot the loops drive
+	 */
+	private final MeteredIO io;
+
+	/**
+	 * The manager whose loops are checked
+	 */
+	private final DriveManagerImpl drive;
+
+	/**
+	 * The routine the scheduler is checked with
+	 */
+	private final AutoMode routine;
+
+	/**
+	 * The routine run when alloc.routine is not set
+	 */
+	private static final String DEFAULT_ROUTINE = "0, drive, 5\n"
+			+ "1500, turn, 90\n" + "3000, drive, -5\n" + "4500, turn, -90\n";
+
+	/**
+	 * The rounds run before measuring, so the loops are compiled
+	 */
+	private final int warmupRounds;
+
+	/**
+	 * The rounds measured
+	 */
+	private final int rounds;
+
+	/**
+	 * The most bytes a tick may allocate
+	 */
+	private final double maxBytesPerTick;
+
+	/**
+	 * Initialize a check from the "alloc." keys of a configuration file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 * @throws IOException
+	 *             If the routine cannot be read
+	 */
+	public AllocationCheck(ConfigFile conf) throws IOException {
+		this.threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		this.threads.setThreadAllocatedMemoryEnabled(true);
+		long start = allocatedBytes();
+		long end = allocatedBytes();
+		this.overhead = end - start;
+
+		DrivetrainModel model = new DrivetrainModel(conf);
+		this.io = new MeteredIO(model);
+		// Use the robot's constants, without a trim to learn or write
+		this.drive = new DriveManagerImpl(new SimDriveIO(model.copy(), 0),
+				conf).simulated(io);
+		this.warmupRounds = conf.getPropertyAsInteger("alloc.warmupRounds", 100);
+		this.rounds = conf.getPropertyAsInteger("alloc.rounds", 5);
+		this.maxBytesPerTick = conf.getPropertyAsDouble(
+				"alloc.maxBytesPerTick", 0.0);
+
+		String filename = conf.getProperty("alloc.routine", null);
+		if (filename == null) {
+			File file = File.createTempFile("alloc", ".txt");
+			file.deleteOnExit();
+			Files.write(DEFAULT_ROUTINE, file, Charsets.UTF_8);
+			filename = file.getPath();
+		}
+		// The scheduler reads the clock between waypoints, so each drive or
+		// turn is measured on its own, as driveStraight and driveTurn are
+		Clock clock = new Clock() {
+			@Override
+			public long nanoTime() {
+				io.endMotion();
+				return io.nanoTime();
+			}
+
+			@Override
+			public void sleep(long millis) {
+				io.sleep(millis);
+			}
+		};
+		this.routine = AutoMode.load("Allocation check", filename, drive,
+				clock, conf);
+	}
+
+	/**
+	 * Check every loop
+	 *
+	 * @return Whether every loop stayed within the limit
+	 */
+	public boolean run() {
+		boolean passed = true;
+		passed &= check("driveStraight", new Runnable() {
+			@Override
+			public void run() {
+				drive.driveStraight(10);
+			}
+		}, DriveIO.ENABLED | DriveIO.AUTONOMOUS);
+		passed &= check("driveTurn", new Runnable() {
+			@Override
+			public void run() {
+				drive.driveTurn(180);
+			}
+		}, DriveIO.ENABLED | DriveIO.AUTONOMOUS);
+		passed &= check("teleop", new Runnable() {
+			@Override
+			public void run() {
+				drive.runTeleOP();
+			}
+		}, DriveIO.ENABLED | DriveIO.OPERATOR_CONTROL);
+		passed &= check("waypointLogging", new Runnable() {
+			@Override
+			public void run() {
+				io.setPressEvery(500);
+				drive.runTeleOPLogging();
+				io.setPressEvery(0);
+			}
+		}, DriveIO.ENABLED | DriveIO.OPERATOR_CONTROL);
+		passed &= check("autonomous", new Runnable() {
+			@Override
+			public void run() {
+				routine.runScheduler();
+			}
+		}, DriveIO.ENABLED | DriveIO.AUTONOMOUS);
+		return passed;
+	}
+
+	/**
+	 * Warm up and measure one loop
+	 *
+	 * @param name
+	 *            The name of the loop
+	 * @param loop
+	 *            Runs the loop once
+	 * @param flags
+	 *            The robot state the loop runs in
+	 * @return Whether the loop stayed within the limit
+	 */
+	private boolean check(String name, Runnable loop, int flags) {
+		for (int i = 0; i < warmupRounds; i++) {
+			runOnce(loop, flags);
+		}
+		double worst = 0;
+		for (int i = 0; i < rounds; i++) {
+			worst = Math.max(worst, runOnce(loop, flags));
+		}
+
+		boolean passed = worst <= maxBytesPerTick;
+		System.out.println((passed ? "ok   " : "FAIL ") + name + ": " + worst
+				+ " bytes per tick");
+		return passed;
+	}
+
+	/**
+	 * Run a loop once, ending it after a while if it doesn't end itself
+	 *
+	 * @return The bytes it allocated per tick
+	 */
+	private double runOnce(Runnable loop, int flags) {
+		io.setFlags(flags);
+		io.setTickLimit(2000);
+		io.reset();
+		loop.run();
+		return io.getBytesPerTick();
+	}
+
+	/**
+	 *
+	 * @return The bytes the current thread has allocated
+	 */
+	private long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Check the loops and exit with status 1 if any allocates
+	 *
+	 * @param args
+	 *            Optionally, the configuration file to use
+	 * @throws IOException
+	 *             If the routine cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		ConfigFile conf = args.length > 0 ? new ConfigFile(args[0])
+				: new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		FlightEvents.configure(conf);
+		AllocationCheck check = new AllocationCheck(conf);
+
+		// Every drive and turn logs a summary, which is not what is measured
+		Utils.ROBOT_LOGGER.setLevel(Level.WARNING);
+
+		if (!check.run()) {
+			System.exit(1);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package ca.team2994.frc.autonomous;
 
+import static java.util.logging.Level.WARNING;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -8,6 +10,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.function.Consumer;
 
+import ca.team2994.frc.utils.Clock;
+import ca.team2994.frc.utils.ConfigFile;
 import ca.team2994.frc.utils.Utils;
 
 import com.google.common.base.Charsets;
@@ -36,7 +40,6 @@ public class AutoMode {
 	/**
 	 * The name of the autonomous routine
 	 */
-	@SuppressWarnings("unused")
 	private String name;
 
 	/**
@@ -45,9 +48,24 @@ public class AutoMode {
 	private List<Waypoint> waypoints;
 
 	/**
-	 * The start time of this object
+	 * The clock to schedule waypoints with
+	 */
+	private Clock clock;
+
+	/**
+	 * The drive configuration file
+	 */
+	private ConfigFile conf;
+
+	/**
+	 * The time the scheduler started, in milliseconds
+	 */
+	public long startTime;
+
+	/**
+	 * The modification time and length of the file when it was loaded
 	 */
-	public final long startTime = System.currentTimeMillis();
+	private final long fileModified, fileLength;
 
 	/**
 	 * Initialize a AutoMode object and read from the autonomous waypoints file
@@ -65,11 +83,123 @@ public class AutoMode {
 	 */
 	public AutoMode(String name, String filename, DriveManager drive)
 			throws IOException {
+		this(name, filename, drive, Clock.SYSTEM, new ConfigFile(
+				ConfigFile.DEFAULT_CONFIGURATION_FILE));
+	}
+
+	/**
+	 * Initialize a AutoMode object that schedules its waypoints with the
+	 * given clock and configuration, and read from the autonomous waypoints
+	 * file specified by filename.
+	 * 
+	 * @param name
+	 *            The human-readable name of this autonomous mode.
+	 * @param filename
+	 *            The filename containing waypoints.
+	 * @param drive
+	 *            The drive manager for the robot.
+	 * @param clock
+	 *            The clock to schedule waypoints with.
+	 * @param conf
+	 *            The drive configuration file.
+	 * @throws IOException
+	 *             If the waypoints file doesn't exist or cannot be read.
+	 */
+	public AutoMode(String name, String filename, DriveManager drive,
+			Clock clock, ConfigFile conf) throws IOException {
+		this(name, filename, drive, clock, conf, true);
+	}
+
+	/**
+	 * Initialize a AutoMode object and read its waypoints, running them only
+	 * if asked to
+	 */
+	private AutoMode(String name, String filename, DriveManager drive,
+			Clock clock, ConfigFile conf, boolean run) throws IOException {
+		this.clock = clock;
+		this.conf = conf;
+		this.startTime = clock.nanoTime() / 1000000;
 		this.name = name;
 		this.filename = filename;
 		this.drive = drive;
 		this.waypoints = new ArrayList<>();
+		File file = new File(filename);
+		this.fileModified = file.lastModified();
+		this.fileLength = file.length();
 		this.loadWaypoints();
+		if (run) {
+			runScheduler();
+		}
+	}
+
+	/**
+	 * Read the autonomous waypoints file without running it, so the routine
+	 * can be loaded ahead of time and started later with
+	 * {@link #runScheduler()}.
+	 * 
+	 * @param name
+	 *            The human-readable name of this autonomous mode.
+	 * @param filename
+	 *            The filename containing waypoints.
+	 * @param drive
+	 *            The drive manager for the robot.
+	 * @param clock
+	 *            The clock to schedule waypoints with.
+	 * @param conf
+	 *            The drive configuration file.
+	 * @return The loaded autonomous mode
+	 * @throws IOException
+	 *             If the waypoints file doesn't exist or cannot be read.
+	 */
+	public static AutoMode load(String name, String filename,
+			DriveManager drive, Clock clock, ConfigFile conf)
+			throws IOException {
+		return new AutoMode(name, filename, drive, clock, conf, false);
+	}
+
+	/**
+	 * Read the waypoints file again without running it
+	 * 
+	 * @return A new autonomous mode with the same name and file
+	 * @throws IOException
+	 *             If the waypoints file doesn't exist or cannot be read.
+	 */
+	public AutoMode reload() throws IOException {
+		return new AutoMode(name, filename, drive, clock, conf, false);
+	}
+
+	/**
+	 * 
+	 * @return The human-readable name of this autonomous mode
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 
+	 * @return The number of waypoints loaded
+	 */
+	public int size() {
+		return waypoints.size();
+	}
+
+	/**
+	 * 
+	 * @return The file the waypoints were loaded from
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * 
+	 * @return Whether the waypoints file has changed since it was loaded
+	 */
+	public boolean isStale() {
+		File file = new File(filename);
+		return file.lastModified() != fileModified
+				|| file.length() != fileLength;
 	}
 
 	/**
@@ -79,7 +209,50 @@ public class AutoMode {
 	 *             If the file cannot be read or doesn't exist.
 	 */
 	private void loadWaypoints() throws IOException {
-		// TODO: Read from the autonomous waypoints file (filename)
+		if (filename.endsWith(".path")) {
+			waypoints.addAll(PathFile.read(new File(filename)).toWaypoints(
+					drive, conf.getPropertyAsDouble("path.minTurnDegrees", 3.0)));
+		} else if (filename.endsWith(".ghost")) {
+			// Loaded up front so playback doesn't touch the file system
+			GhostPlayer player = new GhostPlayer(GhostRecording.read(new File(
+					filename)), conf.getPropertyAsDouble("ghost.distanceP", 0.0),
+					conf.getPropertyAsDouble("ghost.headingP", 0.0));
+			if (conf.getPropertyAsBoolean("ghost.feedforward", true)) {
+				File feedforward = new File(conf.getProperty(
+						"feedforward.file", Utils.FEEDFORWARD_FILE_LOC));
+				if (feedforward.exists()) {
+					try {
+						player.setFeedforward(Feedforward.read(feedforward),
+								conf.getPropertyAsInteger(
+										"ghost.velocityWindow", 4));
+					} catch (IOException e) {
+						// A bad feedforward shouldn't cost the whole routine
+						Utils.ROBOT_LOGGER.log(WARNING, "Replaying recorded "
+								+ "outputs, feedforward unusable: "
+								+ e.getMessage());
+					}
+				}
+			}
+			waypoints.add(new GhostWaypoint(player, 0, drive));
+		} else {
+			parseWaypoints();
+		}
+		FlightEvents.configReload("routine", filename);
+
+		Collections.sort(waypoints, WAYPOINT_COMPARER);
+
+		if (conf.getPropertyAsBoolean("optimizer.enabled", false)) {
+			waypoints = new WaypointOptimizer(conf).optimize(waypoints, drive);
+		}
+	}
+
+	/**
+	 * Parse the waypoints in a text waypoints file
+	 * 
+	 * @throws IOException
+	 *             If the file cannot be read or doesn't exist.
+	 */
+	private void parseWaypoints() throws IOException {
 		// Magic Guava splitting/reading voodoo
 		List<String> guavaResult = Files.readLines(new File(filename),
 				Charsets.UTF_8);
@@ -103,7 +276,6 @@ public class AutoMode {
 						waypoints.add(new TurnWaypoint(angle, Integer
 								.parseInt(s[0]), drive));
 					} catch (NumberFormatException nef) {
-						nef.printStackTrace();
 						Utils.logException(Utils.ROBOT_LOGGER, nef);
 					}
 				} else if (type.equalsIgnoreCase("drive")) {
@@ -114,7 +286,6 @@ public class AutoMode {
 						waypoints.add(new DriveWaypoint(distance, Integer
 								.parseInt(s[0]), drive));
 					} catch (NumberFormatException nef) {
-						nef.printStackTrace();
 						Utils.logException(Utils.ROBOT_LOGGER, nef);
 					}
 
@@ -124,10 +295,6 @@ public class AutoMode {
 
 		});
 		// Contains the split up ones for this line
-
-		Collections.sort(waypoints, WAYPOINT_COMPARER);
-
-		runScheduler();
 	}
 
 	/**
@@ -146,17 +313,26 @@ public class AutoMode {
 	 * A scheduler for running the waypoints loaded from a file
 	 */
 	public void runScheduler() {
+		startTime = clock.nanoTime() / 1000000;
 		for (Waypoint w : waypoints) {
-			long diff = w.getTime() - (System.currentTimeMillis() - startTime);
+			long diff = w.getTime() - (clock.nanoTime() / 1000000 - startTime);
 			try {
 				if (!(diff < 0)) {
-					Thread.sleep(diff);
+					clock.sleep(diff);
 				}
 			} catch (InterruptedException e) {
 				Utils.logException(Utils.ROBOT_LOGGER, e);
-				e.printStackTrace();
 			}
 			w.run();
+
+			String failure = drive.getFailure();
+			if (failure != null
+					&& conf.getProperty("watchdog.onFailure", "skip")
+							.equalsIgnoreCase("abort")) {
+				Utils.ROBOT_LOGGER.log(WARNING, "Aborting " + name + ": "
+						+ failure);
+				break;
+			}
 		}
 
 	}
@@ -1,12 +1,21 @@
 package ca.team2994.frc.autonomous;
 
 import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 import ca.team2994.frc.utils.ButtonEntry;
+import ca.team2994.frc.utils.ConfigFile;
 import ca.team2994.frc.utils.EJoystick;
+import ca.team2994.frc.utils.InputShaper;
 import ca.team2994.frc.utils.Utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
 import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.RobotDrive;
@@ -40,6 +49,16 @@ public class CalibrationManager {
 	 */
 	private static final int CALIBRATION_BUTTON = 2;
 	
+	/**
+	 * The button used on the joystick to end the session early.
+	 */
+	private static final int FINISH_BUTTON = 1;
+	
+	/**
+	 * The drive configuration file
+	 */
+	private ConfigFile conf;
+	
 	/**
 	 * Initialize values for object
 	 * @param stick The joystick to use
@@ -47,60 +66,184 @@ public class CalibrationManager {
 	 * @param base Robot - used to bail out if disable
 	 */
 	public CalibrationManager(EJoystick stick, RobotDrive drive, RobotBase base) {
+		this(stick, drive, base, new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE));
+	}
+	
+	/**
+	 * Initialize values for object
+	 * @param stick The joystick to use
+	 * @param drive The RobotDrive to drive with
+	 * @param base Robot - used to bail out if disable
+	 * @param conf The configuration file to read the calibration settings from
+	 */
+	public CalibrationManager(EJoystick stick, RobotDrive drive, RobotBase base, ConfigFile conf) {
 		this.stick = stick;
 		this.base = base;
 		this.drive = drive;
+		this.conf = conf;
 	}
 	
 	
 	/**
-	 * Calibrates the encoders for using Encoder.getDistance()
+	 * Calibrates the encoders for using Encoder.getDistance(). The robot is
+	 * driven by hand over each of the distances in "calibration.distances",
+	 * pressing the calibration button at the end of each run (or the trigger
+	 * to finish early). The distance per pulse of each side is fit over all
+	 * runs, runs that disagree with the rest are rejected, and the result is
+	 * saved to the calibration store.
 	 * @param left The left encoder to use
 	 * @param right The right encoder to use
 	 * @param stick The joystick to use
 	 */
 	public void calibrateEncoders(Encoder left, Encoder right, EJoystick stick) {
 		Utils.ROBOT_LOGGER.log(INFO, "Calibration");
-    	left.reset();
-    	right.reset();
-    	
-    	stick.enableButton(CALIBRATION_BUTTON);
-    	
-    	int i = 0;
-    	while(i != ButtonEntry.EVENT_CLOSED) {
-    		stick.update();
-    		if(!base.isTest()) {
-    			return;
-    		}
-    		drive.arcadeDrive(-stick.getY(), -stick.getX()); // drive with arcade style (use right stick) (inverted) // drive with arcade style (use right stick)
-    		i = stick.getEvent(2);
-    	}
-    	
-    	drive.drive(0, 0);
-    	
-    	int encoderAValue = left.get();
-    	int encoderBValue = right.get();
-    	
-    	double encoderAConstant = 0;
-    	double encoderBConstant = 0;
-    	
-    	if(encoderAValue != 0) {
-    		encoderAConstant = 5.0 / encoderAValue;
-    	}
-    	
-    	if(encoderBValue != 0) {
-    		encoderBConstant = 5.0 / encoderBValue;
-    	}
-    	
-		Utils.writeLineToFile("//Encoder A (Left), Distance Travelled: 5ft, Number of encoder ticks: " + encoderAValue
-    			+ ", Calibration constant: " + encoderAConstant, 
-    			new File(Utils.CALIBRATION_OUTPUT_FILE_LOC));
-    	
-    	Utils.writeLineToFile("//Encoder B (Right), Distance Travelled: 5ft, Number of encoder ticks: " + encoderBValue
-    			+ ", Calibration constant: " + encoderBConstant, 
-    			new File(Utils.CALIBRATION_OUTPUT_FILE_LOC));
-    	
-    	Utils.writeLineToFile(encoderAConstant + ", " + encoderBConstant, new File(Utils.CALIBRATION_OUTPUT_FILE_LOC));
+		
+		String[] s = Iterables.toArray(Utils.SPLITTER.split(
+				conf.getProperty("calibration.distances", "5, 5, 5, 5, 5")), String.class);
+		double[] distances = new double[s.length];
+		for(int k = 0; k < s.length; k++) {
+			distances[k] = Double.parseDouble(s[k]);
+		}
+		
+		int[] leftTicks = new int[distances.length];
+		int[] rightTicks = new int[distances.length];
+		
+		stick.enableButton(CALIBRATION_BUTTON);
+		stick.enableButton(FINISH_BUTTON);
+		
+		InputShaper moveShaper = new InputShaper(conf, "move");
+		InputShaper rotateShaper = new InputShaper(conf, "rotate");
+		
+		int runs = 0;
+		while(runs < distances.length) {
+			Utils.ROBOT_LOGGER.log(INFO, "Calibration run " + (runs + 1) + " of " + distances.length
+					+ ": drive " + distances[runs] + " and press button " + CALIBRATION_BUTTON);
+			left.reset();
+			right.reset();
+			moveShaper.reset();
+			rotateShaper.reset();
+			
+			int i = 0;
+			int j = 0;
+			while(i != ButtonEntry.EVENT_CLOSED && j != ButtonEntry.EVENT_CLOSED) {
+				stick.update();
+				if(!base.isTest()) {
+					drive.drive(0, 0);
+					return;
+				}
+				long now = System.nanoTime();
+				drive.arcadeDrive(moveShaper.shape(-stick.getY(), now),
+						rotateShaper.shape(-stick.getX(), now)); // drive with arcade style (use right stick) (inverted)
+				i = stick.getEvent(CALIBRATION_BUTTON);
+				j = stick.getEvent(FINISH_BUTTON);
+			}
+			drive.drive(0, 0);
+			
+			if(j == ButtonEntry.EVENT_CLOSED) {
+				break;
+			}
+			
+			leftTicks[runs] = left.get();
+			rightTicks[runs] = right.get();
+			runs++;
+		}
+		
+		double threshold = conf.getPropertyAsDouble("calibration.outlierThreshold", 3.0);
+		double[] leftFit = fit(distances, leftTicks, runs, threshold);
+		double[] rightFit = fit(distances, rightTicks, runs, threshold);
+		if(leftFit == null || rightFit == null) {
+			Utils.ROBOT_LOGGER.log(WARNING, "Calibration needs at least one run with encoder ticks on each side");
+			return;
+		}
+		
+		CalibrationStore store = new CalibrationStore(leftFit[0], rightFit[0], leftFit[1], rightFit[1],
+				(int) Math.min(leftFit[2], rightFit[2]), runs, System.currentTimeMillis());
+		Utils.ROBOT_LOGGER.log(INFO, "Calibration: " + store);
+		
+		try {
+			store.write(new File(conf.getProperty("calibration.store", Utils.CALIBRATION_STORE_FILE_LOC)));
+			
+			// A readable copy for people, in the old format
+			StringBuilder sb = new StringBuilder();
+			for(int k = 0; k < runs; k++) {
+				sb.append("//Run ").append(k + 1).append(", Distance Travelled: ").append(distances[k])
+					.append(", Encoder ticks (Left, Right): ").append(leftTicks[k]).append(", ").append(rightTicks[k]).append('\n');
+			}
+			sb.append("//Calibration constants: ").append(store).append('\n');
+			sb.append(store.leftDistancePerPulse).append(", ").append(store.rightDistancePerPulse).append('\n');
+			Files.write(sb, new File(conf.getProperty("calibration.file", Utils.CALIBRATION_OUTPUT_FILE_LOC)), Charsets.UTF_8);
+		} catch (IOException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+	}
+	
+	/**
+	 * Fit distance = distance per pulse * ticks through the origin by least
+	 * squares. Runs whose own distance per pulse is further than threshold
+	 * times the median absolute deviation from the median are dropped first.
+	 * @param distances The distance of each run
+	 * @param ticks The encoder ticks of each run
+	 * @param runs The number of runs
+	 * @param threshold How many median absolute deviations a run may be off
+	 * @return The distance per pulse, its standard error and the number of
+	 *         runs used, or null if no run has any ticks
+	 */
+	static double[] fit(double[] distances, int[] ticks, int runs, double threshold) {
+		double[] perRun = new double[runs];
+		int n = 0;
+		for(int k = 0; k < runs; k++) {
+			if(ticks[k] != 0) {
+				perRun[n++] = distances[k] / ticks[k];
+			}
+		}
+		if(n == 0) {
+			return null;
+		}
+		
+		double median = median(Arrays.copyOf(perRun, n));
+		double[] deviations = new double[n];
+		for(int k = 0; k < n; k++) {
+			deviations[k] = Math.abs(perRun[k] - median);
+		}
+		double mad = median(deviations);
+		
+		double sumXY = 0;
+		double sumXX = 0;
+		int used = 0;
+		for(int k = 0; k < runs; k++) {
+			if(ticks[k] == 0) {
+				continue;
+			}
+			// With a MAD of 0 most runs agree exactly, so keep only those
+			if(Math.abs(distances[k] / ticks[k] - median) > threshold * mad) {
+				continue;
+			}
+			sumXY += (double) ticks[k] * distances[k];
+			sumXX += (double) ticks[k] * ticks[k];
+			used++;
+		}
+		double slope = sumXY / sumXX;
+		
+		double sumSquares = 0;
+		for(int k = 0; k < runs; k++) {
+			if(ticks[k] != 0 && Math.abs(distances[k] / ticks[k] - median) <= threshold * mad) {
+				double residual = distances[k] - slope * ticks[k];
+				sumSquares += residual * residual;
+			}
+		}
+		double error = used > 1 ? Math.sqrt(sumSquares / (used - 1) / sumXX) : Double.NaN;
+		
+		return new double[] { slope, error, used };
+	}
+	
+	/**
+	 * @param values The values, which are sorted in place
+	 * @return The median of the values
+	 */
+	private static double median(double[] values) {
+		Arrays.sort(values);
+		int mid = values.length / 2;
+		return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
 	}
 
 }
@@ -0,0 +1,166 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The encoder calibration found by {@link CalibrationManager}, saved as a
+ * small binary file: a header (magic and version) followed by the distance
+ * per pulse and its standard error for each side, the number of runs used and
+ * collected, and the time of the calibration. The file is written to a
+ * temporary file and moved over the old one, so a power loss never leaves a
+ * half written calibration.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class CalibrationStore {
+
+	/**
+	 * The magic number at the start of every store ("CALB")
+	 */
+	public static final int MAGIC = 0x43414C42;
+
+	/**
+	 * The version of the file format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The left distance per pulse
+	 */
+	public final double leftDistancePerPulse;
+
+	/**
+	 * The right distance per pulse
+	 */
+	public final double rightDistancePerPulse;
+
+	/**
+	 * The standard error of the left distance per pulse
+	 */
+	public final double leftError;
+
+	/**
+	 * The standard error of the right distance per pulse
+	 */
+	public final double rightError;
+
+	/**
+	 * The number of runs left after outliers were rejected
+	 */
+	public final int runsUsed;
+
+	/**
+	 * The number of runs collected
+	 */
+	public final int runsTotal;
+
+	/**
+	 * When the calibration was done, in milliseconds since the epoch
+	 */
+	public final long timestamp;
+
+	/**
+	 * Initialize a calibration
+	 *
+	 * @param leftDistancePerPulse
+	 *            The left distance per pulse
+	 * @param rightDistancePerPulse
+	 *            The right distance per pulse
+	 * @param leftError
+	 *            The standard error of the left distance per pulse
+	 * @param rightError
+	 *            The standard error of the right distance per pulse
+	 * @param runsUsed
+	 *            The number of runs left after outliers were rejected
+	 * @param runsTotal
+	 *            The number of runs collected
+	 * @param timestamp
+	 *            When the calibration was done, in milliseconds since the
+	 *            epoch
+	 */
+	public CalibrationStore(double leftDistancePerPulse,
+			double rightDistancePerPulse, double leftError, double rightError,
+			int runsUsed, int runsTotal, long timestamp) {
+		this.leftDistancePerPulse = leftDistancePerPulse;
+		this.rightDistancePerPulse = rightDistancePerPulse;
+		this.leftError = leftError;
+		this.rightError = rightError;
+		this.runsUsed = runsUsed;
+		this.runsTotal = runsTotal;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Read a calibration written by {@link #write(File)}
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The calibration
+	 * @throws IOException
+	 *             If the file cannot be read or is not a calibration
+	 */
+	public static CalibrationStore read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a calibration store");
+			}
+			short version = in.readShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported calibration version "
+						+ version);
+			}
+			return new CalibrationStore(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readInt(),
+					in.readInt(), in.readLong());
+		}
+	}
+
+	/**
+	 * Write the calibration, replacing the old one in a single step
+	 *
+	 * @param target
+	 *            The file to write
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public void write(File target) throws IOException {
+		File temp = new File(target.getPath() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp, false);
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(file))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeDouble(leftDistancePerPulse);
+			out.writeDouble(rightDistancePerPulse);
+			out.writeDouble(leftError);
+			out.writeDouble(rightError);
+			out.writeInt(runsUsed);
+			out.writeInt(runsTotal);
+			out.writeLong(timestamp);
+			out.flush();
+			// Make sure the data is on disk before it replaces the old file
+			file.getFD().sync();
+		}
+		java.nio.file.Files.move(temp.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return "left " + leftDistancePerPulse + " +/- " + leftError
+				+ ", right " + rightDistancePerPulse + " +/- " + rightError
+				+ " (" + runsUsed + " of " + runsTotal + " runs)";
+	}
+}
@@ -0,0 +1,101 @@
+package ca.team2994.frc.autonomous;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An action that runs a little at a time on a {@link CommandScheduler}
+ * instead of blocking until it is done, so many actions can share one
+ * control loop. The scheduler calls {@link #initialize()} once, then
+ * {@link #execute()} once a tick until {@link #isFinished()} says it is done,
+ * then {@link #end(boolean)}. A command names the subsystems it drives with
+ * {@link #requires(Object)}; starting another command that needs one of them
+ * interrupts it.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public abstract class Command {
+
+	/**
+	 * The name of the command, for the log
+	 */
+	private final String name;
+
+	/**
+	 * The subsystems the command drives
+	 */
+	private final List<Object> requirements = new ArrayList<>(2);
+
+	/**
+	 * Initialize a command
+	 *
+	 * @param name
+	 *            The name of the command, for the log
+	 */
+	protected Command(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Mark a subsystem as driven by this command, so no other command drives
+	 * it at the same time. Call before the command is scheduled.
+	 *
+	 * @param subsystem
+	 *            The subsystem, such as the drive manager
+	 */
+	protected void requires(Object subsystem) {
+		if (!requirements.contains(subsystem)) {
+			requirements.add(subsystem);
+		}
+	}
+
+	/**
+	 *
+	 * @return The subsystems the command drives
+	 */
+	List<Object> getRequirements() {
+		return requirements;
+	}
+
+	/**
+	 *
+	 * @return The name of the command
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Called once when the command is scheduled
+	 */
+	protected void initialize() {
+	}
+
+	/**
+	 * Called once a tick while the command runs. Must not block.
+	 */
+	protected abstract void execute();
+
+	/**
+	 * Called after each {@link #execute()}
+	 *
+	 * @return Whether the command is done
+	 */
+	protected abstract boolean isFinished();
+
+	/**
+	 * Called once when the command is done or interrupted
+	 *
+	 * @param interrupted
+	 *            Whether it was cancelled or replaced rather than finishing
+	 */
+	protected void end(boolean interrupted) {
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
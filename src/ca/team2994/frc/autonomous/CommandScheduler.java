@@ -0,0 +1,167 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.FINE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Runs {@link Command}s a tick at a time. The owner of the control loop
+ * calls {@link #run()} once a period, after reading the sensors, and every
+ * active command gets one {@link Command#execute()}. Each subsystem is held
+ * by at most one command; scheduling a command that needs a held subsystem
+ * interrupts the command holding it. A tick allocates nothing, so the loop
+ * stays within the allocation check.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class CommandScheduler {
+
+	/**
+	 * The running commands, in the order they were scheduled
+	 */
+	private final List<Command> active = new ArrayList<>();
+
+	/**
+	 * The command holding each subsystem
+	 */
+	private final Map<Object, Command> holders = new HashMap<>();
+
+	/**
+	 * The commands scheduled while a tick was running, started after it
+	 */
+	private final List<Command> pending = new ArrayList<>();
+
+	/**
+	 * Whether a tick is running
+	 */
+	private boolean running;
+
+	/**
+	 * The position in {@link #active} of the command being run this tick
+	 */
+	private int index;
+
+	/**
+	 * Start a command, interrupting any commands that hold a subsystem it
+	 * needs. Scheduling a command that is already running does nothing.
+	 *
+	 * @param command
+	 *            The command to start
+	 */
+	public void schedule(Command command) {
+		if (running) {
+			// Started once the current tick is done
+			if (!pending.contains(command)) {
+				pending.add(command);
+			}
+			return;
+		}
+		if (active.contains(command)) {
+			return;
+		}
+
+		List<Object> requirements = command.getRequirements();
+		for (int i = 0; i < requirements.size(); i++) {
+			Command holder = holders.get(requirements.get(i));
+			if (holder != null) {
+				finish(holder, true);
+			}
+		}
+		for (int i = 0; i < requirements.size(); i++) {
+			holders.put(requirements.get(i), command);
+		}
+		active.add(command);
+		Utils.ROBOT_LOGGER.log(FINE, "Starting {0}", command);
+		command.initialize();
+	}
+
+	/**
+	 * Run every active command once, ending those that are done
+	 */
+	public void run() {
+		running = true;
+		try {
+			for (index = 0; index < active.size(); index++) {
+				Command command = active.get(index);
+				command.execute();
+				if (command.isFinished()) {
+					finish(command, false);
+				}
+			}
+		} finally {
+			running = false;
+		}
+
+		for (int i = 0; i < pending.size(); i++) {
+			schedule(pending.get(i));
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Interrupt a command if it is running
+	 *
+	 * @param command
+	 *            The command to stop
+	 */
+	public void cancel(Command command) {
+		pending.remove(command);
+		if (active.contains(command)) {
+			finish(command, true);
+		}
+	}
+
+	/**
+	 * Interrupt every running command
+	 */
+	public void cancelAll() {
+		pending.clear();
+		while (!active.isEmpty()) {
+			finish(active.get(active.size() - 1), true);
+		}
+	}
+
+	/**
+	 *
+	 * @param command
+	 *            The command
+	 * @return Whether the command is running or about to start
+	 */
+	public boolean isScheduled(Command command) {
+		return active.contains(command) || pending.contains(command);
+	}
+
+	/**
+	 *
+	 * @return Whether no command is running or about to start
+	 */
+	public boolean isIdle() {
+		return active.isEmpty() && pending.isEmpty();
+	}
+
+	/**
+	 * Remove a running command, release its subsystems and end it
+	 */
+	private void finish(Command command, boolean interrupted) {
+		int position = active.indexOf(command);
+		active.remove(position);
+		if (running && position <= index) {
+			// Keep the tick from skipping the command after it
+			index--;
+		}
+		List<Object> requirements = command.getRequirements();
+		for (int i = 0; i < requirements.size(); i++) {
+			holders.remove(requirements.get(i));
+		}
+		Utils.ROBOT_LOGGER.log(FINE, interrupted ? "Interrupted {0}"
+				: "Finished {0}", command);
+		command.end(interrupted);
+	}
+}
@@ -0,0 +1,147 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * The thread the control loops run on, kept apart from the threads that
+ * write files and logs so slow I/O never delays a motor command. The robot's
+ * mode methods hand their work to it with {@link #run(Runnable)} and wait.
+ * Its Java priority is set from control.priority; on Linux it can also be
+ * given a real-time priority with chrt (control.rtPriority) and pinned to a
+ * CPU with taskset (control.cpu). With control.thread=false the work runs on
+ * the calling thread as before, to compare the loop timing.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class ControlThread {
+
+	/**
+	 * The control thread, or null to run on the calling thread
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Initialize the control thread from the "control." keys of a
+	 * configuration file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public ControlThread(ConfigFile conf) {
+		if (!conf.getPropertyAsBoolean("control.thread", true)) {
+			this.executor = null;
+			return;
+		}
+
+		final int priority = Math.max(Thread.MIN_PRIORITY, Math.min(
+				Thread.MAX_PRIORITY, conf.getPropertyAsInteger(
+						"control.priority", Thread.MAX_PRIORITY)));
+		final int rtPriority = conf.getPropertyAsInteger("control.rtPriority", 0);
+		final int cpu = conf.getPropertyAsInteger("control.cpu", -1);
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						configure(rtPriority, cpu);
+						r.run();
+					}
+				}, "Control");
+				thread.setDaemon(true);
+				thread.setPriority(priority);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Run work on the control thread and wait for it to finish
+	 *
+	 * @param work
+	 *            The work to run
+	 */
+	public void run(Runnable work) {
+		if (executor == null) {
+			work.run();
+			return;
+		}
+		try {
+			executor.submit(work).get();
+		} catch (InterruptedException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Give the current thread a real-time priority and pin it to a CPU, on
+	 * Linux, if asked to
+	 */
+	private static void configure(int rtPriority, int cpu) {
+		if (rtPriority <= 0 && cpu < 0) {
+			return;
+		}
+		String tid;
+		try {
+			// Links to /proc/<pid>/task/<the thread's id>
+			tid = new File("/proc/thread-self").getCanonicalFile().getName();
+		} catch (IOException e) {
+			Utils.ROBOT_LOGGER.log(WARNING,
+					"Control thread: cannot find its thread id, " + e);
+			return;
+		}
+
+		if (rtPriority > 0) {
+			command("chrt", "-f", "-p", Integer.toString(rtPriority), tid);
+		}
+		if (cpu >= 0) {
+			command("taskset", "-p", "-c", Integer.toString(cpu), tid);
+		}
+	}
+
+	/**
+	 * Run a command and log whether it worked
+	 */
+	private static void command(String... command) {
+		String line = String.join(" ", command);
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(
+					true).start();
+			int status = process.waitFor();
+			if (status == 0) {
+				Utils.ROBOT_LOGGER.log(INFO, "Control thread: " + line);
+			} else {
+				Utils.ROBOT_LOGGER.log(WARNING, "Control thread: " + line
+						+ " exited with " + status);
+			}
+		} catch (IOException e) {
+			Utils.ROBOT_LOGGER.log(WARNING, "Control thread: cannot run "
+					+ line + ", " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
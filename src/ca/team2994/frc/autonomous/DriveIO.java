@@ -0,0 +1,428 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.Clock;
+import ca.team2994.frc.utils.DerivativeEstimator;
+
+/**
+ * The sensors, motor outputs and robot state the drive code runs against.
+ * Sensors are read once per control tick by {@link #update()} and the getters
+ * return those latched values, so every decision in a tick sees the same
+ * snapshot and a recorded tick can be fed back exactly.
+ *
+ * Encoder and gyro resets are done in software against the raw readings, so
+ * replaying the raw readings reproduces them. The speed and acceleration of
+ * each side and the turning rate are estimated once per update from the
+ * same raw readings, so every consumer sees the same filtered values.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public abstract class DriveIO implements Clock {
+
+	/**
+	 * Robot state flag: the robot is enabled
+	 */
+	public static final int ENABLED = 1;
+
+	/**
+	 * Robot state flag: the robot is in autonomous
+	 */
+	public static final int AUTONOMOUS = 2;
+
+	/**
+	 * Robot state flag: the robot is in tele-op
+	 */
+	public static final int OPERATOR_CONTROL = 4;
+
+	/**
+	 * Robot state flag: the robot is in test mode
+	 */
+	public static final int TEST = 8;
+
+	/**
+	 * The number of updates each speed is estimated over
+	 */
+	public static final int DEFAULT_MOTION_WINDOW = 8;
+
+	/**
+	 * The time of the last update in nanoseconds
+	 */
+	protected long time;
+
+	/**
+	 * The raw left encoder distance of the last update
+	 */
+	protected double leftRaw;
+
+	/**
+	 * The raw right encoder distance of the last update
+	 */
+	protected double rightRaw;
+
+	/**
+	 * The raw gyro angle of the last update
+	 */
+	protected double gyroRaw;
+
+	/**
+	 * The battery voltage of the last update
+	 */
+	protected double voltage = VoltageSource.NOMINAL_VOLTAGE;
+
+	/**
+	 * Where implementations read the battery voltage from
+	 */
+	protected VoltageSource voltageSource = VoltageSource.NOMINAL;
+
+	/**
+	 * The joystick x axis of the last update
+	 */
+	protected double stickX;
+
+	/**
+	 * The joystick y axis of the last update
+	 */
+	protected double stickY;
+
+	/**
+	 * The joystick buttons of the last update, button n in bit n - 1
+	 */
+	protected int buttons;
+
+	/**
+	 * The robot state flags of the last update
+	 */
+	protected int flags;
+
+	/**
+	 * The raw left encoder distance at the last encoder reset
+	 */
+	private double leftOffset;
+
+	/**
+	 * The raw right encoder distance at the last encoder reset
+	 */
+	private double rightOffset;
+
+	/**
+	 * The raw gyro angle at the last heading reset
+	 */
+	private double gyroOffset;
+
+	/**
+	 * The heading at the last heading reset
+	 */
+	private double initialAngle;
+
+	/**
+	 * Fuses the gyro with the encoders in place of the raw gyro angle, or
+	 * null
+	 */
+	private HeadingEstimator headingEstimator;
+
+	/*
+	 * Estimate the speed and acceleration of each side and of the heading
+	 */
+	private DerivativeEstimator leftMotion = new DerivativeEstimator(
+			DEFAULT_MOTION_WINDOW);
+	private DerivativeEstimator rightMotion = new DerivativeEstimator(
+			DEFAULT_MOTION_WINDOW);
+	private DerivativeEstimator turnMotion = new DerivativeEstimator(
+			DEFAULT_MOTION_WINDOW);
+
+	/**
+	 * Read all sensors and the robot state. Called once at the start of every
+	 * control tick. Implementations end by calling {@link #updateEstimates()}.
+	 */
+	public abstract void update();
+
+	/**
+	 * Use a heading estimator in place of the raw gyro angle for
+	 * {@link #getHeading()}, from the next update on
+	 *
+	 * @param estimator
+	 *            The estimator, or null to use the raw gyro angle
+	 */
+	public void setHeadingEstimator(HeadingEstimator estimator) {
+		this.headingEstimator = estimator;
+		// Keep the current heading rather than jumping to the new source
+		double heading = getHeading();
+		if (estimator != null) {
+			estimator.update(time, gyroRaw, leftRaw, rightRaw);
+		}
+		resetHeading(heading);
+		// The new source may not line up with the turning seen so far
+		turnMotion.reset();
+	}
+
+	/**
+	 * Read the battery voltage from a different source, such as a simulated
+	 * battery, from the next update on. Does nothing when the voltage is
+	 * replayed from a trace.
+	 *
+	 * @param source
+	 *            The source of the battery voltage
+	 */
+	public void setVoltageSource(VoltageSource source) {
+		this.voltageSource = source;
+	}
+
+	/**
+	 * Set how many updates the speeds and accelerations are estimated over.
+	 * A longer window is smoother but slower to follow a change.
+	 *
+	 * @param window
+	 *            The number of updates, at least
+	 *            {@link DerivativeEstimator#MIN_WINDOW}
+	 */
+	public void setMotionWindow(int window) {
+		if (window == leftMotion.getWindow()) {
+			return;
+		}
+		leftMotion = new DerivativeEstimator(window);
+		rightMotion = new DerivativeEstimator(window);
+		turnMotion = new DerivativeEstimator(window);
+	}
+
+	/**
+	 * Feed the readings just latched to the heading and motion estimators.
+	 * Called at the end of every {@link #update()}.
+	 */
+	protected void updateEstimates() {
+		if (headingEstimator != null) {
+			headingEstimator.update(time, gyroRaw, leftRaw, rightRaw);
+		}
+		leftMotion.add(time, leftRaw);
+		rightMotion.add(time, rightRaw);
+		turnMotion.add(time, getGyroAngle());
+	}
+
+	/**
+	 *
+	 * @return The gyro angle the heading is measured from: the estimate if
+	 *         there is an estimator, otherwise the raw angle
+	 */
+	private double getGyroAngle() {
+		return headingEstimator != null ? headingEstimator.getAngle()
+				: gyroRaw;
+	}
+
+	/**
+	 * Set the left and right motor outputs
+	 *
+	 * @param left
+	 *            The left output, from -1 to 1
+	 * @param right
+	 *            The right output, from -1 to 1
+	 */
+	public abstract void setOutputs(double left, double right);
+
+	/**
+	 * Set the distance per pulse of the encoders. Does nothing when there are
+	 * no real encoders.
+	 *
+	 * @param left
+	 *            The left encoder distance per pulse
+	 * @param right
+	 *            The right encoder distance per pulse
+	 */
+	public void setDistancePerPulse(double left, double right) {
+	}
+
+	/**
+	 *
+	 * @return The time of the last update in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 *
+	 * @return The battery voltage
+	 */
+	public double getBatteryVoltage() {
+		return voltage;
+	}
+
+	/**
+	 *
+	 * @return The left encoder distance since the last encoder reset
+	 */
+	public double getLeftDistance() {
+		return leftRaw - leftOffset;
+	}
+
+	/**
+	 *
+	 * @return The right encoder distance since the last encoder reset
+	 */
+	public double getRightDistance() {
+		return rightRaw - rightOffset;
+	}
+
+	/**
+	 *
+	 * @return The left encoder distance, unaffected by encoder resets
+	 */
+	public double getLeftRawDistance() {
+		return leftRaw;
+	}
+
+	/**
+	 *
+	 * @return The right encoder distance, unaffected by encoder resets
+	 */
+	public double getRightRawDistance() {
+		return rightRaw;
+	}
+
+	/**
+	 *
+	 * @return The speed of the left side, in units per second
+	 */
+	public double getLeftVelocity() {
+		return leftMotion.getRate();
+	}
+
+	/**
+	 *
+	 * @return The speed of the right side, in units per second
+	 */
+	public double getRightVelocity() {
+		return rightMotion.getRate();
+	}
+
+	/**
+	 *
+	 * @return The acceleration of the left side, in units per second squared
+	 */
+	public double getLeftAcceleration() {
+		return leftMotion.getAcceleration();
+	}
+
+	/**
+	 *
+	 * @return The acceleration of the right side, in units per second squared
+	 */
+	public double getRightAcceleration() {
+		return rightMotion.getAcceleration();
+	}
+
+	/**
+	 * Reset both encoder distances to zero
+	 */
+	public void resetEncoders() {
+		leftOffset = leftRaw;
+		rightOffset = rightRaw;
+	}
+
+	/**
+	 *
+	 * @return The heading in degrees, with the same sign as
+	 *         {@link ca.team2994.frc.utils.SimGyro#getAngle()}
+	 */
+	public double getHeading() {
+		return initialAngle - (getGyroAngle() - gyroOffset);
+	}
+
+	/**
+	 * Reset the heading
+	 *
+	 * @param angle
+	 *            The heading to reset to
+	 */
+	public void resetHeading(double angle) {
+		initialAngle = angle;
+		gyroOffset = getGyroAngle();
+	}
+
+	/**
+	 *
+	 * @return The rate the heading is changing, in degrees per second, with
+	 *         the same sign as {@link #getHeading()}
+	 */
+	public double getTurnRate() {
+		return -turnMotion.getRate();
+	}
+
+	/**
+	 *
+	 * @return The angular acceleration, in degrees per second squared, with
+	 *         the same sign as {@link #getHeading()}
+	 */
+	public double getTurnAcceleration() {
+		return -turnMotion.getAcceleration();
+	}
+
+	/**
+	 *
+	 * @return The joystick x axis
+	 */
+	public double getStickX() {
+		return stickX;
+	}
+
+	/**
+	 *
+	 * @return The joystick y axis
+	 */
+	public double getStickY() {
+		return stickY;
+	}
+
+	/**
+	 *
+	 * @return The joystick buttons, button n in bit n - 1
+	 */
+	public int getButtons() {
+		return buttons;
+	}
+
+	/**
+	 *
+	 * @return The robot state flags
+	 */
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 *
+	 * @return Whether the robot is enabled
+	 */
+	public boolean isEnabled() {
+		return (flags & ENABLED) != 0;
+	}
+
+	/**
+	 *
+	 * @return Whether the robot is in autonomous
+	 */
+	public boolean isAutonomous() {
+		return (flags & AUTONOMOUS) != 0;
+	}
+
+	/**
+	 *
+	 * @return Whether the robot is in tele-op
+	 */
+	public boolean isOperatorControl() {
+		return (flags & OPERATOR_CONTROL) != 0;
+	}
+
+	/**
+	 *
+	 * @return Whether the robot is in test mode
+	 */
+	public boolean isTest() {
+		return (flags & TEST) != 0;
+	}
+
+	/**
+	 * Flush anything buffered (such as a trace). Called when leaving a mode.
+	 */
+	public void flush() {
+	}
+}
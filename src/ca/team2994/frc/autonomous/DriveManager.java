@@ -1,5 +1,7 @@
 package ca.team2994.frc.autonomous;
 
+import java.util.function.BooleanSupplier;
+
 /**
  * Manages the driving of the robot
  * 
@@ -25,6 +27,34 @@ public interface DriveManager {
 	 */
 	public abstract void driveTurn(int degrees);
 	
+	/**
+	 * The same drive as {@link #driveStraight(double)}, as a command that
+	 * runs a tick at a time on {@link #getScheduler()}
+	 * @param units Number of units to drive forward. Determined by calibration.
+	 * @return The command
+	 */
+	public Command driveStraightCommand(double units);
+	
+	/**
+	 * The same turn as {@link #driveTurn(int)}, as a command that runs a tick
+	 * at a time on {@link #getScheduler()}
+	 * @param degrees The number of degrees to turn
+	 * @return The command
+	 */
+	public Command driveTurnCommand(int degrees);
+	
+	/**
+	 * 
+	 * @return The scheduler the drive train's commands run on
+	 */
+	public CommandScheduler getScheduler();
+	
+	/**
+	 * Run the scheduled commands, reading the sensors once a tick, until none
+	 * are left or the robot is disabled
+	 */
+	public void runCommands();
+	
 	/**
 	 * Drive using arcade drive. This means that the joystick will be used so that 
 	 * the y axis (up and down on the joystick) will move the robot forward and 
@@ -33,6 +63,11 @@ public interface DriveManager {
 	 */
 	public abstract void arcadeDrive();
 	
+	/**
+	 * Drive with {@link #arcadeDrive()} until tele-op ends
+	 */
+	public void runTeleOP();
+	
 	/**
 	 * Runs a calibration routine to set the encoder distance per pulse. 
 	 */
@@ -44,6 +79,40 @@ public interface DriveManager {
 	 */
 	public void readPIDValues();
 	
+	/**
+	 * Finds the gyro and encoder PID values with a relay feedback experiment,
+	 * writes them to the files {@link #readPIDValues()} reads and sets them
+	 */
+	public void runAutoTune();
+	
+	/**
+	 * Finds the feedforward constants of each side of the drive train and
+	 * writes them to the feedforward file
+	 */
+	public void runCharacterization();
+	
+	/**
+	 * Read every autonomous routine ahead of time, so
+	 * {@link #runAutonomous()} can start the selected one right away unless
+	 * its file has changed since
+	 */
+	public void loadAutonomous();
+	
+	/**
+	 * 
+	 * @return The routines read by {@link #loadAutonomous()}, or null if
+	 *         they have not been read
+	 */
+	public RoutineLibrary getRoutines();
+	
+	/**
+	 * Run the autonomous control code against a simulation until the JIT has
+	 * compiled it, so the first ticks of autonomous are not interpreted.
+	 * Call while the robot is disabled; returns early once it is not.
+	 * @param stillDisabled Whether the robot is still disabled
+	 */
+	public void runWarmUp(BooleanSupplier stillDisabled);
+	
 	/**
 	 * Called at the beginning of autonomous
 	 */
@@ -54,8 +123,46 @@ public interface DriveManager {
 	 */
 	public void runTeleOPLogging();
 	
+	/**
+	 * Continuously record the path driven in tele-op to be loaded in autonomous
+	 */
+	public void runTeleOPPathRecording();
+	
+	/**
+	 * Record the motor outputs and sensor readings of tele-op to be replayed
+	 * in autonomous
+	 */
+	public void runTeleOPGhostRecording();
+	
+	/**
+	 * Replay recorded tele-op motor outputs until the recording ends or
+	 * autonomous is over
+	 * @param player The player for the recording to replay
+	 */
+	public void playRecording(GhostPlayer player);
+	
 	/**
 	 * Reset gyro and encoder measurements
 	 */
 	public void resetMeasurements();
+	
+	/**
+	 * 
+	 * @return Why the watchdog stopped the last drive or turn, or null if it
+	 *         finished normally
+	 */
+	public String getFailure();
+	
+	/**
+	 * 
+	 * @return The timing of every control loop
+	 */
+	public LoopStats getLoopStats();
+	
+	/**
+	 * 
+	 * @return Whether only warnings and errors are logged, as for a manager
+	 *         driving a simulation in the background
+	 */
+	public boolean isQuiet();
 }
\ No newline at end of file
@@ -1,15 +1,22 @@
 package ca.team2994.frc.autonomous;
 
+import static java.util.logging.Level.INFO;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 import ca.team2994.frc.utils.ButtonEntry;
 import ca.team2994.frc.utils.ConfigFile;
 import ca.team2994.frc.utils.EJoystick;
+import ca.team2994.frc.utils.InputShaper;
 import ca.team2994.frc.utils.SimGyro;
 import ca.team2994.frc.utils.SimLib;
 import ca.team2994.frc.utils.SimPID;
+import ca.team2994.frc.utils.StartupTracker;
+import ca.team2994.frc.utils.TelemetryServer;
 import ca.team2994.frc.utils.Utils;
 
 import com.google.common.base.Charsets;
@@ -30,9 +37,15 @@ import edu.wpi.first.wpilibj.RobotDrive;
 public class DriveManagerImpl implements DriveManager {
 	
 	/**
-	 * Robot - used to bail out if disable
+	 * The bits of the buttons that log a drive and a turn waypoint (buttons
+	 * 1 and 2) in {@link DriveIO#getButtons()}
+	 */
+	private static final int DRIVE_BUTTON_BIT = 1, TURN_BUTTON_BIT = 1 << 1;
+	
+	/**
+	 * The sensors, motor outputs and robot state to drive with
 	 */
-	private RobotBase robot;
+	private DriveIO io;
 
 	/**
 	 * SimPID to oscillate using encoders around target 
@@ -44,6 +57,143 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	private SimPID gyroPID;
 
+	/**
+	 * SimPID to hold the heading while driving straight, or null if heading
+	 * hold is off
+	 */
+	private SimPID headingPID;
+
+	/**
+	 * The largest correction the heading PID may add to each side
+	 */
+	private double headingMax;
+
+	/**
+	 * Whether the heading is measured from the encoder difference instead of
+	 * the gyro
+	 */
+	private boolean headingFromEncoders;
+
+	/**
+	 * The distance between the left and right wheels, in encoder units
+	 */
+	private double trackWidth;
+
+	/**
+	 * The timing of every control loop
+	 */
+	private LoopStats loopStats;
+
+	/**
+	 * The timing of the current drive, turn or playback, for per waypoint
+	 * summaries
+	 */
+	private LoopTimer segment;
+
+	/**
+	 * Whether a drive, turn or playback is running
+	 */
+	private boolean segmentActive;
+
+	/**
+	 * Reused to put together the summary of each segment
+	 */
+	private final StringBuilder summary = new StringBuilder(256);
+
+	/**
+	 * The flight recorder event of the current drive, turn or playback, or
+	 * null if it is not being recorded
+	 */
+	private Object segmentEvent;
+
+	/**
+	 * The outputs set last, for the sampled control tick events
+	 */
+	private double lastLeft, lastRight;
+
+	/**
+	 * The error and output of the PID of the current drive or turn, NaN
+	 * between them
+	 */
+	private double pidError = Double.NaN, pidOutput = Double.NaN;
+
+	/**
+	 * The channels streamed to the telemetry client, in the order of
+	 * {@link #publishTelemetry()}
+	 */
+	static final String[] TELEMETRY_CHANNELS = { "leftDistance",
+			"rightDistance", "heading", "leftOutput", "rightOutput",
+			"pidError", "pidOutput" };
+
+	/**
+	 * Streams every control tick for live plotting, or null
+	 */
+	private TelemetryServer telemetry;
+
+	/**
+	 * The sample of this tick, filled in place so streaming never allocates
+	 */
+	private final double[] telemetrySample = new double[TELEMETRY_CHANNELS.length];
+
+	/**
+	 * Stops drives and turns that will never finish
+	 */
+	private Watchdog watchdog;
+
+	/**
+	 * Scales the outputs for the battery voltage
+	 */
+	private VoltageCompensator compensator;
+
+	/**
+	 * The learned left/right output balance, or null if it is not used
+	 */
+	private DrivetrainTrim trim;
+
+	/**
+	 * Whether the trim is held at the value it was loaded with
+	 */
+	private boolean trimFrozen;
+
+	/**
+	 * Whether only warnings and errors are logged
+	 */
+	private boolean quiet;
+
+	/**
+	 * Runs the control code against a simulation while the robot is
+	 * disabled, created the first time it is needed
+	 */
+	private WarmUp warmUp;
+
+	/**
+	 * The autonomous routines loaded ahead of time, or null
+	 */
+	private volatile RoutineLibrary routines;
+
+	/**
+	 * Runs the drives, turns and other commands a tick at a time
+	 */
+	private final CommandScheduler scheduler = new CommandScheduler();
+
+	/**
+	 * Shape the joystick's forward and turning axes before they are mixed
+	 */
+	private InputShaper moveShaper, rotateShaper;
+
+	/**
+	 * Whether the heading is fused with the encoders and kept across drives
+	 * and turns instead of being reset before each one
+	 */
+	private boolean continuousHeading;
+
+	/**
+	 * The angle the last turn was going for, measured like
+	 * {@link #getDrift()}. Without a continuous heading it is relative to the
+	 * start of the turn.
+	 */
+	private double turnTarget;
+
 	/**
 	 * 
 	 */
@@ -65,10 +215,25 @@ public class DriveManagerImpl implements DriveManager {
 	double gyroE;
 
 	/**
-	 * 
+	 * The constants of the encoder PID
 	 */
-	private SimGyro gyro;
-	
+	double encoderP, encoderI, encoderD;
+
+	/**
+	 * The error epsilon of the encoder PID
+	 */
+	double encoderE;
+
+	/**
+	 * The number of cycles each PID has to be in range before it is done
+	 */
+	int gyroMinCycles, encoderMinCycles;
+
+	/**
+	 * The largest output each PID may command
+	 */
+	double gyroMax, encoderMax;
+
 	/**
 	 * 
 	 */
@@ -94,7 +259,9 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	private CalibrationManager calibration;
 	
-	@SuppressWarnings("unused")
+	/**
+	 * The drive configuration file
+	 */
 	private ConfigFile conf;
 
 	/**
@@ -130,41 +297,482 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	public DriveManagerImpl(RobotDrive drive, RobotBase base, SimGyro gyro,
 			Encoder leftEncoder, Encoder rightEncoder, EJoystick stick) {
+		this(drive, base, gyro, leftEncoder, rightEncoder, stick,
+				new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE), null);
+	}
+
+	/**
+	 * Initializes a DriveManagerImpl with an already loaded configuration
+	 * file, reading the calibration, PID and trim files at the same time as
+	 * startup phases.
+	 * 
+	 * @param drive
+	 *            The RobotDrive object associated with the drive train.
+	 * @param base
+	 *            An object representing the running robot code and its state.
+	 * @param gyro
+	 *            The gryoscope on the robot used for turning.
+	 * @param leftEncoder
+	 *            The encoder on the "left" side of the robot.
+	 * @param rightEncoder
+	 *            The encoder on the "right" side of the robot.
+	 * @param stick
+	 *            The joystick to take user input with
+	 * @param conf
+	 *            The drive configuration file
+	 * @param startup
+	 *            The startup to time the file reads in, or null to read them
+	 *            one after another
+	 */
+	public DriveManagerImpl(RobotDrive drive, RobotBase base, SimGyro gyro,
+			Encoder leftEncoder, Encoder rightEncoder, EJoystick stick,
+			ConfigFile conf, StartupTracker startup) {
+		RobotDriveIO robotIO = new RobotDriveIO(drive, base, gyro,
+				leftEncoder, rightEncoder, stick);
+		this.io = robotIO;
 		this.drive = drive;
-		this.robot = base;
-		this.gyro = gyro;
 		this.leftEncoder = leftEncoder;
 		this.rightEncoder = rightEncoder;
 		this.stick = stick;
 
 		
-		this.conf = new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		this.conf = conf;
 		// Initialize the gyro (takes 1.0 seconds cause of a wait in the code,
 		// can we fix this?)
 		// gyro.setSensitivity(Double.POSITIVE_INFINITY);
 		// gyro.initGyro();
 
-		// Read encoder values from a file.
-		readEncoderValues();
-		readPIDValues();
-		// TODO: Read these in from the Constants file or the SmartDashboard
-		// Rationale: The D stops it from thrasing, P is taken from Simbotics
-		// Rationale: P is taken from Simbotics.
-		this.encoderPID = new SimPID(2.16, 0.0, 0.0, 0.1);
+		if (conf.getPropertyAsBoolean("trace.enabled", false)) {
+			try {
+				robotIO.setTrace(new DriveTraceWriter(new File(
+						Utils.TRACE_OUTPUT_FILE_LOC)));
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+		if (conf.getPropertyAsBoolean("joystick.record", false)) {
+			try {
+				robotIO.setJoystickRecorder(new JoystickRecorder(new File(
+						conf.getProperty("joystick.file",
+								Utils.JOYSTICK_OUTPUT_FILE_LOC))));
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+
+		loadConstants(startup);
+		startTelemetry();
+		loopStats.startReporting(conf.getPropertyAsDouble(
+				"latency.reportPeriod", 30.0));
 
 		// Initialize the Calibration instance
-		this.calibration = new CalibrationManager(stick, drive, base);
+		this.calibration = new CalibrationManager(stick, drive, base, conf);
+	}
+
+	/**
+	 * Initializes a DriveManagerImpl that drives through the given IO instead
+	 * of the robot hardware, for example to replay a trace or to run against
+	 * a simulation. Calibration and waypoint logging need the real joystick
+	 * and encoders and are not available.
+	 * 
+	 * @param io
+	 *            The sensors, motor outputs and robot state to drive with
+	 * @param conf
+	 *            The drive configuration file
+	 */
+	public DriveManagerImpl(DriveIO io, ConfigFile conf) {
+		this.io = io;
+		this.conf = conf;
+
+		loadConstants(null);
+		startTelemetry();
+	}
+
+	/**
+	 * Initializes a DriveManagerImpl with the given PID loops instead of the
+	 * ones in the PID files, for scoring PID constants against a simulation
+	 * 
+	 * @param io
+	 *            The sensors, motor outputs and robot state to drive with
+	 * @param conf
+	 *            The drive configuration file
+	 * @param encoderPID
+	 *            The PID to drive straight with
+	 * @param encoderMax
+	 *            The largest output to drive straight with
+	 * @param gyroPID
+	 *            The PID to turn with
+	 * @param gyroMax
+	 *            The largest output to turn with
+	 */
+	DriveManagerImpl(DriveIO io, ConfigFile conf, SimPID encoderPID,
+			double encoderMax, SimPID gyroPID, double gyroMax) {
+		this.io = io;
+		this.conf = conf;
+		this.encoderPID = encoderPID;
+		this.encoderMax = encoderMax;
+		this.gyroPID = gyroPID;
+		this.gyroMax = gyroMax;
+		this.watchdog = new Watchdog(conf);
+		this.compensator = new VoltageCompensator(conf);
+		this.loopStats = new LoopStats(conf);
+		this.segment = loopStats.get("waypoint");
+
+		readHeadingHold();
+		readShaping();
+		readHeadingFusion();
+		readMotion();
+	}
+
+	/**
+	 * Create a manager with the same PID constants that drives the given IO
+	 * instead. It has no trim, so it never learns from or writes to the
+	 * robot's files.
+	 * 
+	 * @param other
+	 *            The sensors, motor outputs and robot state to drive with
+	 * @return The new manager
+	 */
+	DriveManagerImpl simulated(DriveIO other) {
+		SimPID encoder = new SimPID(encoderP, encoderI, encoderD, encoderE);
+		encoder.setMinDoneCycles(encoderMinCycles);
+		SimPID gyro = new SimPID(gyroP, gyroI, gyroD, gyroE);
+		gyro.setMinDoneCycles(gyroMinCycles);
+		return new DriveManagerImpl(other, conf, encoder, encoderMax, gyro,
+				gyroMax);
+	}
+
+	/**
+	 * Read the encoder calibration and the PID constants
+	 * 
+	 * @param startup
+	 *            The startup to read the files in at the same time, or null
+	 *            to read them one after another
+	 */
+	private void loadConstants(StartupTracker startup) {
+		if (startup == null) {
+			// Read encoder values from a file.
+			readEncoderValues();
+			readPIDValues();
+			readTrimValues();
+		} else {
+			CompletableFuture.allOf(startup.start("calibration", new Runnable() {
+				@Override
+				public void run() {
+					readEncoderValues();
+				}
+			}), startup.start("PID", new Runnable() {
+				@Override
+				public void run() {
+					readPIDValues();
+				}
+			}), startup.start("trim", new Runnable() {
+				@Override
+				public void run() {
+					readTrimValues();
+				}
+			})).join();
+		}
+		readHeadingHold();
+		readShaping();
+		readHeadingFusion();
+		readMotion();
+		this.watchdog = new Watchdog(conf);
+		this.compensator = new VoltageCompensator(conf);
+		this.loopStats = new LoopStats(conf);
+		this.segment = loopStats.get("waypoint");
+	}
+
+	/**
+	 * Read the sensors, recording how long the read took and how long it has
+	 * been since the last one
+	 * 
+	 * @param timer
+	 *            The timer of the loop doing the read
+	 */
+	private void update(LoopTimer timer) {
+		long start = System.nanoTime();
+		io.update();
+		long end = System.nanoTime();
+		timer.record(start, end);
+		if (segmentActive) {
+			segment.record(start, end);
+		}
+		FlightEvents.controlTick(timer, io, lastLeft, lastRight);
+		if (telemetry != null) {
+			publishTelemetry();
+		}
+	}
+
+	/**
+	 * Start streaming telemetry if telemetry.enabled is set
+	 */
+	private void startTelemetry() {
+		if (!conf.getPropertyAsBoolean("telemetry.enabled", false)) {
+			return;
+		}
+		try {
+			telemetry = new TelemetryServer(conf, TELEMETRY_CHANNELS);
+		} catch (IOException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+	}
+
+	/**
+	 * Stream the sensors just read, the outputs set last tick and the PID
+	 * that set them
+	 */
+	private void publishTelemetry() {
+		telemetrySample[0] = io.getLeftDistance();
+		telemetrySample[1] = io.getRightDistance();
+		telemetrySample[2] = io.getHeading();
+		telemetrySample[3] = lastLeft;
+		telemetrySample[4] = lastRight;
+		telemetrySample[5] = pidError;
+		telemetrySample[6] = pidOutput;
+		telemetry.publish(io.getTime(), telemetrySample);
+	}
+
+	/**
+	 * Start timing a drive, turn or playback on its own
+	 */
+	private void beginSegment() {
+		segment.reset();
+		segmentActive = true;
+		segmentEvent = FlightEvents.beginWaypoint();
+	}
+
+	/**
+	 * Stop timing a drive, turn or playback and log its summary
+	 * 
+	 * @param label
+	 *            What the segment was, for the log
+	 * @param type
+	 *            The kind of segment, for the flight recorder
+	 * @param target
+	 *            The distance or angle it was going for, or NaN if it had
+	 *            none
+	 * @param error
+	 *            How far from the target it ended
+	 */
+	private void endSegment(String label, String type, double target,
+			double error) {
+		segmentActive = false;
+		pidError = Double.NaN;
+		pidOutput = Double.NaN;
+		FlightEvents.endWaypoint(segmentEvent, type, target, error,
+				watchdog.getCause());
+		segmentEvent = null;
+		if (!quiet && Utils.ROBOT_LOGGER.isLoggable(INFO)) {
+			summary.setLength(0);
+			summary.append(label).append(' ');
+			if (!Double.isNaN(target)) {
+				summary.append(target).append(' ');
+			}
+			segment.appendSummary(summary);
+			Utils.ROBOT_LOGGER.log(INFO, summary.toString());
+		}
+	}
+
+	/**
+	 * Read the learned drivetrain trim, which is saved alongside the encoder
+	 * calibration
+	 */
+	private void readTrimValues() {
+		if (!conf.getPropertyAsBoolean("trim.enabled", true)) {
+			return;
+		}
+		String filename = conf.getProperty("trim.file", Utils.TRIM_FILE_LOC);
+		this.trim = new DrivetrainTrim(conf);
+		this.trim.load(new File(filename));
+		FlightEvents.configReload("trim", filename);
+	}
+
+	/**
+	 * Keep the trim loaded at startup, but stop it learning and never save
+	 * it, as when replaying a trace offline
+	 */
+	void freezeTrim() {
+		trimFrozen = true;
+	}
+
+	/**
+	 * Save what the drivetrain trim has learned
+	 */
+	private void saveTrim() {
+		if (trim != null && !trimFrozen) {
+			trim.save(new File(conf.getProperty("trim.file",
+					Utils.TRIM_FILE_LOC)));
+		}
+	}
+
+	/**
+	 * Set the motor outputs, scaled by the learned trim and then for the
+	 * battery voltage. The trim learns from how far each side moved with the
+	 * outputs set last time, before the voltage scaling, so it learns the
+	 * same trim whatever the charge.
+	 * 
+	 * @param left
+	 *            The left output at the nominal voltage
+	 * @param right
+	 *            The right output at the nominal voltage
+	 */
+	private void setOutputs(double left, double right) {
+		setOutputs(left, right, true);
+	}
+
+	/**
+	 * Set the motor outputs, scaled for the battery voltage and optionally by
+	 * the learned trim. The trim learns from the outputs either way.
+	 * 
+	 * @param left
+	 *            The left output at the nominal voltage
+	 * @param right
+	 *            The right output at the nominal voltage
+	 * @param trimmed
+	 *            Whether to scale the outputs by the trim. Outputs that
+	 *            already balance the sides, like those of a feedforward
+	 *            fitted for each side, should not be.
+	 */
+	private void setOutputs(double left, double right, boolean trimmed) {
+		if (trim != null) {
+			if (trimmed) {
+				left *= trim.getLeftScale();
+				right *= trim.getRightScale();
+			}
+			if (!trimFrozen) {
+				trim.observe(io.getTime(), io.getLeftRawDistance(),
+						io.getRightRawDistance(), left, right);
+			}
+		}
+		compensator.update(io.getTime(), io.getBatteryVoltage());
+		left = compensator.compensate(left);
+		right = compensator.compensate(right);
+		lastLeft = left;
+		lastRight = right;
+		io.setOutputs(left, right);
+	}
+
+	/**
+	 * Read the heading hold settings from the "headingHold." keys of the
+	 * configuration file. Heading hold is off unless headingHold.enabled is
+	 * set, as the default gains have only been tried in simulation; tune
+	 * headingHold.p and headingHold.max on the robot before turning it on.
+	 */
+	private void readHeadingHold() {
+		if (!conf.getPropertyAsBoolean("headingHold.enabled", false)) {
+			this.headingPID = null;
+			return;
+		}
+		this.headingPID = new SimPID(conf.getPropertyAsDouble(
+				"headingHold.p", 0.01), conf.getPropertyAsDouble(
+				"headingHold.i", 0.0), conf.getPropertyAsDouble(
+				"headingHold.d", 0.0), conf.getPropertyAsDouble(
+				"headingHold.e", 0.5));
+		this.headingMax = conf.getPropertyAsDouble("headingHold.max", 0.1);
+		this.headingFromEncoders = conf.getProperty("headingHold.source",
+				"gyro").equalsIgnoreCase("encoders");
+		this.trackWidth = conf.getPropertyAsDouble("headingHold.trackWidth",
+				2.0);
+	}
+
+	/**
+	 * Fuse the gyro with the encoders if heading.fusion is set. The fused
+	 * heading does not drift, so it is kept for the whole of autonomous and
+	 * each turn goes for the heading the routine intends rather than
+	 * turning relative to wherever the last turn stopped.
+	 */
+	private void readHeadingFusion() {
+		this.continuousHeading = conf.getPropertyAsBoolean("heading.fusion",
+				false);
+		io.setHeadingEstimator(continuousHeading ? new HeadingEstimator(conf)
+				: null);
+	}
+
+	/**
+	 * Read how the speeds are estimated and how slow the robot must be going
+	 * for a drive or turn to count as settled, from the "motion." keys of the
+	 * configuration file
+	 */
+	private void readMotion() {
+		io.setMotionWindow(conf.getPropertyAsInteger("motion.window",
+				DriveIO.DEFAULT_MOTION_WINDOW));
+		applyDoneRates();
 	}
 
 	/**
-	 * Read in the encoder values from the autonomous config file. TODO:
-	 * Integrate this with Georges' Constants class.
+	 * Set how slow the robot must be going for a drive or turn to count as
+	 * settled on the PIDs. Called whenever the PIDs are built, since a new
+	 * SimPID does not check the rate. A manager that only drives or only
+	 * turns has no PID for the other.
+	 */
+	private void applyDoneRates() {
+		if (encoderPID != null) {
+			encoderPID.setDoneRate(conf.getPropertyAsDouble(
+					"motion.driveDoneRate", 0.0));
+		}
+		if (gyroPID != null) {
+			gyroPID.setDoneRate(conf.getPropertyAsDouble(
+					"motion.turnDoneRate", 0.0));
+		}
+	}
+
+	/**
+	 * Build the joystick shaping tables from the "shaping." keys of the
+	 * configuration file
+	 */
+	private void readShaping() {
+		this.moveShaper = new InputShaper(conf, "move");
+		this.rotateShaper = new InputShaper(conf, "rotate");
+	}
+
+	/**
+	 * 
+	 * @return The speed of the middle of the robot, in units per second
+	 */
+	private double getVelocity() {
+		return (io.getLeftVelocity() + io.getRightVelocity()) / 2.0;
+	}
+
+	/**
+	 * 
+	 * @return How far the robot has turned since the last reset, in degrees,
+	 *         positive when the left side has gone further
+	 */
+	private double getDrift() {
+		if (headingFromEncoders) {
+			return Math.toDegrees((io.getLeftDistance() - io
+					.getRightDistance()) / trackWidth);
+		}
+		return -io.getHeading();
+	}
+
+	/**
+	 * Read in the encoder values from the calibration store, or from the
+	 * older text calibration file if there is no store yet. TODO: Integrate
+	 * this with Georges' Constants class.
 	 */
 	private void readEncoderValues() {
+		File storeFile = new File(conf.getProperty("calibration.store",
+				Utils.CALIBRATION_STORE_FILE_LOC));
+		if (storeFile.exists()) {
+			try {
+				CalibrationStore store = CalibrationStore.read(storeFile);
+				io.setDistancePerPulse(store.leftDistancePerPulse,
+						store.rightDistancePerPulse);
+				FlightEvents.configReload("calibration", storeFile.getPath());
+				return;
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+
+		String filename = conf.getProperty("calibration.file",
+				Utils.CALIBRATION_OUTPUT_FILE_LOC);
 		try {
 
-			List<String> guavaResult = Files.readLines(new File(
-					Utils.CALIBRATION_OUTPUT_FILE_LOC), Charsets.UTF_8);
+			List<String> guavaResult = Files.readLines(new File(filename),
+					Charsets.UTF_8);
 			Iterable<String> guavaResultFiltered = Iterables.filter(
 					guavaResult, Utils.skipComments);
 
@@ -175,13 +783,12 @@ public class DriveManagerImpl implements DriveManager {
 			double encoderAConst = Double.parseDouble(s[0]);
 			double encoderBConst = Double.parseDouble(s[1]);
 
-			leftEncoder.setDistancePerPulse(encoderAConst);
-			rightEncoder.setDistancePerPulse(encoderBConst);
+			io.setDistancePerPulse(encoderAConst, encoderBConst);
+			FlightEvents.configReload("calibration", filename);
 
 		} catch (IOException e) {
 			Utils.logException(Utils.ROBOT_LOGGER, e);
-			leftEncoder.setDistancePerPulse(1);
-			rightEncoder.setDistancePerPulse(1);
+			io.setDistancePerPulse(1, 1);
 		}
 	}
 
@@ -191,10 +798,68 @@ public class DriveManagerImpl implements DriveManager {
 	 * @see ca.team2994.frc.autonomous.DriveManager#readPIDValues()
 	 */
 	public void readPIDValues() {
+		String gyroFile = conf.getProperty("gyroPID.file",
+				Utils.GYRO_PID_FILE_LOC);
+		double[] gyro = readPIDFile(gyroFile, conf.getPropertyAsDouble(
+				"gyroPIDMax", 0.25));
+		if (gyro != null) {
+			gyroP = gyro[0];
+			gyroI = gyro[1];
+			gyroD = gyro[2];
+			gyroE = gyro[3];
+			gyroMinCycles = (int) gyro[4];
+			gyroMax = gyro[5];
+
+			this.gyroPID = new SimPID(gyroP, gyroI, gyroD, gyroE);
+			this.gyroPID.setMinDoneCycles(gyroMinCycles);
+			FlightEvents.configReload("gyroPID", gyroFile);
+		}
+
+		String encoderFile = conf.getProperty("encoderPID.file",
+				Utils.ENCODER_PID_FILE_LOC);
+		double[] encoder = readPIDFile(encoderFile, conf.getPropertyAsDouble(
+				"encoderPIDMax", 0.25));
+		if (encoder != null) {
+			encoderP = encoder[0];
+			encoderI = encoder[1];
+			encoderD = encoder[2];
+			encoderE = encoder[3];
+			encoderMinCycles = (int) encoder[4];
+			encoderMax = encoder[5];
+			this.encoderPID = new SimPID(encoderP, encoderI, encoderD, encoderE);
+			this.encoderPID.setMinDoneCycles(encoderMinCycles);
+			FlightEvents.configReload("encoderPID", encoderFile);
+		} else {
+			// Rationale: The D stops it from thrasing, P is taken from Simbotics
+			// Rationale: P is taken from Simbotics.
+			encoderP = 2.16;
+			encoderI = 0.0;
+			encoderD = 0.0;
+			encoderE = 0.1;
+			encoderMinCycles = 5;
+			encoderMax = conf.getPropertyAsDouble("encoderPIDMax", 0.25);
+			this.encoderPID = new SimPID(encoderP, encoderI, encoderD, encoderE);
+		}
+		applyDoneRates();
+	}
+
+	/**
+	 * Read the PID constants from the first line of a PID file that is not a
+	 * comment. The line is "P, I, D, epsilon" optionally followed by
+	 * ", minimum done cycles, maximum output".
+	 * 
+	 * @param filename
+	 *            The file to read
+	 * @param defaultMax
+	 *            The maximum output to use if the file does not have one
+	 * @return The P, I, D, epsilon, minimum done cycles and maximum output, or
+	 *         null if the file cannot be read
+	 */
+	private double[] readPIDFile(String filename, double defaultMax) {
 		try {
 
-			List<String> guavaResult = Files.readLines(new File(
-					"/home/lvuser/gyroPID.txt"), Charsets.UTF_8);
+			List<String> guavaResult = Files.readLines(new File(filename),
+					Charsets.UTF_8);
 			Iterable<String> guavaResultFiltered = Iterables.filter(
 					guavaResult, Utils.skipComments);
 
@@ -202,16 +867,96 @@ public class DriveManagerImpl implements DriveManager {
 					.toArray(Utils.SPLITTER.split(guavaResultFiltered
 							.iterator().next()), String.class);
 
-			gyroP = Double.parseDouble(s[0]);
-			gyroI = Double.parseDouble(s[1]);
-			gyroD = Double.parseDouble(s[2]);
-			gyroE = Double.parseDouble(s[3]);
-
-			this.gyroPID = new SimPID(gyroP, gyroI, gyroD, gyroE);
+			return new double[] { Double.parseDouble(s[0]),
+					Double.parseDouble(s[1]), Double.parseDouble(s[2]),
+					Double.parseDouble(s[3]),
+					s.length > 4 ? Double.parseDouble(s[4]) : 5,
+					s.length > 5 ? Double.parseDouble(s[5]) : defaultMax };
 
 		} catch (IOException e) {
 			Utils.logException(Utils.ROBOT_LOGGER, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write PID constants in the format {@link #readPIDFile(String, double)}
+	 * reads
+	 * 
+	 * @param filename
+	 *            The file to write
+	 * @param comment
+	 *            A comment to put above the constants
+	 * @param p
+	 * @param i
+	 * @param d
+	 * @param e
+	 *            The error epsilon
+	 * @param minCycles
+	 *            The number of cycles in range before the PID is done
+	 * @param max
+	 *            The largest output
+	 */
+	static void writePIDFile(String filename, String comment, double p,
+			double i, double d, double e, int minCycles, double max) {
+		try {
+			Files.write("//" + comment + "\n" + p + ", " + i + ", " + d + ", "
+					+ e + ", " + minCycles + ", " + max + "\n", new File(
+					filename), Charsets.UTF_8);
+		} catch (IOException ex) {
+			Utils.logException(Utils.ROBOT_LOGGER, ex);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runAutoTune()
+	 */
+	public void runAutoTune() {
+		Utils.ROBOT_LOGGER.log(INFO, "Auto-tune");
+		RelayAutoTuner tuner = new RelayAutoTuner(io, conf);
+
+		RelayAutoTuner.Result turn = tuner.tuneTurn();
+		if (turn.success) {
+			writePIDFile(conf.getProperty("gyroPID.file",
+					Utils.GYRO_PID_FILE_LOC), "Relay auto-tune: " + turn,
+					turn.p, turn.i, turn.d, gyroPID == null ? 1.0 : gyroE,
+					gyroPID == null ? 5 : gyroMinCycles,
+					gyroPID == null ? 0.25 : gyroMax);
+		}
+
+		RelayAutoTuner.Result straight = tuner.tuneDrive();
+		if (straight.success) {
+			writePIDFile(conf.getProperty("encoderPID.file",
+					Utils.ENCODER_PID_FILE_LOC), "Relay auto-tune: " + straight,
+					straight.p, straight.i, straight.d, encoderE,
+					encoderMinCycles, encoderMax);
+		}
+
+		io.flush();
+		readPIDValues();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runCharacterization()
+	 */
+	public void runCharacterization() {
+		Utils.ROBOT_LOGGER.log(INFO, "Characterization");
+		io.update();
+		Feedforward feedforward = new DrivetrainCharacterizer(io, conf)
+				.characterize();
+		if (feedforward != null) {
+			try {
+				feedforward.write(new File(conf.getProperty(
+						"feedforward.file", Utils.FEEDFORWARD_FILE_LOC)));
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
 		}
+		io.flush();
 	}
 
 	/*
@@ -221,37 +966,105 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	@Override
 	public void driveStraight(double units) {
-		// Reset the encoders (encoder.get(Distance|)() == 0)
-		leftEncoder.reset();
-		rightEncoder.reset();
-		// Set up the desired number of units.
-		encoderPID.setDesiredValue(units);
-		// Reset the encoder PID to a reasonable state.
-		encoderPID.resetErrorSum();
-		encoderPID.resetPreviousVal();
-		// Used to make sure that the PID doesn't bail out as done
-		// right away (we know both the distances are zero from the
-		// above reset).
-		encoderPID.calcPID(0);
-
-		// The first conditional here checks if the PID is done, pretty simple.
-		// The second conditional is there to make sure that we bail if the
-		// robot isn't enabled.
-		while (!encoderPID.isDone() && robot.isEnabled()
-				&& robot.isAutonomous()) {
-			double driveVal = encoderPID
-					.calcPID((leftEncoder.getDistance() + rightEncoder
-							.getDistance()) / 2.0);
-			// TODO: Read this from the constants file as "encoderPIDMax"
-			double limitVal = SimLib.limitValue(driveVal, 0.25);
-
-			drive.setLeftRightMotorOutputs(limitVal + 0.0038, limitVal);
-		}
-
-		// Reset the motors (safety and sanity for if we bail out on a
-		// none-isDone()
-		// condition).
-		drive.setLeftRightMotorOutputs(0, 0);
+		runCommand(driveStraightCommand(units), loopStats.get("driveStraight"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#driveStraightCommand(double)
+	 */
+	@Override
+	public Command driveStraightCommand(final double units) {
+		return new Command("Drive " + units) {
+
+			/**
+			 * Whether the drive is over
+			 */
+			private boolean done;
+
+			{
+				requires(DriveManagerImpl.this);
+			}
+
+			@Override
+			protected void initialize() {
+				done = false;
+				// Reset the encoders (encoder.get(Distance|)() == 0)
+				io.update();
+				io.resetEncoders();
+				double heading = 0;
+				if (!continuousHeading) {
+					io.resetHeading(0);
+				} else if (!headingFromEncoders) {
+					// Hold the heading the routine is at, not the one the
+					// last turn ended on
+					heading = turnTarget;
+				}
+				if (headingPID != null) {
+					// Hold the heading we start with
+					headingPID.setDesiredValue(heading);
+					headingPID.resetErrorSum();
+					headingPID.resetPreviousVal();
+				}
+				// Set up the desired number of units.
+				encoderPID.setDesiredValue(units);
+				// Reset the encoder PID to a reasonable state.
+				encoderPID.resetErrorSum();
+				encoderPID.resetPreviousVal();
+				// Used to make sure that the PID doesn't bail out as done
+				// right away (we know both the distances are zero from the
+				// above reset).
+				encoderPID.calcPID(0);
+				watchdog.startDrive(units, io.getTime());
+				beginSegment();
+			}
+
+			@Override
+			protected void execute() {
+				// The first conditional here checks if the PID is done, pretty
+				// simple. The second conditional is there to make sure that we
+				// bail if the robot isn't enabled.
+				if (encoderPID.isDone(getVelocity()) || !io.isEnabled()
+						|| !io.isAutonomous()) {
+					done = true;
+					return;
+				}
+				double distance = (io.getLeftDistance() + io.getRightDistance()) / 2.0;
+				double driveVal = encoderPID.calcPID(distance);
+				double limitVal = SimLib.limitValue(driveVal, encoderMax);
+				pidError = encoderPID.getDesiredVal() - distance;
+				pidOutput = limitVal;
+				if (!watchdog.check(io.getTime(), distance, getVelocity(),
+						limitVal)) {
+					done = true;
+					return;
+				}
+
+				// Trim each side to steer back to the starting heading
+				double correction = 0;
+				if (headingPID != null) {
+					correction = SimLib.limitValue(
+							headingPID.calcPID(getDrift()), headingMax);
+				}
+
+				setOutputs(limitVal + correction, limitVal - correction);
+			}
+
+			@Override
+			protected boolean isFinished() {
+				return done;
+			}
+
+			@Override
+			protected void end(boolean interrupted) {
+				// Reset the motors (safety and sanity for if we bail out on a
+				// none-isDone() condition).
+				setOutputs(0, 0);
+				endSegment("Drive", "drive", units, units
+						- (io.getLeftDistance() + io.getRightDistance()) / 2.0);
+			}
+		};
 	}
 
 	/*
@@ -261,29 +1074,135 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	@Override
 	public void driveTurn(int degrees) {
-		gyroPID.setDesiredValue(degrees);
-		gyro.reset(0);
-		// Reset the gyro PID to a reasonable state.
-		encoderPID.resetErrorSum();
-		encoderPID.resetPreviousVal();
-		// Used to make sure that the PID doesn't bail out as done
-		// right away (we know the gyro angle is zero from the above
-		// reset).
-		gyroPID.calcPID(0);
-
-		while (!gyroPID.isDone() && robot.isEnabled() && robot.isAutonomous()) {
-			System.out.println("gyro.getAngle() = " + gyro.getAngle());
-			double driveVal = gyroPID.calcPID(-gyro.getAngle());
-			// TODO: Read this from the constants file as "gyroPIDMax"
-			double limitVal = SimLib.limitValue(driveVal, 0.25);
-			System.out.println("limitVal = " + limitVal);
-			drive.setLeftRightMotorOutputs(limitVal, -limitVal);
-		}
-
-		// Reset the motors (safety and sanity for if we bail out on a
-		// none-isDone()
-		// condition).
-		drive.drive(0.0, 0.0);
+		runCommand(driveTurnCommand(degrees), loopStats.get("driveTurn"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#driveTurnCommand(int)
+	 */
+	@Override
+	public Command driveTurnCommand(final int degrees) {
+		return new Command("Turn " + degrees) {
+
+			/**
+			 * Whether the turn is over
+			 */
+			private boolean done;
+
+			{
+				requires(DriveManagerImpl.this);
+			}
+
+			/**
+			 * The angle at the start of the turn
+			 */
+			private double start;
+
+			@Override
+			protected void initialize() {
+				done = false;
+				io.update();
+				if (continuousHeading) {
+					turnTarget += degrees;
+				} else {
+					io.resetHeading(0);
+					turnTarget = degrees;
+				}
+				start = -io.getHeading();
+				gyroPID.setDesiredValue(turnTarget);
+				// Reset the gyro PID to a reasonable state.
+				gyroPID.resetErrorSum();
+				gyroPID.resetPreviousVal();
+				// Used to make sure that the PID doesn't bail out as done
+				// right away (we know where the gyro angle starts).
+				gyroPID.calcPID(start);
+				watchdog.startTurn(turnTarget - start, io.getTime());
+				beginSegment();
+			}
+
+			@Override
+			protected void execute() {
+				if (gyroPID.isDone(io.getTurnRate()) || !io.isEnabled()
+						|| !io.isAutonomous()) {
+					done = true;
+					return;
+				}
+				double driveVal = gyroPID.calcPID(-io.getHeading());
+				double limitVal = SimLib.limitValue(driveVal, gyroMax);
+				pidError = gyroPID.getDesiredVal() + io.getHeading();
+				pidOutput = limitVal;
+				if (!watchdog.check(io.getTime(), -io.getHeading() - start,
+						io.getTurnRate(), limitVal)) {
+					done = true;
+					return;
+				}
+				setOutputs(limitVal, -limitVal);
+			}
+
+			@Override
+			protected boolean isFinished() {
+				return done;
+			}
+
+			@Override
+			protected void end(boolean interrupted) {
+				// Reset the motors (safety and sanity for if we bail out on a
+				// none-isDone() condition).
+				setOutputs(0.0, 0.0);
+				endSegment("Turn", "turn", degrees, turnTarget
+						+ io.getHeading());
+			}
+		};
+	}
+
+	/**
+	 * Run a command on the scheduler until it is done, reading the sensors
+	 * once a tick. Other scheduled commands run in the same ticks.
+	 * 
+	 * @param command
+	 *            The command to wait for
+	 * @param timer
+	 *            The timer of the loop
+	 */
+	private void runCommand(Command command, LoopTimer timer) {
+		scheduler.schedule(command);
+		timer.begin();
+		while (true) {
+			scheduler.run();
+			if (!scheduler.isScheduled(command)) {
+				break;
+			}
+			update(timer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runCommands()
+	 */
+	@Override
+	public void runCommands() {
+		LoopTimer timer = loopStats.get("commands");
+		timer.begin();
+		while (!scheduler.isIdle() && io.isEnabled()) {
+			scheduler.run();
+			update(timer);
+		}
+		// Anything still running was stopped by the robot being disabled
+		scheduler.cancelAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#getScheduler()
+	 */
+	@Override
+	public CommandScheduler getScheduler() {
+		return scheduler;
 	}
 
 	/*
@@ -292,10 +1211,53 @@ public class DriveManagerImpl implements DriveManager {
 	 * @see ca.team2994.frc.autonomous.DriveManager#arcadeDrive()
 	 */
 	public void arcadeDrive() {
+		update(loopStats.get("arcadeDrive"));
+		driveArcade();
+	}
+
+	/**
+	 * Drive with the shaped joystick values of the current tick, with the
+	 * same squared-input mix as RobotDrive.arcadeDrive
+	 */
+	private void driveArcade() {
 		// TODO: Change this for competition robot??
-		drive.arcadeDrive(-stick.getY(), -stick.getX()); // drive with arcade
-															// style (use right
-															// stick) (inverted)
+		// drive with arcade style (use right stick) (inverted)
+		double move = moveShaper.shape(-io.getStickY(), io.getTime());
+		double rotate = rotateShaper.shape(-io.getStickX(), io.getTime());
+		setOutputs(SimLib.arcadeLeft(move, rotate),
+				SimLib.arcadeRight(move, rotate));
+	}
+
+	/**
+	 * Start the joystick shaping from a stop, at the start of a driving loop
+	 */
+	private void resetShaping() {
+		moveShaper.reset();
+		rotateShaper.reset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runTeleOP()
+	 */
+	public void runTeleOP() {
+		LoopTimer timer = loopStats.get("teleop");
+		timer.begin();
+		resetShaping();
+		io.update();
+		while (io.isOperatorControl() && io.isEnabled()) {
+			driveArcade();
+			try {
+				io.sleep(5); // wait for a motor update time
+			} catch (InterruptedException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+			update(timer);
+		}
+		setOutputs(0, 0);
+		saveTrim();
+		io.flush();
 	}
 
 	/*
@@ -305,6 +1267,7 @@ public class DriveManagerImpl implements DriveManager {
 	 */
 	public void runCalibration() {
 		calibration.calibrateEncoders(leftEncoder, rightEncoder, stick);
+		readEncoderValues();
 	}
 
 	/*
@@ -313,15 +1276,75 @@ public class DriveManagerImpl implements DriveManager {
 	 * @see ca.team2994.frc.autonomous.DriveManager#runAutonomous
 	 */
 	public void runAutonomous() {
+		if (continuousHeading) {
+			// Every turn of the routine is measured from here
+			resetMeasurements();
+		}
 		try {
-			@SuppressWarnings("unused")
-			AutoMode auto = new AutoMode("Test Autonomous",
-					Utils.AUTONOMOUS_OUTPUT_FILE_LOC, this);
+			RoutineLibrary library = routines;
+			AutoMode auto = library != null ? library.getSelected() : null;
+			if (auto == null) {
+				auto = AutoMode.load("Test Autonomous", getAutonomousFile(),
+						this, io, conf);
+			} else if (auto.isStale()) {
+				auto = library.reload(auto);
+			}
+			Utils.ROBOT_LOGGER.log(INFO, "Running routine " + auto.getName());
+			auto.runScheduler();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+		saveTrim();
+		io.flush();
+
+	}
+
+	/**
+	 * 
+	 * @return The file autonomous loads its routine from
+	 */
+	String getAutonomousFile() {
+		String source = conf.getProperty("autonomous.source", "waypoints");
+		String filename = Utils.AUTONOMOUS_OUTPUT_FILE_LOC;
+		if (source.equalsIgnoreCase("path")) {
+			filename = Utils.PATH_OUTPUT_FILE_LOC;
+		} else if (source.equalsIgnoreCase("ghost")) {
+			filename = Utils.GHOST_OUTPUT_FILE_LOC;
 		}
+		return conf.getProperty("autonomous.file", filename);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#loadAutonomous()
+	 */
+	public void loadAutonomous() {
+		routines = RoutineLibrary.load(getAutonomousFile(), this, io, conf);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#getRoutines()
+	 */
+	public RoutineLibrary getRoutines() {
+		return routines;
+	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runWarmUp(BooleanSupplier)
+	 */
+	public void runWarmUp(BooleanSupplier stillDisabled) {
+		if (!conf.getPropertyAsBoolean("warmup.enabled", true)) {
+			return;
+		}
+		if (warmUp == null) {
+			warmUp = new WarmUp(this, conf);
+		}
+		warmUp.run(stillDisabled);
 	}
 
 	/*
@@ -335,77 +1358,234 @@ public class DriveManagerImpl implements DriveManager {
 			log.delete();
 		}
 
-		long time = System.currentTimeMillis();
+		// Set from the first waypoint
+		long time = 0;
 		boolean isFirst = true;
-		while (robot.isOperatorControl()) {
+		resetShaping();
+		io.update();
+		while (io.isOperatorControl()) {
 			long temp = 0;
 			if ((temp = doLogging(time, isFirst)) != 0) {
 				time = temp;
 				isFirst = false;
 			}
 		}
-		drive.drive(0, 0);
+		setOutputs(0, 0);
+		saveTrim();
+		io.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runTeleOPPathRecording
+	 */
+	public void runTeleOPPathRecording() {
+		double sampleRate = conf.getPropertyAsDouble("path.sampleRate", 100.0);
+		int periodMicros = (int) (1000000 / sampleRate);
+		long period = periodMicros * 1000L;
+
+		resetMeasurements();
+		try (PathRecorder recorder = new PathRecorder(new File(
+				Utils.PATH_OUTPUT_FILE_LOC), periodMicros)) {
+			long nextSample = io.getTime();
+			loopStats.get("arcadeDrive").begin();
+			resetShaping();
+			while (io.isOperatorControl()) {
+				arcadeDrive();
+
+				// If the loop fell behind, the current pose is written for
+				// every missed sample so the file keeps a fixed time base.
+				long now = io.getTime();
+				while (now - nextSample >= 0) {
+					recorder.sample(io.getLeftDistance(),
+							io.getRightDistance(), io.getHeading());
+					nextSample += period;
+				}
+			}
+			Utils.ROBOT_LOGGER.log(INFO, "Recorded " + recorder.getSamples()
+					+ " path samples");
+		} catch (IOException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+		setOutputs(0, 0);
+		saveTrim();
+		io.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#runTeleOPGhostRecording
+	 */
+	public void runTeleOPGhostRecording() {
+		double sampleRate = conf.getPropertyAsDouble("ghost.sampleRate", 200.0);
+		long period = (long) (1.0e9 / sampleRate);
+
+		resetMeasurements();
+		try (GhostRecorder recorder = new GhostRecorder(new File(
+				Utils.GHOST_OUTPUT_FILE_LOC))) {
+			long start = io.getTime();
+			long nextTick = start;
+			LoopTimer timer = loopStats.get("ghostRecording");
+			timer.begin();
+			resetShaping();
+			while (io.isOperatorControl()) {
+				// Compute the arcade outputs ourselves so the exact values
+				// sent to the motors are recorded
+				double move = moveShaper.shape(-io.getStickY(), io.getTime());
+				double rotate = rotateShaper.shape(-io.getStickX(),
+						io.getTime());
+				double left = SimLib.arcadeLeft(move, rotate);
+				double right = SimLib.arcadeRight(move, rotate);
+				setOutputs(left, right);
+
+				recorder.sample((int) ((io.getTime() - start) / 1000), left,
+						right, io.getLeftDistance(), io.getRightDistance(),
+						io.getHeading());
+
+				nextTick += period;
+				long wait = nextTick - io.nanoTime();
+				if (wait > 0) {
+					io.sleep(wait / 1000000);
+				} else {
+					nextTick = io.nanoTime();
+				}
+				update(timer);
+			}
+			Utils.ROBOT_LOGGER.log(INFO, "Recorded " + recorder.getSamples()
+					+ " ghost samples");
+		} catch (IOException | InterruptedException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+		setOutputs(0, 0);
+		saveTrim();
+		io.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#playRecording(GhostPlayer)
+	 */
+	public void playRecording(GhostPlayer player) {
+		resetMeasurements();
+		player.reset();
+
+		long start = io.getTime();
+		LoopTimer timer = loopStats.get("ghostPlayback");
+		timer.begin();
+		beginSegment();
+		while (io.isEnabled() && io.isAutonomous()) {
+			double t = (io.getTime() - start) / 1.0e9;
+			if (!player.update(t, io.getLeftDistance(), io.getRightDistance(),
+					io.getHeading())) {
+				break;
+			}
+			setOutputs(player.getLeft(), player.getRight(),
+					!player.hasFeedforward());
+			update(timer);
+		}
+
+		setOutputs(0, 0);
+		endSegment("Playback", "playback", Double.NaN, 0);
 	}
 
+	/**
+	 * Drive until button 1 or 2 is pressed, then log a drive or turn waypoint
+	 * with the distance or angle driven since the last one. The buttons come
+	 * from the latched IO, so a replayed session logs the same waypoints.
+	 * 
+	 * @param startTime
+	 *            The time of the first waypoint, in milliseconds
+	 * @param isFirst
+	 *            Whether this is the first waypoint
+	 * @return The time of the first waypoint, or 0 if tele-op ended first
+	 */
 	private long doLogging(long startTime, boolean isFirst) {
 		resetMeasurements();
 
-		stick.enableButton(1);
-		stick.enableButton(2);
 		// boolean wasLastTurn = false;
-		int i = 0;
-		int j = 0;
-		while (i != ButtonEntry.EVENT_CLOSED && j != ButtonEntry.EVENT_CLOSED) {
-			stick.update();
-			if (!robot.isOperatorControl()) {
+		// The buttons held already don't count as presses
+		int held = io.getButtons();
+		int pressed = 0;
+		LoopTimer timer = loopStats.get("doLogging");
+		timer.begin();
+		while ((pressed & (DRIVE_BUTTON_BIT | TURN_BUTTON_BIT)) == 0) {
+			update(timer);
+			if (!io.isOperatorControl()) {
 				return 0;
 			}
-			drive.arcadeDrive(-stick.getY(), -stick.getX()); // drive with
-																// arcade style
-																// (use right
-																// stick)
-																// (inverted) //
-																// drive with
-																// arcade style
-																// (use right
-																// stick)
-			i = stick.getEvent(1);
-			j = stick.getEvent(2);
+			driveArcade();
+			pressed = io.getButtons() & ~held;
+			held = io.getButtons();
 		}
 
+		long now = io.getTime() / 1000000;
 		if (isFirst) {
-			startTime = System.currentTimeMillis();
+			startTime = now;
 		}
 
-		if (i == ButtonEntry.EVENT_CLOSED) {
-			String time = "" + (System.currentTimeMillis() - startTime);
-			String actionType = "drive";
-			String encoderVal = ""
-					+ (leftEncoder.getDistance() + rightEncoder.getDistance())
-					/ 2;
-
-			Utils.addLine(new String[] { time, actionType, encoderVal });
+		long time = now - startTime;
+		if ((pressed & DRIVE_BUTTON_BIT) != 0) {
+			Utils.addLine(time, "drive",
+					(io.getLeftDistance() + io.getRightDistance()) / 2);
 		} else {
-			String time = "" + (System.currentTimeMillis() - startTime);
-			String actionType = "turn";
-			String gyroAngle = "" + gyro.getAngle();
-
-			Utils.addLine(new String[] { time, actionType, gyroAngle });
-
+			Utils.addLine(time, "turn", io.getHeading());
 		}
 
 		resetMeasurements();
 		return startTime;
 	}
 
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#getLoopStats()
+	 */
+	public LoopStats getLoopStats() {
+		return loopStats;
+	}
+
+	/**
+	 * Stop logging drive, turn and routine summaries, so a manager running
+	 * in the background does not fill the log. Warnings are still logged.
+	 * 
+	 * @param quiet
+	 *            Whether to log only warnings and errors
+	 */
+	void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#isQuiet()
+	 */
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ca.team2994.frc.autonomous.DriveManager#getFailure()
+	 */
+	public String getFailure() {
+		return watchdog.getCause();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see ca.team2994.frc.autonomous.DriveManager#resetMeasurments()
 	 */
 	public void resetMeasurements() {
-		leftEncoder.reset();
-		rightEncoder.reset();
-		gyro.reset(0);
+		io.update();
+		io.resetEncoders();
+		io.resetHeading(0);
+		turnTarget = 0;
 	}
 }
@@ -0,0 +1,137 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A trace of every control tick of a {@link DriveIO}, written by
+ * {@link DriveTraceWriter}. The file is a header (magic and version) followed
+ * by one fixed size record per tick holding the time, the raw sensor
+ * readings, the joystick, the robot state flags, the motor outputs
+ * commanded during the tick (NaN if none were) and the battery voltage.
+ * Version 1 traces have no voltage and are read as running at the nominal
+ * voltage.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DriveTrace {
+
+	/**
+	 * The magic number at the start of every trace ("TRCE")
+	 */
+	public static final int MAGIC = 0x54524345;
+
+	/**
+	 * The version of the file format
+	 */
+	public static final short VERSION = 2;
+
+	/**
+	 * The size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 6;
+
+	/**
+	 * The size of one record in bytes
+	 */
+	static final int RECORD_SIZE = 9 * 8 + 2 + 1;
+
+	/**
+	 * The size of one record of a version 1 trace in bytes
+	 */
+	static final int RECORD_SIZE_V1 = 8 * 8 + 2 + 1;
+
+	/*
+	 * The recorded values of every tick, indexed by tick
+	 */
+	final long[] time;
+	final double[] leftRaw;
+	final double[] rightRaw;
+	final double[] gyroRaw;
+	final double[] stickX;
+	final double[] stickY;
+	final short[] buttons;
+	final byte[] flags;
+	final double[] leftOutput;
+	final double[] rightOutput;
+	final double[] voltage;
+
+	/**
+	 * The number of ticks in the trace
+	 */
+	final int count;
+
+	/**
+	 * Allocate an empty trace
+	 */
+	private DriveTrace(int count) {
+		this.time = new long[count];
+		this.leftRaw = new double[count];
+		this.rightRaw = new double[count];
+		this.gyroRaw = new double[count];
+		this.stickX = new double[count];
+		this.stickY = new double[count];
+		this.buttons = new short[count];
+		this.flags = new byte[count];
+		this.leftOutput = new double[count];
+		this.rightOutput = new double[count];
+		this.voltage = new double[count];
+		this.count = count;
+	}
+
+	/**
+	 * Read a trace written by {@link DriveTraceWriter}
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The loaded trace
+	 * @throws IOException
+	 *             If the file cannot be read or is not a trace
+	 */
+	public static DriveTrace read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a drive trace");
+			}
+			short version = in.readShort();
+			if (version != VERSION && version != 1) {
+				throw new IOException("Unsupported trace version " + version);
+			}
+			boolean hasVoltage = version != 1;
+
+			// A record cut short by a power loss is dropped
+			DriveTrace trace = new DriveTrace(
+					(int) ((file.length() - HEADER_SIZE) / (hasVoltage ? RECORD_SIZE
+							: RECORD_SIZE_V1)));
+			for (int i = 0; i < trace.count; i++) {
+				trace.time[i] = in.readLong();
+				trace.leftRaw[i] = in.readDouble();
+				trace.rightRaw[i] = in.readDouble();
+				trace.gyroRaw[i] = in.readDouble();
+				trace.stickX[i] = in.readDouble();
+				trace.stickY[i] = in.readDouble();
+				trace.buttons[i] = in.readShort();
+				trace.flags[i] = in.readByte();
+				trace.leftOutput[i] = in.readDouble();
+				trace.rightOutput[i] = in.readDouble();
+				trace.voltage[i] = hasVoltage ? in.readDouble()
+						: VoltageSource.NOMINAL_VOLTAGE;
+			}
+			return trace;
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of ticks in the trace
+	 */
+	public int size() {
+		return count;
+	}
+}
@@ -0,0 +1,78 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.AsyncOutputStream;
+
+/**
+ * Writes a {@link DriveTrace}, one record per control tick.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DriveTraceWriter implements Closeable {
+
+	/**
+	 * The stream to write records to
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * Create a new trace file and write its header
+	 *
+	 * @param file
+	 *            The file to write. It is overwritten if it exists.
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public DriveTraceWriter(File file) throws IOException {
+		this.out = new DataOutputStream(new AsyncOutputStream(
+				new FileOutputStream(file, false), "Trace writer"));
+		out.writeInt(DriveTrace.MAGIC);
+		out.writeShort(DriveTrace.VERSION);
+	}
+
+	/**
+	 * Write the record of one tick
+	 *
+	 * @throws IOException
+	 *             If the record cannot be written
+	 */
+	public void write(long time, double leftRaw, double rightRaw,
+			double gyroRaw, double stickX, double stickY, int buttons,
+			int flags, double leftOutput, double rightOutput, double voltage)
+			throws IOException {
+		out.writeLong(time);
+		out.writeDouble(leftRaw);
+		out.writeDouble(rightRaw);
+		out.writeDouble(gyroRaw);
+		out.writeDouble(stickX);
+		out.writeDouble(stickY);
+		out.writeShort(buttons);
+		out.writeByte(flags);
+		out.writeDouble(leftOutput);
+		out.writeDouble(rightOutput);
+		out.writeDouble(voltage);
+	}
+
+	/**
+	 * Hand buffered records to the writer thread, without waiting for them to
+	 * be written
+	 *
+	 * @throws IOException
+	 *             If an earlier write failed
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
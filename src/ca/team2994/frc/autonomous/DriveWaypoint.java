@@ -36,6 +36,14 @@ public class DriveWaypoint implements Waypoint {
 		this.manager = manager;
 	}
 
+	/**
+	 * 
+	 * @return The distance to drive, in calibrated units
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
 	@Override
 	public long getTime() {
 		return time;
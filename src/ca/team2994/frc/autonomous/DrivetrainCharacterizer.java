@@ -0,0 +1,345 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Finds the {@link Feedforward} constants of each side of the drive train.
+ * The robot runs a slow output ramp (quasi-static, where acceleration is
+ * negligible) and a sudden output step, each forwards and backwards, while
+ * the encoders and outputs are sampled at a fixed rate into preallocated
+ * arrays. The constants are then fit by least squares on a worker thread,
+ * while the control loop keeps the motors stopped.
+ *
+ * The tests set the outputs without voltage compensation, so each output is
+ * recorded as the output that would give the same motor voltage at the
+ * nominal battery voltage. The constants then describe the drive train at
+ * nominal, which is what {@link VoltageCompensator} scales outputs from.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DrivetrainCharacterizer {
+
+	/**
+	 * The IO to run the tests on
+	 */
+	private final DriveIO io;
+
+	/**
+	 * The samples taken per second
+	 */
+	private final double sampleRate;
+
+	/**
+	 * How fast the quasi-static ramp raises the output, per second
+	 */
+	private final double rampRate;
+
+	/**
+	 * The output the quasi-static ramp stops at
+	 */
+	private final double rampMax;
+
+	/**
+	 * The output of the step test
+	 */
+	private final double stepOutput;
+
+	/**
+	 * How long the step test lasts, in seconds
+	 */
+	private final double stepTime;
+
+	/**
+	 * How long the robot is left to stop between tests, in seconds
+	 */
+	private final double restTime;
+
+	/**
+	 * Speeds below this are ignored by the fit, since friction is not
+	 * well defined there
+	 */
+	private final double minVelocity;
+
+	/**
+	 * The battery voltage the outputs are recorded at
+	 */
+	private final double nominal;
+
+	/*
+	 * The samples
+	 */
+	private final double[] time;
+	private final double[] leftDistance;
+	private final double[] rightDistance;
+	private final double[] leftOutput;
+	private final double[] rightOutput;
+	private final int[] run;
+	private int count;
+
+	/**
+	 * Initialize the characterizer from the "characterize." keys of a
+	 * configuration file
+	 *
+	 * @param io
+	 *            The IO to run the tests on
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public DrivetrainCharacterizer(DriveIO io, ConfigFile conf) {
+		this.io = io;
+		this.sampleRate = conf.getPropertyAsDouble("characterize.sampleRate", 200.0);
+		this.rampRate = conf.getPropertyAsDouble("characterize.rampRate", 0.1);
+		this.rampMax = conf.getPropertyAsDouble("characterize.rampMax", 0.5);
+		this.stepOutput = conf.getPropertyAsDouble("characterize.stepOutput", 0.5);
+		this.stepTime = conf.getPropertyAsDouble("characterize.stepTime", 1.5);
+		this.restTime = conf.getPropertyAsDouble("characterize.restTime", 1.0);
+		this.minVelocity = conf.getPropertyAsDouble("characterize.minVelocity", 0.05);
+		this.nominal = conf.getPropertyAsDouble("voltage.nominal",
+				VoltageSource.NOMINAL_VOLTAGE);
+
+		// Both directions of both tests, with a little room for late ticks
+		int capacity = (int) (sampleRate * 2.2 * (rampMax / rampRate + stepTime)) + 16;
+		this.time = new double[capacity];
+		this.leftDistance = new double[capacity];
+		this.rightDistance = new double[capacity];
+		this.leftOutput = new double[capacity];
+		this.rightOutput = new double[capacity];
+		this.run = new int[capacity];
+	}
+
+	/**
+	 * Run all the tests and fit the constants
+	 *
+	 * @return The constants, or null if the tests were cut short or the fit
+	 *         failed
+	 */
+	public Feedforward characterize() {
+		count = 0;
+		boolean done = quasiStatic(0, 1) && rest() && quasiStatic(1, -1)
+				&& rest() && step(2, 1) && rest() && step(3, -1) && rest();
+		io.setOutputs(0, 0);
+		if (!done) {
+			Utils.ROBOT_LOGGER.log(WARNING, "Characterization cut short");
+			return null;
+		}
+
+		// Fit on a worker so the control loop keeps running
+		ExecutorService worker = Executors.newSingleThreadExecutor();
+		try {
+			Future<Feedforward> fit = worker.submit(new Callable<Feedforward>() {
+				@Override
+				public Feedforward call() {
+					return fit();
+				}
+			});
+			while (!fit.isDone()) {
+				io.setOutputs(0, 0);
+				io.sleep(5);
+				io.update();
+			}
+			Feedforward result = fit.get();
+			Utils.ROBOT_LOGGER.log(INFO, "Characterized " + count
+					+ " samples: " + result);
+			return result;
+		} catch (InterruptedException | ExecutionException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+			return null;
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	/**
+	 * Ramp the output slowly up from zero
+	 */
+	private boolean quasiStatic(int id, int direction) {
+		long start = io.getTime();
+		double output = 0;
+		while (output < rampMax) {
+			output = rampRate * (io.getTime() - start) / 1.0e9;
+			if (!sample(id, direction * Math.min(output, rampMax))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Apply a constant output from standstill
+	 */
+	private boolean step(int id, int direction) {
+		long start = io.getTime();
+		while ((io.getTime() - start) / 1.0e9 < stepTime) {
+			if (!sample(id, direction * stepOutput)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stop the motors and let the robot come to rest
+	 */
+	private boolean rest() {
+		long start = io.getTime();
+		while ((io.getTime() - start) / 1.0e9 < restTime) {
+			io.setOutputs(0, 0);
+			if (!tick()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Record the current sensors with the output about to be set, scaled to
+	 * the nominal voltage, then set it and wait for the next sample
+	 */
+	private boolean sample(int id, double output) {
+		if (count < time.length) {
+			double voltage = io.getBatteryVoltage();
+			double scaled = voltage > 0 ? output * voltage / nominal : output;
+			time[count] = io.getTime() / 1.0e9;
+			leftDistance[count] = io.getLeftRawDistance();
+			rightDistance[count] = io.getRightRawDistance();
+			leftOutput[count] = scaled;
+			rightOutput[count] = scaled;
+			run[count] = id;
+			count++;
+		}
+		io.setOutputs(output, output);
+		return tick();
+	}
+
+	/**
+	 * Wait for the next sample time and read the sensors
+	 *
+	 * @return False if the robot left test mode
+	 */
+	private boolean tick() {
+		long next = io.getTime() + (long) (1.0e9 / sampleRate);
+		long wait = next - io.nanoTime();
+		if (wait > 0) {
+			try {
+				io.sleep(wait / 1000000);
+			} catch (InterruptedException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+				return false;
+			}
+		}
+		io.update();
+		return io.isEnabled() && io.isTest();
+	}
+
+	/**
+	 * Fit both sides
+	 */
+	Feedforward fit() {
+		double[] left = fitSide(leftDistance, leftOutput);
+		double[] right = fitSide(rightDistance, rightOutput);
+		if (left == null || right == null) {
+			return null;
+		}
+		return new Feedforward(left[0], left[1], left[2], right[0], right[1],
+				right[2]);
+	}
+
+	/**
+	 * Fit output = kS * sign(v) + kV * v + kA * a by least squares. The
+	 * speed is the central difference of the distance and the acceleration
+	 * the difference of the speeds on either side, within one run.
+	 *
+	 * @return kS, kV and kA, or null if there is not enough data
+	 */
+	private double[] fitSide(double[] distance, double[] output) {
+		// The normal equations, X^T X b = X^T y
+		double[][] xtx = new double[3][3];
+		double[] xty = new double[3];
+		int used = 0;
+
+		for (int i = 1; i + 1 < count; i++) {
+			if (run[i - 1] != run[i] || run[i + 1] != run[i]) {
+				continue;
+			}
+			double before = (distance[i] - distance[i - 1])
+					/ (time[i] - time[i - 1]);
+			double after = (distance[i + 1] - distance[i])
+					/ (time[i + 1] - time[i]);
+			double v = (before + after) / 2;
+			double a = (after - before) / ((time[i + 1] - time[i - 1]) / 2);
+			if (Math.abs(v) < minVelocity) {
+				continue;
+			}
+
+			double[] x = { Math.signum(v), v, a };
+			for (int r = 0; r < 3; r++) {
+				for (int c = 0; c < 3; c++) {
+					xtx[r][c] += x[r] * x[c];
+				}
+				xty[r] += x[r] * output[i];
+			}
+			used++;
+		}
+
+		if (used < 3) {
+			return null;
+		}
+		return solve(xtx, xty);
+	}
+
+	/**
+	 * Solve a 3x3 linear system by Gaussian elimination with partial pivoting
+	 *
+	 * @return The solution, or null if the system is singular
+	 */
+	static double[] solve(double[][] a, double[] b) {
+		int n = b.length;
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			for (int r = col + 1; r < n; r++) {
+				if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+					pivot = r;
+				}
+			}
+			if (Math.abs(a[pivot][col]) < 1e-12) {
+				return null;
+			}
+			double[] row = a[col];
+			a[col] = a[pivot];
+			a[pivot] = row;
+			double t = b[col];
+			b[col] = b[pivot];
+			b[pivot] = t;
+
+			for (int r = col + 1; r < n; r++) {
+				double f = a[r][col] / a[col][col];
+				for (int c = col; c < n; c++) {
+					a[r][c] -= f * a[col][c];
+				}
+				b[r] -= f * b[col];
+			}
+		}
+
+		double[] x = new double[n];
+		for (int r = n - 1; r >= 0; r--) {
+			double sum = b[r];
+			for (int c = r + 1; c < n; c++) {
+				sum -= a[r][c] * x[c];
+			}
+			x[r] = sum / a[r][r];
+		}
+		return x;
+	}
+}
@@ -0,0 +1,331 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.ConfigFile;
+
+/**
+ * A simple model of a skid-steer drive train for running the drive code
+ * without a robot. Each side is a first order lag from motor output to speed,
+ * with a static friction deadband and a fixed actuation delay. The heading
+ * follows from the speed difference and the track width, with the same sign
+ * as the raw gyro angle. The simulated gyro can drift at a fixed rate.
+ *
+ * The motors get their share of a simulated battery, which sags in
+ * proportion to the output drawn from it, so the same output drives slower
+ * on a flat battery. At the nominal voltage an output gives the speeds
+ * above.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DrivetrainModel implements VoltageSource {
+
+	/**
+	 * The speed at full output, in units per second
+	 */
+	private final double maxSpeed;
+
+	/**
+	 * The time constant of the speed response, in seconds
+	 */
+	private final double timeConstant;
+
+	/**
+	 * Outputs with a smaller magnitude than this don't move the robot
+	 */
+	private final double deadband;
+
+	/**
+	 * The distance between the left and right wheels, in units
+	 */
+	private final double trackWidth;
+
+	/**
+	 * The time between an output being set and it reaching the motors, in
+	 * seconds
+	 */
+	private final double delay;
+
+	/**
+	 * The outputs waiting to reach the motors, oldest first
+	 */
+	private final double[] leftQueue, rightQueue;
+
+	/**
+	 * The position in the output queues
+	 */
+	private int queueIndex;
+
+	/**
+	 * The time step the output queues were sized for, in seconds
+	 */
+	private final double step;
+
+	/**
+	 * The current speed of each side, in units per second
+	 */
+	private double leftSpeed, rightSpeed;
+
+	/**
+	 * The distance each side has travelled
+	 */
+	private double leftDistance, rightDistance;
+
+	/**
+	 * The rate the simulated gyro drifts at, in degrees per second
+	 */
+	private final double gyroDrift;
+
+	/**
+	 * The battery voltage with no output drawn
+	 */
+	private final double battery;
+
+	/**
+	 * How far the battery sags with full output on both sides, in volts
+	 */
+	private final double batterySag;
+
+	/**
+	 * The battery voltage of the last step
+	 */
+	private double voltage;
+
+	/**
+	 * The angle the robot has turned, in degrees
+	 */
+	private double angle;
+
+	/**
+	 * The angle the gyro has drifted, in degrees
+	 */
+	private double drifted;
+
+	/**
+	 * Initialize the model from the "model." keys of a configuration file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public DrivetrainModel(ConfigFile conf) {
+		this(conf.getPropertyAsDouble("model.maxSpeed", 10.0),
+				conf.getPropertyAsDouble("model.timeConstant", 0.15),
+				conf.getPropertyAsDouble("model.deadband", 0.05),
+				conf.getPropertyAsDouble("model.trackWidth", 2.0),
+				conf.getPropertyAsDouble("model.delay", 0.02),
+				conf.getPropertyAsDouble("model.step", 0.005),
+				conf.getPropertyAsDouble("model.gyroDrift", 0.0),
+				conf.getPropertyAsDouble("model.battery",
+						VoltageSource.NOMINAL_VOLTAGE),
+				conf.getPropertyAsDouble("model.batterySag", 0.0));
+	}
+
+	/**
+	 * Initialize the model
+	 *
+	 * @param maxSpeed
+	 *            The speed at full output in units per second
+	 * @param timeConstant
+	 *            The time constant of the speed response in seconds
+	 * @param deadband
+	 *            The smallest output that moves the robot
+	 * @param trackWidth
+	 *            The distance between the wheels in units
+	 * @param delay
+	 *            The actuation delay in seconds
+	 * @param step
+	 *            The time step {@link #step(double, double)} is called with,
+	 *            in seconds
+	 */
+	public DrivetrainModel(double maxSpeed, double timeConstant,
+			double deadband, double trackWidth, double delay, double step) {
+		this(maxSpeed, timeConstant, deadband, trackWidth, delay, step, 0.0);
+	}
+
+	/**
+	 * Initialize the model with a drifting gyro
+	 *
+	 * @param maxSpeed
+	 *            The speed at full output in units per second
+	 * @param timeConstant
+	 *            The time constant of the speed response in seconds
+	 * @param deadband
+	 *            The smallest output that moves the robot
+	 * @param trackWidth
+	 *            The distance between the wheels in units
+	 * @param delay
+	 *            The actuation delay in seconds
+	 * @param step
+	 *            The time step {@link #step(double, double)} is called with,
+	 *            in seconds
+	 * @param gyroDrift
+	 *            The rate the gyro drifts at, in degrees per second
+	 */
+	public DrivetrainModel(double maxSpeed, double timeConstant,
+			double deadband, double trackWidth, double delay, double step,
+			double gyroDrift) {
+		this(maxSpeed, timeConstant, deadband, trackWidth, delay, step,
+				gyroDrift, VoltageSource.NOMINAL_VOLTAGE, 0.0);
+	}
+
+	/**
+	 * Initialize the model with a drifting gyro and a battery that may not be
+	 * at the nominal voltage
+	 *
+	 * @param maxSpeed
+	 *            The speed at full output and nominal voltage in units per
+	 *            second
+	 * @param timeConstant
+	 *            The time constant of the speed response in seconds
+	 * @param deadband
+	 *            The smallest output that moves the robot at nominal voltage
+	 * @param trackWidth
+	 *            The distance between the wheels in units
+	 * @param delay
+	 *            The actuation delay in seconds
+	 * @param step
+	 *            The time step {@link #step(double, double)} is called with,
+	 *            in seconds
+	 * @param gyroDrift
+	 *            The rate the gyro drifts at, in degrees per second
+	 * @param battery
+	 *            The battery voltage with no output drawn
+	 * @param batterySag
+	 *            How far the battery sags with full output on both sides, in
+	 *            volts
+	 */
+	public DrivetrainModel(double maxSpeed, double timeConstant,
+			double deadband, double trackWidth, double delay, double step,
+			double gyroDrift, double battery, double batterySag) {
+		this.gyroDrift = gyroDrift;
+		this.battery = battery;
+		this.batterySag = batterySag;
+		this.voltage = battery;
+		this.maxSpeed = maxSpeed;
+		this.timeConstant = timeConstant;
+		this.deadband = deadband;
+		this.trackWidth = trackWidth;
+		this.delay = delay;
+		this.step = step;
+
+		int length = Math.max(1, (int) Math.round(delay / step));
+		this.leftQueue = new double[length];
+		this.rightQueue = new double[length];
+	}
+
+	/**
+	 *
+	 * @return A new model with the same parameters, at rest
+	 */
+	public DrivetrainModel copy() {
+		return new DrivetrainModel(maxSpeed, timeConstant, deadband,
+				trackWidth, delay, step, gyroDrift, battery, batterySag);
+	}
+
+	/**
+	 * Advance the model by one time step
+	 *
+	 * @param left
+	 *            The left output set this step
+	 * @param right
+	 *            The right output set this step
+	 */
+	public void step(double left, double right) {
+		double appliedLeft = leftQueue[queueIndex];
+		double appliedRight = rightQueue[queueIndex];
+		leftQueue[queueIndex] = left;
+		rightQueue[queueIndex] = right;
+		queueIndex = (queueIndex + 1) % leftQueue.length;
+
+		voltage = battery - batterySag
+				* (Math.min(1, Math.abs(appliedLeft)) + Math.min(1,
+						Math.abs(appliedRight))) / 2;
+
+		double alpha = step / (timeConstant + step);
+		leftSpeed += (target(appliedLeft) - leftSpeed) * alpha;
+		rightSpeed += (target(appliedRight) - rightSpeed) * alpha;
+
+		leftDistance += leftSpeed * step;
+		rightDistance += rightSpeed * step;
+		angle += Math.toDegrees((leftSpeed - rightSpeed) * step / trackWidth);
+		drifted += gyroDrift * step;
+	}
+
+	/**
+	 * The steady state speed for an output at the current battery voltage
+	 */
+	private double target(double output) {
+		double share = Math.max(-1, Math.min(1, output)) * voltage
+				/ VoltageSource.NOMINAL_VOLTAGE;
+		if (Math.abs(share) < deadband) {
+			return 0;
+		}
+		return share * maxSpeed;
+	}
+
+	/**
+	 *
+	 * @return The time step in seconds
+	 */
+	public double getStep() {
+		return step;
+	}
+
+	/**
+	 *
+	 * @return The distance the left side has travelled
+	 */
+	public double getLeftDistance() {
+		return leftDistance;
+	}
+
+	/**
+	 *
+	 * @return The distance the right side has travelled
+	 */
+	public double getRightDistance() {
+		return rightDistance;
+	}
+
+	/**
+	 *
+	 * @return The left speed in units per second
+	 */
+	public double getLeftSpeed() {
+		return leftSpeed;
+	}
+
+	/**
+	 *
+	 * @return The right speed in units per second
+	 */
+	public double getRightSpeed() {
+		return rightSpeed;
+	}
+
+	/**
+	 *
+	 * @return The angle the robot has turned, with the sign of the raw gyro
+	 */
+	public double getAngle() {
+		return angle;
+	}
+
+	/**
+	 *
+	 * @return The angle the simulated gyro reads, which is the angle turned
+	 *         plus its drift
+	 */
+	public double getGyroAngle() {
+		return angle + drifted;
+	}
+
+	/**
+	 *
+	 * @return The battery voltage of the last step
+	 */
+	@Override
+	public double getVoltage() {
+		return voltage;
+	}
+}
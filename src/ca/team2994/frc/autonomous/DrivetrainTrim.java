@@ -0,0 +1,314 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+
+/**
+ * Learns how much faster one side of the drive train is than the other for
+ * the same output, and scales the outputs so both sides match. While both
+ * sides are driven the same way with a steady output, the distance each side
+ * moves and its output integrated over time are collected over a window of
+ * at least trim.windowSeconds. A single encoder count per tick says nothing
+ * about speed, so only whole windows are used: the ratio of the left and
+ * right distances per unit of output over the window is folded into an
+ * exponential moving average of its logarithm, with a time constant of
+ * trim.tau seconds of driving. The stronger side is scaled down by that
+ * ratio.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DrivetrainTrim {
+
+	/**
+	 * The shortest window a ratio is taken over, in seconds
+	 */
+	private final double window;
+
+	/**
+	 * The time constant of the moving average, in seconds of learning
+	 */
+	private final double tau;
+
+	/**
+	 * The smallest output that is used for learning, to stay clear of the
+	 * deadband
+	 */
+	private final double minOutput;
+
+	/**
+	 * How far either output may move from where it was at the start of a
+	 * window before the window is thrown away
+	 */
+	private final double maxOutputChange;
+
+	/**
+	 * The largest fraction either side may be scaled down by
+	 */
+	private final double maxTrim;
+
+	/**
+	 * The seconds of learning needed before the trim is saved
+	 */
+	private final double minSeconds;
+
+	/**
+	 * The moving average of log(left speed per output / right speed per
+	 * output)
+	 */
+	private double logRatio;
+
+	/**
+	 * The number of windows learned from since the trim was loaded
+	 */
+	private int windows;
+
+	/**
+	 * The seconds of driving learned from since the trim was loaded
+	 */
+	private double learned;
+
+	/*
+	 * The current window: where both encoders were at its start, the outputs
+	 * at its start, each output integrated over it and how long it has run
+	 */
+	private double startLeft, startRight;
+	private double startLeftOutput, startRightOutput;
+	private double leftIntegral, rightIntegral;
+	private double duration;
+
+	/**
+	 * The time and outputs of the previous observation
+	 */
+	private long lastTime;
+	private double lastLeftOutput, lastRightOutput;
+
+	/**
+	 * Whether there is a previous observation
+	 */
+	private boolean hasLast;
+
+	/**
+	 * Initialize the trim from the "trim." keys of a configuration file, with
+	 * both sides balanced
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public DrivetrainTrim(ConfigFile conf) {
+		this.window = conf.getPropertyAsDouble("trim.windowSeconds", 0.25);
+		this.tau = conf.getPropertyAsDouble("trim.tau", 20.0);
+		this.minOutput = conf.getPropertyAsDouble("trim.minOutput", 0.2);
+		this.maxOutputChange = conf.getPropertyAsDouble(
+				"trim.maxOutputChange", 0.05);
+		this.maxTrim = conf.getPropertyAsDouble("trim.maxTrim", 0.2);
+		this.minSeconds = conf.getPropertyAsDouble("trim.minSeconds", 10.0);
+	}
+
+	/**
+	 * Learn from the encoder movement since the last observation, which was
+	 * caused by the outputs set then. Both sides have to be driven the same
+	 * way, above the deadband and close to the outputs the window started
+	 * with, or the window is started again.
+	 *
+	 * @param time
+	 *            The time of the encoder readings in nanoseconds
+	 * @param leftDistance
+	 *            The raw left encoder distance
+	 * @param rightDistance
+	 *            The raw right encoder distance
+	 * @param leftOutput
+	 *            The left output about to be set, after trimming
+	 * @param rightOutput
+	 *            The right output about to be set, after trimming
+	 */
+	public void observe(long time, double leftDistance, double rightDistance,
+			double leftOutput, double rightOutput) {
+		if (!hasLast) {
+			startWindow(leftDistance, rightDistance, leftOutput, rightOutput);
+		} else {
+			double dt = (time - lastTime) / 1.0e9;
+			if (dt <= 0) {
+				// Set again in the same tick; the last outputs set are the
+				// ones that drive
+				if (duration == 0) {
+					startWindow(leftDistance, rightDistance, leftOutput,
+							rightOutput);
+				}
+				lastLeftOutput = leftOutput;
+				lastRightOutput = rightOutput;
+				return;
+			}
+
+			if (isSteady()) {
+				leftIntegral += lastLeftOutput * dt;
+				rightIntegral += lastRightOutput * dt;
+				duration += dt;
+				if (duration >= window) {
+					learn(leftDistance - startLeft, rightDistance - startRight);
+					startWindow(leftDistance, rightDistance, leftOutput,
+							rightOutput);
+				}
+			} else {
+				startWindow(leftDistance, rightDistance, leftOutput,
+						rightOutput);
+			}
+		}
+
+		lastTime = time;
+		lastLeftOutput = leftOutput;
+		lastRightOutput = rightOutput;
+		hasLast = true;
+	}
+
+	/**
+	 *
+	 * @return Whether the outputs set last time can be learned from in the
+	 *         current window
+	 */
+	private boolean isSteady() {
+		return Math.abs(lastLeftOutput) >= minOutput
+				&& Math.abs(lastRightOutput) >= minOutput
+				&& lastLeftOutput * lastRightOutput > 0
+				&& Math.abs(lastLeftOutput - startLeftOutput) <= maxOutputChange
+				&& Math.abs(lastRightOutput - startRightOutput) <= maxOutputChange;
+	}
+
+	/**
+	 * Start a new window at the current encoder distances
+	 */
+	private void startWindow(double leftDistance, double rightDistance,
+			double leftOutput, double rightOutput) {
+		startLeft = leftDistance;
+		startRight = rightDistance;
+		startLeftOutput = leftOutput;
+		startRightOutput = rightOutput;
+		leftIntegral = 0;
+		rightIntegral = 0;
+		duration = 0;
+	}
+
+	/**
+	 * Fold the ratio of a finished window into the moving average
+	 *
+	 * @param left
+	 *            How far the left side moved over the window
+	 * @param right
+	 *            How far the right side moved over the window
+	 */
+	private void learn(double left, double right) {
+		double leftRate = left / leftIntegral;
+		double rightRate = right / rightIntegral;
+		if (!(leftRate > 0) || !(rightRate > 0)) {
+			return;
+		}
+		logRatio += (Math.log(leftRate / rightRate) - logRatio) * duration
+				/ (tau + duration);
+		learned += duration;
+		windows++;
+	}
+
+	/**
+	 * Forget the last observation, for example after the robot was disabled
+	 */
+	public void restart() {
+		hasLast = false;
+	}
+
+	/**
+	 *
+	 * @return The factor to multiply the left output by
+	 */
+	public double getLeftScale() {
+		return logRatio > 0 ? Math.max(1 - maxTrim, Math.exp(-logRatio)) : 1;
+	}
+
+	/**
+	 *
+	 * @return The factor to multiply the right output by
+	 */
+	public double getRightScale() {
+		return logRatio < 0 ? Math.max(1 - maxTrim, Math.exp(logRatio)) : 1;
+	}
+
+	/**
+	 *
+	 * @return The number of windows learned from since the trim was loaded
+	 */
+	public int getWindows() {
+		return windows;
+	}
+
+	/**
+	 * Load a trim saved with {@link #save(File)}. The trim stays balanced if
+	 * the file does not exist yet, cannot be read or is malformed.
+	 *
+	 * @param file
+	 *            The file to read
+	 */
+	public void load(File file) {
+		if (!file.exists()) {
+			Utils.ROBOT_LOGGER.log(INFO, "No trim saved in " + file
+					+ ", starting balanced");
+			return;
+		}
+		try {
+			List<String> guavaResult = Files.readLines(file, Charsets.UTF_8);
+			Iterable<String> guavaResultFiltered = Iterables.filter(
+					guavaResult, Utils.skipComments);
+
+			String[] s = Iterables
+					.toArray(Utils.SPLITTER.split(guavaResultFiltered
+							.iterator().next()), String.class);
+
+			double leftScale = Double.parseDouble(s[0]);
+			double rightScale = Double.parseDouble(s[1]);
+			if (!(leftScale > 0) || !(rightScale > 0)) {
+				throw new NumberFormatException("Scales must be positive");
+			}
+			logRatio = Math.log(rightScale / leftScale);
+		} catch (IOException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		} catch (NoSuchElementException | ArrayIndexOutOfBoundsException
+				| NumberFormatException e) {
+			// Empty, cut short or hand edited badly
+			Utils.ROBOT_LOGGER.log(WARNING, "Trim file " + file
+					+ " is malformed, starting balanced: " + e);
+		}
+	}
+
+	/**
+	 * Save the trim as "left scale, right scale" if enough has been learned
+	 * since it was loaded
+	 *
+	 * @param file
+	 *            The file to write
+	 */
+	public void save(File file) {
+		if (learned < minSeconds) {
+			return;
+		}
+		try {
+			Files.write("// Learned from " + windows + " windows, " + learned
+					+ "s\n" + getLeftScale() + ", " + getRightScale() + "\n",
+					file, Charsets.UTF_8);
+		} catch (IOException e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+		}
+		windows = 0;
+		learned = 0;
+	}
+}
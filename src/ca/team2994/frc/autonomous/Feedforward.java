@@ -0,0 +1,156 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+
+import ca.team2994.frc.utils.Utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+
+/**
+ * The feedforward constants of each side of the drive train, as found by
+ * {@link DrivetrainCharacterizer}. The output needed for a speed v and
+ * acceleration a is kS * sign(v) + kV * v + kA * a, where kS is the output
+ * needed to overcome static friction.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class Feedforward {
+
+	/**
+	 * The left constants
+	 */
+	public final double leftKS, leftKV, leftKA;
+
+	/**
+	 * The right constants
+	 */
+	public final double rightKS, rightKV, rightKA;
+
+	/**
+	 * Initialize the feedforward
+	 *
+	 * @param leftKS
+	 *            The left static friction output
+	 * @param leftKV
+	 *            The left output per unit of speed
+	 * @param leftKA
+	 *            The left output per unit of acceleration
+	 * @param rightKS
+	 *            The right static friction output
+	 * @param rightKV
+	 *            The right output per unit of speed
+	 * @param rightKA
+	 *            The right output per unit of acceleration
+	 */
+	public Feedforward(double leftKS, double leftKV, double leftKA,
+			double rightKS, double rightKV, double rightKA) {
+		this.leftKS = leftKS;
+		this.leftKV = leftKV;
+		this.leftKA = leftKA;
+		this.rightKS = rightKS;
+		this.rightKV = rightKV;
+		this.rightKA = rightKA;
+	}
+
+	/**
+	 *
+	 * @param velocity
+	 *            The left speed in units per second
+	 * @param acceleration
+	 *            The left acceleration in units per second squared
+	 * @return The left output needed
+	 */
+	public double getLeft(double velocity, double acceleration) {
+		return leftKS * Math.signum(velocity) + leftKV * velocity + leftKA
+				* acceleration;
+	}
+
+	/**
+	 *
+	 * @param velocity
+	 *            The right speed in units per second
+	 * @param acceleration
+	 *            The right acceleration in units per second squared
+	 * @return The right output needed
+	 */
+	public double getRight(double velocity, double acceleration) {
+		return rightKS * Math.signum(velocity) + rightKV * velocity + rightKA
+				* acceleration;
+	}
+
+	/**
+	 * Read the constants from the first line of a file that is not a comment,
+	 * as "left kS, left kV, left kA, right kS, right kV, right kA"
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The constants
+	 * @throws IOException
+	 *             If the file cannot be read, or has no line of six numbers
+	 */
+	public static Feedforward read(File file) throws IOException {
+		List<String> guavaResult = Files.readLines(file, Charsets.UTF_8);
+		Iterator<String> lines = Iterables.filter(guavaResult,
+				Utils.skipComments).iterator();
+		if (!lines.hasNext()) {
+			throw new IOException("No feedforward constants in " + file);
+		}
+
+		String[] s = Iterables.toArray(Utils.SPLITTER.split(lines.next()),
+				String.class);
+		if (s.length < 6) {
+			throw new IOException("Expected 6 feedforward constants in "
+					+ file + ", found " + s.length);
+		}
+
+		double[] k = new double[6];
+		for (int i = 0; i < k.length; i++) {
+			try {
+				k[i] = Double.parseDouble(s[i]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed feedforward constant \""
+						+ s[i] + "\" in " + file, e);
+			}
+		}
+		return new Feedforward(k[0], k[1], k[2], k[3], k[4], k[5]);
+	}
+
+	/**
+	 * Write the constants in the format {@link #read(File)} reads, replacing
+	 * the old ones in a single step
+	 *
+	 * @param target
+	 *            The file to write
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public void write(File target) throws IOException {
+		File temp = new File(target.getPath() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp, false)) {
+			file.write(("// Left kS, kV, kA, right kS, kV, kA\n" + leftKS
+					+ ", " + leftKV + ", " + leftKA + ", " + rightKS + ", "
+					+ rightKV + ", " + rightKA + "\n").getBytes(Charsets.UTF_8));
+			// Make sure the data is on disk before it replaces the old file
+			file.getFD().sync();
+		}
+		java.nio.file.Files.move(temp.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return "left kS=" + leftKS + ", kV=" + leftKV + ", kA=" + leftKA
+				+ "; right kS=" + rightKS + ", kV=" + rightKV + ", kA="
+				+ rightKA;
+	}
+}
@@ -0,0 +1,366 @@
+package ca.team2994.frc.autonomous;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Custom JDK Flight Recorder events, so a .jfr recording shows waypoints,
+ * control ticks, configuration reloads and mode changes next to GC and JIT
+ * activity. The event types are defined at run time through
+ * jdk.jfr.EventFactory, since the robot runs on Java 8 where JFR may not
+ * exist. Nothing is sent until {@link #configure(ConfigFile)} is called with
+ * the configuration the program loaded; without JFR, or with
+ * jfr.enabled=false, every method returns right away. With JFR present,
+ * nothing is allocated unless a recording that includes the event is
+ * running.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class FlightEvents {
+
+	/**
+	 * One event type created through the EventFactory
+	 */
+	private static class EventType {
+
+		/**
+		 * The factory that creates events of this type
+		 */
+		private final Object factory;
+
+		/**
+		 * EventFactory.newEvent and Event.isEnabled
+		 */
+		private final MethodHandle newEvent, isEnabled;
+
+		/**
+		 * An event that is never committed, to ask whether the type is being
+		 * recorded without allocating
+		 */
+		private final Object probe;
+
+		EventType(Object factory, MethodHandle newEvent,
+				MethodHandle isEnabled) throws Throwable {
+			this.factory = factory;
+			this.newEvent = newEvent;
+			this.isEnabled = isEnabled;
+			this.probe = newEvent.invoke(factory);
+		}
+
+		boolean isEnabled() {
+			try {
+				return (boolean) isEnabled.invoke(probe);
+			} catch (Throwable t) {
+				return false;
+			}
+		}
+
+		Object newEvent() throws Throwable {
+			return newEvent.invoke(factory);
+		}
+	}
+
+	/**
+	 * The event types, defined the first time events are enabled
+	 */
+	private static class Types {
+
+		/*
+		 * The jdk.jfr methods used, or null if JFR is not available
+		 */
+		static final MethodHandle BEGIN;
+		static final MethodHandle COMMIT;
+		static final MethodHandle SET;
+
+		/*
+		 * The event types, or null if JFR is not available
+		 */
+		static final EventType WAYPOINT;
+		static final EventType CONTROL_TICK;
+		static final EventType CONFIG_RELOAD;
+		static final EventType MODE_TRANSITION;
+
+		/**
+		 * Whether JFR is available on this JVM
+		 */
+		static final boolean AVAILABLE;
+
+		static {
+			MethodHandle begin = null, commit = null, set = null;
+			EventType waypoint = null, tick = null, reload = null, transition = null;
+			boolean available = false;
+
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				Class<?> eventClass = Class.forName("jdk.jfr.Event");
+				Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+
+				MethodHandle newEvent = lookup.findVirtual(factoryClass,
+						"newEvent", MethodType.methodType(eventClass));
+				MethodHandle isEnabled = lookup.findVirtual(eventClass, "isEnabled",
+						MethodType.methodType(boolean.class));
+				begin = lookup.findVirtual(eventClass, "begin",
+						MethodType.methodType(void.class));
+				commit = lookup.findVirtual(eventClass, "commit",
+						MethodType.methodType(void.class));
+				set = lookup.findVirtual(eventClass, "set", MethodType
+						.methodType(void.class, int.class, Object.class));
+
+				Definer define = new Definer(lookup, factoryClass, newEvent,
+						isEnabled);
+				waypoint = define.type("Waypoint",
+						"A drive, turn or playback",
+						String.class, "type", double.class, "target",
+						double.class, "error", String.class, "failure");
+				tick = define.type("ControlTick",
+						"A sampled control loop tick",
+						String.class, "loop", double.class, "leftOutput",
+						double.class, "rightOutput", double.class,
+						"leftDistance", double.class, "rightDistance",
+						double.class, "heading");
+				reload = define.type("ConfigReload",
+						"Constants or a routine read from a file",
+						String.class, "what", String.class, "file");
+				transition = define.type("ModeTransition",
+						"The robot changed mode",
+						String.class, "from", String.class, "to");
+				available = true;
+			} catch (Throwable t) {
+				// No JFR on this JVM
+				waypoint = tick = reload = transition = null;
+				available = false;
+			}
+
+			BEGIN = begin;
+			COMMIT = commit;
+			SET = set;
+			WAYPOINT = waypoint;
+			CONTROL_TICK = tick;
+			CONFIG_RELOAD = reload;
+			MODE_TRANSITION = transition;
+			AVAILABLE = available;
+		}
+	}
+
+	/**
+	 * Whether events are sent, set by {@link #configure(ConfigFile)}
+	 */
+	private static volatile boolean enabled;
+
+	/**
+	 * Only every this many control ticks of a loop is sent as an event
+	 */
+	private static volatile int tickSampleEvery = 10;
+
+	/**
+	 * Read the "jfr." keys of the configuration the program loaded. Call
+	 * this once the configuration is read and before the loops start; until
+	 * then no events are sent.
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public static void configure(ConfigFile conf) {
+		tickSampleEvery = Math.max(1,
+				conf.getPropertyAsInteger("jfr.tickSampleEvery", 10));
+		// Only look for JFR if it is wanted
+		enabled = conf.getPropertyAsBoolean("jfr.enabled", true)
+				&& Types.AVAILABLE;
+	}
+
+	/**
+	 * Defines event types through the EventFactory
+	 */
+	private static class Definer {
+
+		private final MethodHandle newAnnotation, newValue, create, newEvent,
+				isEnabled;
+
+		Definer(MethodHandles.Lookup lookup, Class<?> factoryClass,
+				MethodHandle newEvent, MethodHandle isEnabled)
+				throws Throwable {
+			this.newAnnotation = lookup.findConstructor(
+					Class.forName("jdk.jfr.AnnotationElement"), MethodType
+							.methodType(void.class, Class.class, Object.class));
+			this.newValue = lookup.findConstructor(
+					Class.forName("jdk.jfr.ValueDescriptor"), MethodType
+							.methodType(void.class, Class.class, String.class));
+			this.create = lookup.findStatic(factoryClass, "create", MethodType
+					.methodType(factoryClass, List.class, List.class));
+			this.newEvent = newEvent;
+			this.isEnabled = isEnabled;
+		}
+
+		/**
+		 * Define an event type named "ca.team2994.<name>" with fields given
+		 * as type, name pairs
+		 */
+		EventType type(String name, String description, Object... fields)
+				throws Throwable {
+			List<Object> annotations = new ArrayList<Object>();
+			annotations.add(newAnnotation.invoke(annotation("jdk.jfr.Name"),
+					"ca.team2994." + name));
+			annotations.add(newAnnotation.invoke(annotation("jdk.jfr.Label"), name));
+			annotations.add(newAnnotation.invoke(
+					annotation("jdk.jfr.Description"), description));
+			Object category = Array.newInstance(String.class, 1);
+			Array.set(category, 0, "Robot");
+			annotations.add(newAnnotation.invoke(annotation("jdk.jfr.Category"),
+					category));
+
+			List<Object> values = new ArrayList<Object>();
+			for (int i = 0; i < fields.length; i += 2) {
+				values.add(newValue.invoke((Class<?>) fields[i],
+						(String) fields[i + 1]));
+			}
+
+			return new EventType(create.invoke(annotations, values),
+					newEvent, isEnabled);
+		}
+	}
+
+	/**
+	 * Load an annotation class by name
+	 */
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation> annotation(String name)
+			throws ClassNotFoundException {
+		return (Class<? extends Annotation>) Class.forName(name);
+	}
+
+	/**
+	 * Start a waypoint event. Call before the waypoint runs and pass the
+	 * result to {@link #endWaypoint(Object, String, double, double, String)}.
+	 *
+	 * @return The event, or null if it is not being recorded
+	 */
+	public static Object beginWaypoint() {
+		if (!enabled || !Types.WAYPOINT.isEnabled()) {
+			return null;
+		}
+		try {
+			Object event = Types.WAYPOINT.newEvent();
+			Types.BEGIN.invoke(event);
+			return event;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Commit a waypoint event
+	 *
+	 * @param event
+	 *            The result of {@link #beginWaypoint()}
+	 * @param type
+	 *            What kind of waypoint it was
+	 * @param target
+	 *            The distance or angle it was going for, or NaN if it had
+	 *            none
+	 * @param error
+	 *            How far from the target it ended
+	 * @param failure
+	 *            Why the watchdog stopped it, or null
+	 */
+	public static void endWaypoint(Object event, String type, double target,
+			double error, String failure) {
+		if (event == null) {
+			return;
+		}
+		commit(event, type, target, error, failure);
+	}
+
+	/**
+	 * Send a control tick event for one tick in every jfr.tickSampleEvery of
+	 * a loop
+	 *
+	 * @param loop
+	 *            The timer of the loop, which counts its ticks
+	 * @param io
+	 *            The sensors of the tick
+	 * @param leftOutput
+	 *            The left output set in the tick
+	 * @param rightOutput
+	 *            The right output set in the tick
+	 */
+	public static void controlTick(LoopTimer loop, DriveIO io,
+			double leftOutput, double rightOutput) {
+		if (!enabled || !loop.sampleTick(tickSampleEvery)) {
+			return;
+		}
+		if (!Types.CONTROL_TICK.isEnabled()) {
+			return;
+		}
+		try {
+			commit(Types.CONTROL_TICK.newEvent(), loop.getName(), leftOutput,
+					rightOutput, io.getLeftDistance(), io.getRightDistance(),
+					io.getHeading());
+		} catch (Throwable t) {
+			// Dropped
+		}
+	}
+
+	/**
+	 * Send a configuration reload event
+	 *
+	 * @param what
+	 *            What was read
+	 * @param file
+	 *            The file it was read from
+	 */
+	public static void configReload(String what, String file) {
+		if (!enabled || !Types.CONFIG_RELOAD.isEnabled()) {
+			return;
+		}
+		try {
+			commit(Types.CONFIG_RELOAD.newEvent(), what, file);
+		} catch (Throwable t) {
+			// Dropped
+		}
+	}
+
+	/**
+	 * Send a mode transition event
+	 *
+	 * @param from
+	 *            The mode the robot was in
+	 * @param to
+	 *            The mode the robot is now in
+	 */
+	public static void modeTransition(String from, String to) {
+		if (!enabled || !Types.MODE_TRANSITION.isEnabled()) {
+			return;
+		}
+		try {
+			commit(Types.MODE_TRANSITION.newEvent(), from, to);
+		} catch (Throwable t) {
+			// Dropped
+		}
+	}
+
+	/**
+	 * Set the fields of an event in order and commit it
+	 */
+	private static void commit(Object event, Object... values) {
+		try {
+			for (int i = 0; i < values.length; i++) {
+				Types.SET.invoke(event, i, values[i]);
+			}
+			Types.COMMIT.invoke(event);
+		} catch (Throwable t) {
+			Utils.logException(Utils.ROBOT_LOGGER, new Exception(
+					"Could not commit flight event " + Arrays.asList(values), t));
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package ca.team2994.frc.autonomous;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.SimPID;
+import ca.team2994.frc.utils.Utils;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Searches a grid of PID constants, epsilons, minimum done cycles and output
+ * limits for {@link DriveManager#driveStraight(double)} and
+ * {@link DriveManager#driveTurn(int)}. Every combination drives the real
+ * {@link DriveManagerImpl} loops against its own {@link DrivetrainModel}, so
+ * the grid is split across all cores with fork/join. Each run is scored on
+ * settle time, overshoot and the error once the robot has come to rest; the
+ * Pareto front of those scores is printed and the combination with the best
+ * weighted score is written to the PID files. Run it with:
+ *
+ * <pre>
+ * java ca.team2994.frc.autonomous.GainSweep [drive.properties]
+ * </pre>
+ *
+ * Each dimension is set with a "min, max, steps" key such as
+ * sweep.turn.p or sweep.drive.maxOutput.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class GainSweep {
+
+	/**
+	 * One combination of constants and how it scored
+	 */
+	public static class Candidate {
+
+		/**
+		 * The PID constants
+		 */
+		public final double p, i, d, e;
+
+		/**
+		 * The number of cycles in range before the PID is done
+		 */
+		public final int minCycles;
+
+		/**
+		 * The largest output
+		 */
+		public final double maxOutput;
+
+		/**
+		 * Whether the PID finished before the timeout
+		 */
+		boolean settled;
+
+		/**
+		 * The time the PID took to finish, in seconds
+		 */
+		double settleTime;
+
+		/**
+		 * The furthest the robot went past the target
+		 */
+		double overshoot;
+
+		/**
+		 * The distance from the target once the robot came to rest
+		 */
+		double finalError;
+
+		Candidate(double p, double i, double d, double e, int minCycles,
+				double maxOutput) {
+			this.p = p;
+			this.i = i;
+			this.d = d;
+			this.e = e;
+			this.minCycles = minCycles;
+			this.maxOutput = maxOutput;
+		}
+
+		/**
+		 *
+		 * @param other
+		 *            The candidate to compare with
+		 * @return Whether this candidate is no worse than the other in every
+		 *         score and better in at least one
+		 */
+		public boolean dominates(Candidate other) {
+			return settleTime <= other.settleTime
+					&& overshoot <= other.overshoot
+					&& finalError <= other.finalError
+					&& (settleTime < other.settleTime
+							|| overshoot < other.overshoot || finalError < other.finalError);
+		}
+
+		@Override
+		public String toString() {
+			return "P=" + p + ", I=" + i + ", D=" + d + ", E=" + e
+					+ ", minCycles=" + minCycles + ", max=" + maxOutput
+					+ " -> settle " + settleTime + "s, overshoot " + overshoot
+					+ ", final error " + finalError;
+		}
+	}
+
+	/**
+	 * Run both sweeps and write the best constants to the PID files
+	 *
+	 * @param args
+	 *            Optionally, the configuration file to use
+	 */
+	public static void main(String[] args) {
+		ConfigFile conf = args.length > 0 ? new ConfigFile(args[0])
+				: new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		FlightEvents.configure(conf);
+		GainSweep sweep = new GainSweep(conf);
+
+		// Plenty of combinations stall or time out, which is not news
+		Utils.ROBOT_LOGGER.setLevel(Level.SEVERE);
+
+		Candidate turn = sweep.run(true);
+		if (turn != null) {
+			DriveManagerImpl.writePIDFile(conf.getProperty("gyroPID.file",
+					Utils.GYRO_PID_FILE_LOC), "Gain sweep: " + turn, turn.p,
+					turn.i, turn.d, turn.e, turn.minCycles, turn.maxOutput);
+		}
+
+		Candidate drive = sweep.run(false);
+		if (drive != null) {
+			DriveManagerImpl.writePIDFile(conf.getProperty("encoderPID.file",
+					Utils.ENCODER_PID_FILE_LOC), "Gain sweep: " + drive,
+					drive.p, drive.i, drive.d, drive.e, drive.minCycles,
+					drive.maxOutput);
+		}
+	}
+
+	/**
+	 * The combinations evaluated by one task before it stops splitting
+	 */
+	private static final int TASK_SIZE = 32;
+
+	/**
+	 * The drive configuration file
+	 */
+	private final ConfigFile conf;
+
+	/**
+	 * The drive train every combination is run against
+	 */
+	private final DrivetrainModel model;
+
+	/**
+	 * The pool the sweep runs in
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The longest one run may take, in seconds
+	 */
+	private final double timeout;
+
+	/**
+	 * How long the robot is left to coast after the PID is done, in seconds
+	 */
+	private final double coastTime;
+
+	/**
+	 * The weights of the scores when choosing from the Pareto front
+	 */
+	private final double settleWeight, overshootWeight, errorWeight;
+
+	/**
+	 * Initialize a sweep from the "sweep." and "model." keys of a
+	 * configuration file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public GainSweep(ConfigFile conf) {
+		this.conf = conf;
+		this.model = new DrivetrainModel(conf);
+		this.pool = new ForkJoinPool(conf.getPropertyAsInteger(
+				"sweep.threads", Runtime.getRuntime().availableProcessors()));
+		this.timeout = conf.getPropertyAsDouble("sweep.timeout", 5.0);
+		this.coastTime = conf.getPropertyAsDouble("sweep.coastTime", 1.0);
+		this.settleWeight = conf.getPropertyAsDouble("sweep.settleWeight", 1.0);
+		this.overshootWeight = conf.getPropertyAsDouble(
+				"sweep.overshootWeight", 1.0);
+		this.errorWeight = conf.getPropertyAsDouble("sweep.errorWeight", 10.0);
+	}
+
+	/**
+	 * Sweep the constants for turning or driving straight and print the
+	 * Pareto front
+	 *
+	 * @param turn
+	 *            Whether to sweep the turning constants instead of the
+	 *            driving ones
+	 * @return The combination on the front with the best weighted score, or
+	 *         null if none settled
+	 */
+	public Candidate run(boolean turn) {
+		String prefix = turn ? "sweep.turn." : "sweep.drive.";
+		double target = conf.getPropertyAsDouble(prefix + "target",
+				turn ? 90.0 : 5.0);
+
+		final Candidate[] candidates = grid(
+				range(prefix + "p", turn ? "0.005, 0.05, 10" : "0.5, 4.0, 10"),
+				range(prefix + "i", turn ? "0.0, 0.001, 3" : "0.0, 0.01, 3"),
+				range(prefix + "d", turn ? "0.0, 0.5, 6" : "0.0, 20.0, 6"),
+				range(prefix + "e", turn ? "0.5, 2.0, 3" : "0.05, 0.2, 3"),
+				range(prefix + "minCycles", "3, 10, 3"),
+				range(prefix + "maxOutput", "0.25, 0.75, 3"));
+
+		long start = System.nanoTime();
+		pool.invoke(new Sweep(candidates, 0, candidates.length, turn, target));
+		long elapsed = System.nanoTime() - start;
+
+		List<Candidate> front = paretoFront(candidates);
+		System.out.println((turn ? "Turn" : "Drive") + " sweep: "
+				+ candidates.length + " combinations in " + elapsed / 1.0e6
+				+ " ms, " + front.size() + " on the Pareto front");
+		for (Candidate c : front) {
+			System.out.println("  " + c);
+		}
+
+		Candidate best = null;
+		for (Candidate c : front) {
+			if (best == null || score(c) < score(best)) {
+				best = c;
+			}
+		}
+		System.out.println("Best: " + best);
+		return best;
+	}
+
+	/**
+	 * Evaluates a range of the grid, splitting it in half until it is small
+	 */
+	@SuppressWarnings("serial")
+	private class Sweep extends RecursiveAction {
+
+		private final Candidate[] candidates;
+		private final int from, to;
+		private final boolean turn;
+		private final double target;
+
+		Sweep(Candidate[] candidates, int from, int to, boolean turn,
+				double target) {
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+			this.turn = turn;
+			this.target = target;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= TASK_SIZE) {
+				for (int k = from; k < to; k++) {
+					evaluate(candidates[k], turn, target);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Sweep(candidates, from, mid, turn, target),
+					new Sweep(candidates, mid, to, turn, target));
+		}
+	}
+
+	/**
+	 * Score one combination by driving or turning to the target in a fresh
+	 * simulation
+	 *
+	 * @param c
+	 *            The combination to score
+	 * @param turn
+	 *            Whether to turn instead of driving straight
+	 * @param target
+	 *            The degrees to turn or the units to drive
+	 */
+	void evaluate(Candidate c, boolean turn, double target) {
+		final double sign = Math.signum(target);
+		final double[] furthest = { 0 };
+		final boolean measureTurn = turn;
+
+		SimDriveIO io = new SimDriveIO(model.copy(), DriveIO.ENABLED
+				| DriveIO.AUTONOMOUS) {
+			@Override
+			public void update() {
+				super.update();
+				double position = measureTurn ? -getHeading()
+						: (getLeftDistance() + getRightDistance()) / 2.0;
+				furthest[0] = Math.max(furthest[0], position * sign);
+			}
+		};
+		int timeoutTicks = (int) (timeout / model.getStep());
+		io.setTickLimit(timeoutTicks);
+
+		SimPID pid = new SimPID(c.p, c.i, c.d, c.e);
+		pid.setMinDoneCycles(c.minCycles);
+		DriveManagerImpl drive = turn ? new DriveManagerImpl(io, conf, null, 0,
+				pid, c.maxOutput) : new DriveManagerImpl(io, conf, pid,
+				c.maxOutput, null, 0);
+
+		if (turn) {
+			drive.driveTurn((int) target);
+		} else {
+			drive.driveStraight(target);
+		}
+		c.settled = io.isEnabled() && drive.getFailure() == null;
+		c.settleTime = (io.getTime() / 1.0e9);
+
+		// Let the robot come to rest with the motors off
+		io.setTickLimit(-1);
+		for (int k = 0; k < coastTime / model.getStep(); k++) {
+			io.update();
+		}
+		double position = turn ? -io.getHeading()
+				: (io.getLeftDistance() + io.getRightDistance()) / 2.0;
+		c.overshoot = Math.max(0, furthest[0] - Math.abs(target));
+		c.finalError = Math.abs(target - position);
+	}
+
+	/**
+	 *
+	 * @return The weighted score of a combination, lower is better
+	 */
+	private double score(Candidate c) {
+		return settleWeight * c.settleTime + overshootWeight * c.overshoot
+				+ errorWeight * c.finalError;
+	}
+
+	/**
+	 * Find the combinations that settled and are not dominated by any other
+	 *
+	 * @param candidates
+	 *            The scored combinations
+	 * @return The Pareto front, fastest first
+	 */
+	static List<Candidate> paretoFront(Candidate[] candidates) {
+		List<Candidate> settled = new ArrayList<Candidate>();
+		for (Candidate c : candidates) {
+			if (c.settled) {
+				settled.add(c);
+			}
+		}
+		// Anything that dominates a candidate sorts before it, so only the
+		// front found so far has to be checked
+		settled.sort(new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate a, Candidate b) {
+				int cmp = Double.compare(a.settleTime, b.settleTime);
+				if (cmp == 0) {
+					cmp = Double.compare(a.overshoot, b.overshoot);
+				}
+				if (cmp == 0) {
+					cmp = Double.compare(a.finalError, b.finalError);
+				}
+				return cmp;
+			}
+		});
+
+		List<Candidate> front = new ArrayList<Candidate>();
+		for (Candidate c : settled) {
+			boolean dominated = false;
+			for (Candidate f : front) {
+				if (f.dominates(c)) {
+					dominated = true;
+					break;
+				}
+			}
+			if (!dominated) {
+				front.add(c);
+			}
+		}
+		return front;
+	}
+
+	/**
+	 * Build every combination of the given values
+	 */
+	private static Candidate[] grid(double[] p, double[] i, double[] d,
+			double[] e, double[] minCycles, double[] maxOutput) {
+		Candidate[] grid = new Candidate[p.length * i.length * d.length
+				* e.length * minCycles.length * maxOutput.length];
+		int k = 0;
+		for (double pv : p) {
+			for (double iv : i) {
+				for (double dv : d) {
+					for (double ev : e) {
+						for (double mv : minCycles) {
+							for (double ov : maxOutput) {
+								grid[k++] = new Candidate(pv, iv, dv, ev,
+										(int) Math.round(mv), ov);
+							}
+						}
+					}
+				}
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Read a "min, max, steps" range from the configuration file
+	 *
+	 * @param key
+	 *            The key to read
+	 * @param defaultValue
+	 *            The range to use if the key does not exist
+	 * @return The evenly spaced values of the range
+	 */
+	private double[] range(String key, String defaultValue) {
+		String[] s = Iterables.toArray(
+				Utils.SPLITTER.split(conf.getProperty(key, defaultValue)),
+				String.class);
+		double min = Double.parseDouble(s[0]);
+		double max = s.length > 1 ? Double.parseDouble(s[1]) : min;
+		int steps = s.length > 2 ? Integer.parseInt(s[2]) : 1;
+
+		double[] values = new double[Math.max(1, steps)];
+		for (int k = 0; k < values.length; k++) {
+			values[k] = values.length == 1 ? min : min + (max - min) * k
+					/ (values.length - 1);
+		}
+		return values;
+	}
+}
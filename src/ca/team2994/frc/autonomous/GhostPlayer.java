@@ -0,0 +1,178 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.SimLib;
+
+/**
+ * Computes the motor outputs to replay a {@link GhostRecording} at a given
+ * time. Outputs are interpolated between samples, and can optionally be
+ * corrected against the recorded encoder and gyro trace. Nothing is allocated
+ * after construction, so it can be called every control tick.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class GhostPlayer {
+
+	/**
+	 * The recording to play
+	 */
+	private final GhostRecording recording;
+
+	/**
+	 * The correction added per unit of encoder distance error
+	 */
+	private final double distanceP;
+
+	/**
+	 * The correction added per degree of heading error
+	 */
+	private final double headingP;
+
+	/**
+	 * The feedforward to compute the outputs from the recorded speeds with,
+	 * or null to replay the recorded outputs
+	 */
+	private Feedforward feedforward;
+
+	/**
+	 * The samples either side used to find the recorded speeds
+	 */
+	private int window;
+
+	/**
+	 * The sample the last update was at or after
+	 */
+	private int index;
+
+	/**
+	 * The left output computed by the last update
+	 */
+	private double left;
+
+	/**
+	 * The right output computed by the last update
+	 */
+	private double right;
+
+	/**
+	 * Initialize a player. With both gains 0 the recording is replayed open
+	 * loop.
+	 *
+	 * @param recording
+	 *            The recording to play
+	 * @param distanceP
+	 *            The correction per unit of encoder distance error
+	 * @param headingP
+	 *            The correction per degree of heading error
+	 */
+	public GhostPlayer(GhostRecording recording, double distanceP,
+			double headingP) {
+		this.recording = recording;
+		this.distanceP = distanceP;
+		this.headingP = headingP;
+	}
+
+	/**
+	 * Compute the outputs from the recorded speeds and accelerations instead
+	 * of replaying the recorded outputs, so playback does not depend on the
+	 * battery and friction at the time of recording
+	 *
+	 * @param feedforward
+	 *            The drive train feedforward, or null to replay the recorded
+	 *            outputs
+	 * @param window
+	 *            The samples either side used to find the recorded speeds
+	 */
+	public void setFeedforward(Feedforward feedforward, int window) {
+		this.feedforward = feedforward;
+		this.window = window;
+	}
+
+	/**
+	 *
+	 * @return Whether the outputs come from the feedforward. Its gains were
+	 *         fitted for each side, so its outputs already make up for one
+	 *         side being stronger.
+	 */
+	public boolean hasFeedforward() {
+		return feedforward != null;
+	}
+
+	/**
+	 * Go back to the start of the recording
+	 */
+	public void reset() {
+		index = 0;
+		left = 0;
+		right = 0;
+	}
+
+	/**
+	 * Compute the outputs for a time
+	 *
+	 * @param t
+	 *            The time since the start of playback in seconds
+	 * @param leftDistance
+	 *            The current left encoder distance
+	 * @param rightDistance
+	 *            The current right encoder distance
+	 * @param heading
+	 *            The current gyro heading
+	 * @return False if the recording has finished
+	 */
+	public boolean update(double t, double leftDistance, double rightDistance,
+			double heading) {
+		if (recording.size() == 0 || t > recording.getDuration()) {
+			left = 0;
+			right = 0;
+			return false;
+		}
+
+		index = recording.seek(index, t);
+		double f = recording.fraction(index, t);
+
+		double l, r;
+		if (feedforward != null) {
+			l = feedforward.getLeft(recording.getLeftVelocity(index, window),
+					recording.getLeftAcceleration(index, window));
+			r = feedforward.getRight(recording.getRightVelocity(index, window),
+					recording.getRightAcceleration(index, window));
+		} else {
+			l = recording.getLeft(index, f);
+			r = recording.getRight(index, f);
+		}
+
+		if (distanceP != 0) {
+			l += distanceP * (recording.getLeftDistance(index, f) - leftDistance);
+			r += distanceP * (recording.getRightDistance(index, f) - rightDistance);
+		}
+
+		if (headingP != 0) {
+			// A heading above the recorded one is corrected by turning right
+			double correction = headingP * (heading - recording.getHeading(index, f));
+			l += correction;
+			r -= correction;
+		}
+
+		left = SimLib.limitValue(l);
+		right = SimLib.limitValue(r);
+		return true;
+	}
+
+	/**
+	 *
+	 * @return The left output computed by the last update
+	 */
+	public double getLeft() {
+		return left;
+	}
+
+	/**
+	 *
+	 * @return The right output computed by the last update
+	 */
+	public double getRight() {
+		return right;
+	}
+}
@@ -0,0 +1,88 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.AsyncOutputStream;
+
+/**
+ * Records the motor outputs and sensor readings of tele-op to a
+ * {@link GhostRecording} file so they can be replayed in autonomous.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class GhostRecorder implements Closeable {
+
+	/**
+	 * The stream to write samples to
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * The number of samples written
+	 */
+	private int samples;
+
+	/**
+	 * Create a new recording file and write its header
+	 *
+	 * @param file
+	 *            The file to record to. It is overwritten if it exists.
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public GhostRecorder(File file) throws IOException {
+		this.out = new DataOutputStream(new AsyncOutputStream(
+				new FileOutputStream(file, false), "Ghost recorder"));
+		out.writeInt(GhostRecording.MAGIC);
+		out.writeShort(GhostRecording.VERSION);
+	}
+
+	/**
+	 * Write one sample
+	 *
+	 * @param micros
+	 *            The time since the start of the recording in microseconds
+	 * @param left
+	 *            The left motor output
+	 * @param right
+	 *            The right motor output
+	 * @param leftDistance
+	 *            The left encoder distance
+	 * @param rightDistance
+	 *            The right encoder distance
+	 * @param heading
+	 *            The gyro heading
+	 * @throws IOException
+	 *             If the sample cannot be written
+	 */
+	public void sample(int micros, double left, double right,
+			double leftDistance, double rightDistance, double heading)
+			throws IOException {
+		out.writeInt(micros);
+		out.writeFloat((float) left);
+		out.writeFloat((float) right);
+		out.writeFloat((float) leftDistance);
+		out.writeFloat((float) rightDistance);
+		out.writeFloat((float) heading);
+		samples++;
+	}
+
+	/**
+	 *
+	 * @return The number of samples written
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,277 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * The motor outputs and sensor readings recorded by {@link GhostRecorder},
+ * loaded into primitive arrays so they can be replayed without allocating.
+ * The file is a header (magic and version) followed by fixed size records of
+ * the time since the start in microseconds, the left and right motor outputs,
+ * the left and right encoder distances and the gyro heading.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class GhostRecording {
+
+	/**
+	 * The magic number at the start of every recording ("GHST")
+	 */
+	public static final int MAGIC = 0x47485354;
+
+	/**
+	 * The version of the file format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 6;
+
+	/**
+	 * The size of one record in bytes
+	 */
+	static final int RECORD_SIZE = 24;
+
+	/**
+	 * The time of each sample, in seconds since the start of the recording
+	 */
+	private final double[] time;
+
+	/**
+	 * The left motor output of each sample
+	 */
+	private final double[] left;
+
+	/**
+	 * The right motor output of each sample
+	 */
+	private final double[] right;
+
+	/**
+	 * The left encoder distance of each sample
+	 */
+	private final double[] leftDistance;
+
+	/**
+	 * The right encoder distance of each sample
+	 */
+	private final double[] rightDistance;
+
+	/**
+	 * The gyro heading of each sample
+	 */
+	private final double[] heading;
+
+	/**
+	 * The number of samples
+	 */
+	private final int count;
+
+	/**
+	 * Allocate an empty recording
+	 */
+	private GhostRecording(int count) {
+		this.time = new double[count];
+		this.left = new double[count];
+		this.right = new double[count];
+		this.leftDistance = new double[count];
+		this.rightDistance = new double[count];
+		this.heading = new double[count];
+		this.count = count;
+	}
+
+	/**
+	 * Read a recording written by {@link GhostRecorder}
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The loaded recording
+	 * @throws IOException
+	 *             If the file cannot be read or is not a recording
+	 */
+	public static GhostRecording read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a ghost recording");
+			}
+			short version = in.readShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported recording version " + version);
+			}
+
+			// A record cut short by a power loss is dropped
+			GhostRecording recording = new GhostRecording(
+					(int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+			for (int i = 0; i < recording.count; i++) {
+				recording.time[i] = in.readInt() / 1.0e6;
+				recording.left[i] = in.readFloat();
+				recording.right[i] = in.readFloat();
+				recording.leftDistance[i] = in.readFloat();
+				recording.rightDistance[i] = in.readFloat();
+				recording.heading[i] = in.readFloat();
+			}
+			return recording;
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of samples
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 *
+	 * @return The time of the last sample in seconds
+	 */
+	public double getDuration() {
+		return count == 0 ? 0 : time[count - 1];
+	}
+
+	/**
+	 * Find the sample at or before a time, searching forward from a previous
+	 * result
+	 *
+	 * @param from
+	 *            The index to start searching from
+	 * @param t
+	 *            The time in seconds
+	 * @return The index of the last sample at or before t
+	 */
+	public int seek(int from, double t) {
+		int i = from;
+		while (i + 1 < count && time[i + 1] <= t) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Get how far a time is between a sample and the next one
+	 *
+	 * @param i
+	 *            The sample index, as returned by {@link #seek(int, double)}
+	 * @param t
+	 *            The time in seconds
+	 * @return A value from 0 (at sample i) to 1 (at sample i + 1)
+	 */
+	public double fraction(int i, double t) {
+		if (i + 1 >= count) {
+			return 0;
+		}
+		double span = time[i + 1] - time[i];
+		if (span <= 0) {
+			return 0;
+		}
+		return Math.min(1, Math.max(0, (t - time[i]) / span));
+	}
+
+	/**
+	 * Interpolated left motor output
+	 */
+	public double getLeft(int i, double f) {
+		return interpolate(left, i, f);
+	}
+
+	/**
+	 * Interpolated right motor output
+	 */
+	public double getRight(int i, double f) {
+		return interpolate(right, i, f);
+	}
+
+	/**
+	 * Interpolated left encoder distance
+	 */
+	public double getLeftDistance(int i, double f) {
+		return interpolate(leftDistance, i, f);
+	}
+
+	/**
+	 * Interpolated right encoder distance
+	 */
+	public double getRightDistance(int i, double f) {
+		return interpolate(rightDistance, i, f);
+	}
+
+	/**
+	 * Interpolated gyro heading
+	 */
+	public double getHeading(int i, double f) {
+		return interpolate(heading, i, f);
+	}
+
+	/**
+	 * Left speed at a sample, from the encoder distances window samples
+	 * either side
+	 */
+	public double getLeftVelocity(int i, int window) {
+		return derivative(leftDistance, i, window);
+	}
+
+	/**
+	 * Right speed at a sample, from the encoder distances window samples
+	 * either side
+	 */
+	public double getRightVelocity(int i, int window) {
+		return derivative(rightDistance, i, window);
+	}
+
+	/**
+	 * Left acceleration at a sample, from the speeds window samples either
+	 * side
+	 */
+	public double getLeftAcceleration(int i, int window) {
+		return secondDerivative(leftDistance, i, window);
+	}
+
+	/**
+	 * Right acceleration at a sample, from the speeds window samples either
+	 * side
+	 */
+	public double getRightAcceleration(int i, int window) {
+		return secondDerivative(rightDistance, i, window);
+	}
+
+	/**
+	 * The central difference of a value over window samples either side,
+	 * clipped to the recording
+	 */
+	private double derivative(double[] values, int i, int window) {
+		int from = Math.max(0, i - window);
+		int to = Math.min(count - 1, i + window);
+		double span = time[to] - time[from];
+		return span <= 0 ? 0 : (values[to] - values[from]) / span;
+	}
+
+	/**
+	 * The difference of the derivatives window samples either side
+	 */
+	private double secondDerivative(double[] values, int i, int window) {
+		int from = Math.max(0, i - window);
+		int to = Math.min(count - 1, i + window);
+		double span = time[to] - time[from];
+		return span <= 0 ? 0 : (derivative(values, to, window) - derivative(
+				values, from, window)) / span;
+	}
+
+	/**
+	 * Linearly interpolate between sample i and i + 1
+	 */
+	private double interpolate(double[] values, int i, double f) {
+		if (f == 0 || i + 1 >= count) {
+			return values[i];
+		}
+		return values[i] + (values[i + 1] - values[i]) * f;
+	}
+}
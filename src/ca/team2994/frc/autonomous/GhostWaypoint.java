@@ -0,0 +1,48 @@
+package ca.team2994.frc.autonomous;
+
+/**
+ * A type of waypoint action (replay recorded motor outputs)
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class GhostWaypoint implements Waypoint {
+
+	/**
+	 *
+	 */
+	private GhostPlayer player;
+
+	/**
+	 *
+	 */
+	private long time;
+
+	/**
+	 *
+	 */
+	private DriveManager manager;
+
+	/**
+	 *
+	 * @param player
+	 * @param time
+	 * @param manager
+	 */
+	public GhostWaypoint(GhostPlayer player, long time, DriveManager manager) {
+		this.player = player;
+		this.time = time;
+		this.manager = manager;
+	}
+
+	@Override
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	public void run() {
+		manager.playRecording(player);
+	}
+}
@@ -0,0 +1,192 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.ConfigFile;
+
+/**
+ * Estimates the heading from the gyro and the encoders together, so it does
+ * not drift away over a match the way the integrated gyro does. Every tick
+ * the gyro's change, less its estimated bias, is added to the heading, and a
+ * complementary filter pulls the heading slowly towards the heading the
+ * encoders give: the gyro is trusted over short times and the encoders over
+ * long ones. While both wheels have been nearly still for a while they
+ * cannot be slipping, so the heading follows them alone and whatever turning
+ * the gyro reads beyond theirs is used to learn its bias.
+ *
+ * The estimate is in the same units and with the same sign as the raw gyro
+ * angle, so {@link DriveIO} uses it in place of the raw angle.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class HeadingEstimator {
+
+	/**
+	 * The time constant of the pull towards the encoder heading, in seconds,
+	 * or 0 to use only the gyro and its bias
+	 */
+	private final double encoderTau;
+
+	/**
+	 * The distance between the wheels, to turn the encoder difference into
+	 * degrees
+	 */
+	private final double trackWidth;
+
+	/**
+	 * Wheel speeds below this count as still, in units per second
+	 */
+	private final double stillSpeed;
+
+	/**
+	 * How long the wheels must be still before the bias is learned, in seconds
+	 */
+	private final double stillTime;
+
+	/**
+	 * The time constant of the bias estimate, in seconds
+	 */
+	private final double biasTau;
+
+	/**
+	 * The fused heading and the heading from the encoders alone, in degrees
+	 */
+	private double angle, encoderAngle;
+
+	/**
+	 * The estimated gyro bias, in degrees per second
+	 */
+	private double bias;
+
+	/**
+	 * How long the wheels have been still, in seconds
+	 */
+	private double stillFor;
+
+	/*
+	 * The readings of the last update
+	 */
+	private long lastTime;
+	private double lastGyro;
+	private double lastLeft;
+	private double lastRight;
+	private boolean started;
+
+	/**
+	 * Initialize an estimator from the "heading." keys of a configuration
+	 * file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public HeadingEstimator(ConfigFile conf) {
+		this(conf.getPropertyAsDouble("heading.encoderTau", 10.0),
+				conf.getPropertyAsDouble("heading.trackWidth",
+						conf.getPropertyAsDouble("headingHold.trackWidth", 2.0)),
+				conf.getPropertyAsDouble("heading.stillSpeed", 0.05),
+				conf.getPropertyAsDouble("heading.stillTime", 0.25),
+				conf.getPropertyAsDouble("heading.biasTau", 2.0));
+	}
+
+	/**
+	 * Initialize an estimator
+	 *
+	 * @param encoderTau
+	 *            The time constant of the pull towards the encoder heading in
+	 *            seconds, or 0 to use only the gyro
+	 * @param trackWidth
+	 *            The effective distance between the wheels
+	 * @param stillSpeed
+	 *            Wheel speeds below this count as still
+	 * @param stillTime
+	 *            How long the wheels must be still before the bias is learned
+	 * @param biasTau
+	 *            The time constant of the bias estimate in seconds
+	 */
+	public HeadingEstimator(double encoderTau, double trackWidth,
+			double stillSpeed, double stillTime, double biasTau) {
+		this.encoderTau = encoderTau;
+		this.trackWidth = trackWidth;
+		this.stillSpeed = stillSpeed;
+		this.stillTime = stillTime;
+		this.biasTau = biasTau;
+	}
+
+	/**
+	 * Add the readings of one tick
+	 *
+	 * @param time
+	 *            The time of the readings in nanoseconds
+	 * @param gyro
+	 *            The raw gyro angle
+	 * @param left
+	 *            The raw left encoder distance
+	 * @param right
+	 *            The raw right encoder distance
+	 */
+	public void update(long time, double gyro, double left, double right) {
+		if (!started) {
+			angle = gyro;
+			encoderAngle = gyro;
+			remember(time, gyro, left, right);
+			started = true;
+			return;
+		}
+		double dt = (time - lastTime) / 1.0e9;
+		if (dt <= 0) {
+			return;
+		}
+
+		double gyroChange = gyro - lastGyro;
+		double leftChange = left - lastLeft;
+		double rightChange = right - lastRight;
+		remember(time, gyro, left, right);
+
+		double encoderChange = Math.toDegrees((leftChange - rightChange)
+				/ trackWidth);
+		encoderAngle += encoderChange;
+
+		boolean still = Math.abs(leftChange) < stillSpeed * dt
+				&& Math.abs(rightChange) < stillSpeed * dt;
+		stillFor = still ? stillFor + dt : 0;
+		if (stillFor >= stillTime) {
+			// The wheels don't slip when they barely move, so any turning
+			// the gyro sees beyond theirs is bias
+			bias += ((gyroChange - encoderChange) / dt - bias) * dt
+					/ (biasTau + dt);
+			angle += encoderChange;
+			return;
+		}
+
+		angle += gyroChange - bias * dt;
+		if (encoderTau > 0) {
+			angle += (encoderAngle - angle) * dt / (encoderTau + dt);
+		}
+	}
+
+	/**
+	 * Keep the readings of this tick for the next
+	 */
+	private void remember(long time, double gyro, double left, double right) {
+		lastTime = time;
+		lastGyro = gyro;
+		lastLeft = left;
+		lastRight = right;
+	}
+
+	/**
+	 *
+	 * @return The estimated heading, with the sign of the raw gyro angle
+	 */
+	public double getAngle() {
+		return angle;
+	}
+
+	/**
+	 *
+	 * @return The estimated gyro bias, in degrees per second
+	 */
+	public double getBias() {
+		return bias;
+	}
+}
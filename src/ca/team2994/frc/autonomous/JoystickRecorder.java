@@ -0,0 +1,104 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.AsyncOutputStream;
+
+/**
+ * Records the driver's joystick every control tick to a
+ * {@link JoystickRecording} file, so the session can be replayed off the
+ * robot.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class JoystickRecorder implements Closeable {
+
+	/**
+	 * The stream to write samples to
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * The time of the first sample in nanoseconds
+	 */
+	private long start;
+
+	/**
+	 * The number of samples written
+	 */
+	private int samples;
+
+	/**
+	 * Create a new recording file and write its header
+	 *
+	 * @param file
+	 *            The file to record to. It is overwritten if it exists.
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public JoystickRecorder(File file) throws IOException {
+		this.out = new DataOutputStream(new AsyncOutputStream(
+				new FileOutputStream(file, false), "Joystick recorder"));
+		out.writeInt(JoystickRecording.MAGIC);
+		out.writeShort(JoystickRecording.VERSION);
+	}
+
+	/**
+	 * Write the joystick of one tick
+	 *
+	 * @param time
+	 *            The time of the tick in nanoseconds
+	 * @param stickX
+	 *            The x axis
+	 * @param stickY
+	 *            The y axis
+	 * @param buttons
+	 *            The buttons, button n in bit n - 1
+	 * @param flags
+	 *            The robot state flags
+	 * @throws IOException
+	 *             If the sample cannot be written
+	 */
+	public void sample(long time, double stickX, double stickY, int buttons,
+			int flags) throws IOException {
+		if (samples == 0) {
+			start = time;
+		}
+		out.writeInt((int) ((time - start) / 1000));
+		out.writeFloat((float) stickX);
+		out.writeFloat((float) stickY);
+		out.writeShort(buttons);
+		out.writeByte(flags);
+		samples++;
+	}
+
+	/**
+	 *
+	 * @return The number of samples written
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Hand buffered samples to the writer thread, without waiting for them to
+	 * be written
+	 *
+	 * @throws IOException
+	 *             If an earlier write failed
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,119 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A driver's joystick session, written by {@link JoystickRecorder}: the stick
+ * axes, the buttons and the robot state flags of every control tick, so a
+ * tele-op session can be fed back through the code off the robot. The file is
+ * a header (magic and version) followed by one 15 byte record per tick: the
+ * time since the first tick in microseconds, the x and y axes as floats, the
+ * buttons (button n in bit n - 1) and the flags.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class JoystickRecording {
+
+	/**
+	 * The magic number at the start of every recording ("JOYS")
+	 */
+	public static final int MAGIC = 0x4A4F5953;
+
+	/**
+	 * The version of the file format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 6;
+
+	/**
+	 * The size of one record in bytes
+	 */
+	static final int RECORD_SIZE = 4 + 4 + 4 + 2 + 1;
+
+	/*
+	 * The recorded values of every tick, indexed by tick
+	 */
+	final int[] micros;
+	final float[] stickX;
+	final float[] stickY;
+	final short[] buttons;
+	final byte[] flags;
+
+	/**
+	 * The number of ticks in the recording
+	 */
+	final int count;
+
+	/**
+	 * Allocate an empty recording
+	 */
+	private JoystickRecording(int count) {
+		this.micros = new int[count];
+		this.stickX = new float[count];
+		this.stickY = new float[count];
+		this.buttons = new short[count];
+		this.flags = new byte[count];
+		this.count = count;
+	}
+
+	/**
+	 * Read a recording written by {@link JoystickRecorder}
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The loaded recording
+	 * @throws IOException
+	 *             If the file cannot be read or is not a joystick recording
+	 */
+	public static JoystickRecording read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a joystick recording");
+			}
+			short version = in.readShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported joystick recording version "
+						+ version);
+			}
+
+			// A record cut short by a power loss is dropped
+			JoystickRecording recording = new JoystickRecording(
+					(int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+			for (int i = 0; i < recording.count; i++) {
+				recording.micros[i] = in.readInt();
+				recording.stickX[i] = in.readFloat();
+				recording.stickY[i] = in.readFloat();
+				recording.buttons[i] = in.readShort();
+				recording.flags[i] = in.readByte();
+			}
+			return recording;
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of ticks in the recording
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 *
+	 * @return The time of the last tick, in microseconds
+	 */
+	public int getDuration() {
+		return count == 0 ? 0 : micros[count - 1];
+	}
+}
@@ -0,0 +1,106 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.File;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Replays a recorded tele-op joystick session through the same tele-op code
+ * the robot runs, against a simulated drive train, so a waypoint logging
+ * session can be reproduced and benchmarked off the robot. Run it with:
+ *
+ * <pre>
+ * java ca.team2994.frc.autonomous.JoystickReplay session.joy [drive.properties] [realtime]
+ * </pre>
+ *
+ * The session is replayed as fast as the CPU allows unless "realtime" is
+ * given. The tele-op code is chosen by teleop.mode, as on the robot, and the
+ * waypoints it logs are written to joystick.replayOutput (default
+ * replay.log). Replaying the same session twice writes the same waypoints.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class JoystickReplay {
+
+	/**
+	 * Replay a joystick session and print how long it took and the timing of
+	 * its loops
+	 *
+	 * @param args
+	 *            The session file, optionally followed by the configuration
+	 *            file and "realtime"
+	 * @throws IOException
+	 *             If the session cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: JoystickReplay <session file> "
+					+ "[drive.properties] [realtime]");
+			System.exit(1);
+		}
+
+		JoystickRecording recording = JoystickRecording.read(new File(args[0]));
+		ConfigFile conf = args.length > 1 ? new ConfigFile(args[1])
+				: new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		FlightEvents.configure(conf);
+		boolean realTime = args.length > 2
+				&& args[2].equalsIgnoreCase("realtime");
+
+		String output = conf.getProperty("joystick.replayOutput", "replay.log");
+		Utils.writeStringToFile("", new File(output));
+
+		DrivetrainModel model = new DrivetrainModel(conf);
+		JoystickReplayIO io = new JoystickReplayIO(model, recording, realTime);
+		// Use the robot's constants, without a trim to learn or write
+		DriveManagerImpl drive = new DriveManagerImpl(new SimDriveIO(
+				model.copy(), 0), conf).simulated(io);
+
+		long start = System.nanoTime();
+		replay(io, drive, conf.getProperty("teleop.mode", "waypoints"));
+		Utils.flushLines();
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("Ticks recorded: " + recording.size());
+		System.out.println("Session length (ms): "
+				+ recording.getDuration() / 1000.0);
+		System.out.println("Replay wall time (ms): " + elapsed / 1.0e6);
+		for (LoopTimer timer : drive.getLoopStats().getAll()) {
+			System.out.println(timer.summary());
+		}
+		System.out.println("Waypoints written to " + output);
+	}
+
+	/**
+	 * Run the tele-op code each time the session enters tele-op, the way
+	 * {@link Robot} dispatches it, until the session ends
+	 *
+	 * @param io
+	 *            The session to replay
+	 * @param drive
+	 *            The DriveManager to replay through
+	 * @param teleopMode
+	 *            The teleop.mode to run
+	 */
+	public static void replay(JoystickReplayIO io, DriveManager drive,
+			String teleopMode) {
+		while (!io.isFinished()) {
+			io.update();
+			if (!io.isOperatorControl()) {
+				continue;
+			}
+			if (teleopMode.equalsIgnoreCase("waypoints")) {
+				drive.runTeleOPLogging();
+			} else if (teleopMode.equalsIgnoreCase("path")) {
+				drive.runTeleOPPathRecording();
+			} else if (teleopMode.equalsIgnoreCase("ghost")) {
+				drive.runTeleOPGhostRecording();
+			} else {
+				drive.runTeleOP();
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package ca.team2994.frc.autonomous;
+
+/**
+ * A {@link SimDriveIO} whose joystick and robot state come from a
+ * {@link JoystickRecording} instead of a driver. Each update holds the last
+ * recorded tick at or before the virtual time, so the code sees the same
+ * stick movements and button presses at the same times every run. When the
+ * recording runs out the robot is disabled so every loop ends.
+ *
+ * By default the virtual clock runs as fast as the CPU allows. In real time
+ * each update waits until the recorded time of the tick has passed on the
+ * wall clock, so the session plays back at the speed it was driven.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class JoystickReplayIO extends SimDriveIO {
+
+	/**
+	 * The session being replayed
+	 */
+	private final JoystickRecording recording;
+
+	/**
+	 * Whether to keep the virtual clock in step with the wall clock
+	 */
+	private final boolean realTime;
+
+	/**
+	 * The recorded tick currently held, -1 before the first
+	 */
+	private int index = -1;
+
+	/**
+	 * The wall clock time of the first update, in nanoseconds
+	 */
+	private long wallStart;
+
+	/**
+	 * Initialize the replay of a recording
+	 *
+	 * @param model
+	 *            The drive train to simulate
+	 * @param recording
+	 *            The session to replay
+	 * @param realTime
+	 *            Whether to play it back at the recorded timing instead of
+	 *            as fast as possible
+	 */
+	public JoystickReplayIO(DrivetrainModel model,
+			JoystickRecording recording, boolean realTime) {
+		super(model, 0);
+		this.recording = recording;
+		this.realTime = realTime;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		long micros = time / 1000;
+		while (index + 1 < recording.count
+				&& recording.micros[index + 1] <= micros) {
+			index++;
+		}
+
+		if (realTime) {
+			if (wallStart == 0) {
+				wallStart = System.nanoTime();
+			}
+			long wait = wallStart + time - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		if (index < 0 || micros > recording.getDuration()) {
+			// Before the first tick or past the last one the robot is off
+			stickX = 0;
+			stickY = 0;
+			buttons = 0;
+			flags = 0;
+			return;
+		}
+		stickX = recording.stickX[index];
+		stickY = recording.stickY[index];
+		buttons = recording.buttons[index] & 0xFFFF;
+		flags = recording.flags[index];
+	}
+
+	/**
+	 *
+	 * @return Whether the whole recording has been replayed
+	 */
+	public boolean isFinished() {
+		return time / 1000 > recording.getDuration();
+	}
+}
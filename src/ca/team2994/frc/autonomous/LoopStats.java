@@ -0,0 +1,107 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * The {@link LoopTimer}s of all the control loops, by name. Summaries can be
+ * logged periodically from a background thread, so the control loops never
+ * wait on the log.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class LoopStats {
+
+	/**
+	 * The timers by name, in the order they were created
+	 */
+	private final Map<String, LoopTimer> timers = new LinkedHashMap<String, LoopTimer>();
+
+	/**
+	 * The period above which a tick is an overrun, in nanoseconds
+	 */
+	private final long overrunThreshold;
+
+	/**
+	 * The background thread logging the summaries, if started
+	 */
+	private Timer reporter;
+
+	/**
+	 * Initialize the statistics from the "latency." keys of a configuration
+	 * file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public LoopStats(ConfigFile conf) {
+		this.overrunThreshold = (long) (conf.getPropertyAsDouble(
+				"latency.overrunMillis", 20.0) * 1.0e6);
+	}
+
+	/**
+	 * Get the timer of a loop, creating it the first time
+	 *
+	 * @param name
+	 *            The name of the loop
+	 * @return The timer
+	 */
+	public synchronized LoopTimer get(String name) {
+		LoopTimer timer = timers.get(name);
+		if (timer == null) {
+			timer = new LoopTimer(name, overrunThreshold);
+			timers.put(name, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 *
+	 * @return All the timers, in the order they were created
+	 */
+	public synchronized Collection<LoopTimer> getAll() {
+		return Collections.unmodifiableCollection(timers.values());
+	}
+
+	/**
+	 * Log a summary of every loop that has run
+	 */
+	public synchronized void logSummaries() {
+		for (LoopTimer timer : timers.values()) {
+			if (timer.getSensorRead().getCount() > 0) {
+				Utils.ROBOT_LOGGER.log(INFO, "Loop " + timer.summary());
+			}
+		}
+	}
+
+	/**
+	 * Log the summaries from a background thread every period
+	 *
+	 * @param seconds
+	 *            The time between summaries
+	 */
+	public synchronized void startReporting(double seconds) {
+		if (reporter != null || seconds <= 0) {
+			return;
+		}
+		long period = (long) (seconds * 1000);
+		reporter = new Timer("LoopStats", true);
+		reporter.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				logSummaries();
+			}
+		}, period, period);
+	}
+}
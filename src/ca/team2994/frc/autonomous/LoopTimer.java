@@ -0,0 +1,192 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.LatencyHistogram;
+
+/**
+ * The timing of one control loop: the period between ticks, the compute time
+ * from the end of one sensor read to the start of the next, and the time the
+ * sensor read itself takes. A tick that is longer than the overrun threshold
+ * is also counted as an overrun.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class LoopTimer {
+
+	/**
+	 * The name of the loop
+	 */
+	private final String name;
+
+	/**
+	 * The time between the starts of consecutive sensor reads
+	 */
+	private final LatencyHistogram period = new LatencyHistogram();
+
+	/**
+	 * The time from the end of a sensor read to the start of the next
+	 */
+	private final LatencyHistogram compute = new LatencyHistogram();
+
+	/**
+	 * The time a sensor read takes
+	 */
+	private final LatencyHistogram sensorRead = new LatencyHistogram();
+
+	/**
+	 * The period above which a tick is an overrun, in nanoseconds
+	 */
+	private final long overrunThreshold;
+
+	/**
+	 * The number of ticks longer than the overrun threshold
+	 */
+	private long overruns;
+
+	/**
+	 * The start and end of the last sensor read, or 0 at the start of a loop
+	 */
+	private long lastStart, lastEnd;
+
+	/**
+	 * The ticks since the last sampled one
+	 */
+	private int ticksSinceSample;
+
+	/**
+	 * Initialize a loop timer
+	 *
+	 * @param name
+	 *            The name of the loop
+	 * @param overrunThreshold
+	 *            The period above which a tick is an overrun, in nanoseconds
+	 */
+	public LoopTimer(String name, long overrunThreshold) {
+		this.name = name;
+		this.overrunThreshold = overrunThreshold;
+	}
+
+	/**
+	 * Start a new run of the loop, so the time since the last run is not
+	 * counted as a tick
+	 */
+	public void begin() {
+		lastStart = 0;
+		lastEnd = 0;
+	}
+
+	/**
+	 * Record one sensor read
+	 *
+	 * @param start
+	 *            {@link System#nanoTime()} before the read
+	 * @param end
+	 *            {@link System#nanoTime()} after the read
+	 */
+	public void record(long start, long end) {
+		if (lastStart != 0) {
+			long tick = start - lastStart;
+			period.record(tick);
+			compute.record(start - lastEnd);
+			if (tick > overrunThreshold) {
+				overruns++;
+			}
+		}
+		sensorRead.record(end - start);
+		lastStart = start;
+		lastEnd = end;
+	}
+
+	/**
+	 * Count a tick, so one in every so many can be sampled
+	 *
+	 * @param every
+	 *            Sample one tick in this many
+	 * @return Whether this tick is sampled
+	 */
+	public boolean sampleTick(int every) {
+		if (++ticksSinceSample < every) {
+			return false;
+		}
+		ticksSinceSample = 0;
+		return true;
+	}
+
+	/**
+	 * Forget all recorded ticks
+	 */
+	public void reset() {
+		period.reset();
+		compute.reset();
+		sensorRead.reset();
+		overruns = 0;
+		begin();
+	}
+
+	/**
+	 *
+	 * @return The name of the loop
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 *
+	 * @return The time between the starts of consecutive sensor reads
+	 */
+	public LatencyHistogram getPeriod() {
+		return period;
+	}
+
+	/**
+	 *
+	 * @return The time from the end of a sensor read to the start of the next
+	 */
+	public LatencyHistogram getCompute() {
+		return compute;
+	}
+
+	/**
+	 *
+	 * @return The time a sensor read takes
+	 */
+	public LatencyHistogram getSensorRead() {
+		return sensorRead;
+	}
+
+	/**
+	 *
+	 * @return The number of ticks longer than the overrun threshold
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 *
+	 * @return A one line summary of the loop
+	 */
+	public String summary() {
+		return name + ": period " + period.snapshot() + "; compute "
+				+ compute.snapshot() + "; sensor read "
+				+ sensorRead.snapshot() + "; overruns " + overruns;
+	}
+
+	/**
+	 * Append the same summary as {@link #summary()} without allocating, from
+	 * the thread running the loop
+	 *
+	 * @param builder
+	 *            The builder to append to
+	 * @return The builder
+	 */
+	public StringBuilder appendSummary(StringBuilder builder) {
+		builder.append(name).append(": period ");
+		period.appendTo(builder).append("; compute ");
+		compute.appendTo(builder).append("; sensor read ");
+		sensorRead.appendTo(builder).append("; overruns ");
+		return builder.append(overruns);
+	}
+}
@@ -0,0 +1,252 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A continuous path recorded by {@link PathRecorder}. The file starts with a
+ * header (magic, version, sample period and the resolutions of the quantized
+ * values) followed by one record per sample. Each record holds the change in
+ * the quantized left distance, right distance and heading since the previous
+ * sample, written as zig-zag variable length integers, so a sample where the
+ * robot barely moved takes only three bytes.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class PathFile {
+
+	/**
+	 * The magic number at the start of every path file ("PATH")
+	 */
+	public static final int MAGIC = 0x50415448;
+
+	/**
+	 * The version of the file format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The time between samples, in microseconds
+	 */
+	private final int periodMicros;
+
+	/**
+	 * The left encoder distance of each sample
+	 */
+	private final double[] left;
+
+	/**
+	 * The right encoder distance of each sample
+	 */
+	private final double[] right;
+
+	/**
+	 * The gyro heading of each sample, in degrees
+	 */
+	private final double[] heading;
+
+	/**
+	 * The number of samples
+	 */
+	private final int count;
+
+	/**
+	 * Create a path from already decoded samples
+	 *
+	 * @param periodMicros
+	 *            The time between samples in microseconds
+	 * @param left
+	 *            The left encoder distances
+	 * @param right
+	 *            The right encoder distances
+	 * @param heading
+	 *            The gyro headings in degrees
+	 * @param count
+	 *            The number of samples in the arrays
+	 */
+	public PathFile(int periodMicros, double[] left, double[] right,
+			double[] heading, int count) {
+		this.periodMicros = periodMicros;
+		this.left = left;
+		this.right = right;
+		this.heading = heading;
+		this.count = count;
+	}
+
+	/**
+	 * Read a path file written by {@link PathRecorder}
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return The decoded path
+	 * @throws IOException
+	 *             If the file cannot be read or is not a path file
+	 */
+	public static PathFile read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a path file");
+			}
+			short version = in.readShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported path file version " + version);
+			}
+			int periodMicros = in.readInt();
+			double distanceResolution = in.readFloat();
+			double angleResolution = in.readFloat();
+
+			int capacity = (int) Math.max(16, file.length() / 3);
+			double[] left = new double[capacity];
+			double[] right = new double[capacity];
+			double[] heading = new double[capacity];
+
+			long l = 0, r = 0, h = 0;
+			int count = 0;
+			while (true) {
+				// A record cut short by a power loss is dropped
+				try {
+					long dl = readVarLong(in);
+					long dr = readVarLong(in);
+					long dh = readVarLong(in);
+					l += dl;
+					r += dr;
+					h += dh;
+				} catch (EOFException e) {
+					break;
+				}
+
+				left[count] = l * distanceResolution;
+				right[count] = r * distanceResolution;
+				heading[count] = h * angleResolution;
+				count++;
+			}
+
+			return new PathFile(periodMicros, left, right, heading, count);
+		}
+	}
+
+	/**
+	 * Convert the path to drive and turn waypoints. A turn is emitted once the
+	 * heading (rounded to the nearest degree) has moved at least
+	 * minTurnDegrees from the last turn, and the distance driven in between
+	 * becomes one drive, so a path that wanders by a degree or two does not
+	 * become a PID turn for every degree. A last turn brings the robot to the
+	 * recorded final heading.
+	 *
+	 * @param manager
+	 *            The DriveManager the waypoints will drive with
+	 * @param minTurnDegrees
+	 *            How far the heading has to move before a turn is emitted
+	 * @return The waypoints, sorted by time
+	 */
+	public List<Waypoint> toWaypoints(DriveManager manager,
+			double minTurnDegrees) {
+		List<Waypoint> waypoints = new ArrayList<>();
+
+		int commandedHeading = 0;
+		double distance = 0;
+		long driveTime = 0;
+		for (int i = 1; i < count; i++) {
+			long time = (long) i * periodMicros / 1000;
+			int target = (int) Math.round(heading[i]);
+
+			if (target != commandedHeading
+					&& Math.abs(target - commandedHeading) >= minTurnDegrees) {
+				if (distance != 0) {
+					waypoints.add(new DriveWaypoint(distance, driveTime, manager));
+					distance = 0;
+				}
+				waypoints.add(new TurnWaypoint(target - commandedHeading, time, manager));
+				commandedHeading = target;
+			}
+
+			if (distance == 0) {
+				driveTime = time;
+			}
+			distance += ((left[i] - left[i - 1]) + (right[i] - right[i - 1])) / 2.0;
+		}
+
+		if (distance != 0) {
+			waypoints.add(new DriveWaypoint(distance, driveTime, manager));
+		}
+		int last = count > 0 ? (int) Math.round(heading[count - 1]) : 0;
+		if (last != commandedHeading) {
+			waypoints.add(new TurnWaypoint(last - commandedHeading,
+					(long) (count - 1) * periodMicros / 1000, manager));
+		}
+
+		return waypoints;
+	}
+
+	/**
+	 *
+	 * @return The time between samples in microseconds
+	 */
+	public int getPeriodMicros() {
+		return periodMicros;
+	}
+
+	/**
+	 *
+	 * @return The number of samples
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            The sample index
+	 * @return The left encoder distance of the sample
+	 */
+	public double getLeft(int i) {
+		return left[i];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            The sample index
+	 * @return The right encoder distance of the sample
+	 */
+	public double getRight(int i) {
+		return right[i];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            The sample index
+	 * @return The gyro heading of the sample in degrees
+	 */
+	public double getHeading(int i) {
+		return heading[i];
+	}
+
+	/**
+	 * Read a zig-zag encoded variable length integer
+	 */
+	static long readVarLong(DataInputStream in) throws IOException {
+		long raw = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			raw |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+		}
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+}
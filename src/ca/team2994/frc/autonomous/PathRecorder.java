@@ -0,0 +1,119 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.AsyncOutputStream;
+
+/**
+ * Records the pose of the robot (both encoder distances and the gyro heading)
+ * to a {@link PathFile}. Values are quantized to a fixed resolution and only
+ * the change from the previous sample is written.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class PathRecorder implements Closeable {
+
+	/**
+	 * The resolution encoder distances are stored with, in calibrated units
+	 */
+	public static final float DISTANCE_RESOLUTION = 0.001f;
+
+	/**
+	 * The resolution headings are stored with, in degrees
+	 */
+	public static final float ANGLE_RESOLUTION = 0.01f;
+
+	/**
+	 * The stream to write samples to
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * The quantized values of the previous sample
+	 */
+	private long lastLeft, lastRight, lastHeading;
+
+	/**
+	 * The number of samples written
+	 */
+	private int samples;
+
+	/**
+	 * Create a new path file and write its header
+	 *
+	 * @param file
+	 *            The file to record to. It is overwritten if it exists.
+	 * @param periodMicros
+	 *            The time between samples in microseconds
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public PathRecorder(File file, int periodMicros) throws IOException {
+		this.out = new DataOutputStream(new AsyncOutputStream(
+				new FileOutputStream(file, false), "Path recorder"));
+		out.writeInt(PathFile.MAGIC);
+		out.writeShort(PathFile.VERSION);
+		out.writeInt(periodMicros);
+		out.writeFloat(DISTANCE_RESOLUTION);
+		out.writeFloat(ANGLE_RESOLUTION);
+	}
+
+	/**
+	 * Write one sample
+	 *
+	 * @param left
+	 *            The left encoder distance
+	 * @param right
+	 *            The right encoder distance
+	 * @param heading
+	 *            The gyro heading in degrees
+	 * @throws IOException
+	 *             If the sample cannot be written
+	 */
+	public void sample(double left, double right, double heading)
+			throws IOException {
+		long l = Math.round(left / DISTANCE_RESOLUTION);
+		long r = Math.round(right / DISTANCE_RESOLUTION);
+		long h = Math.round(heading / ANGLE_RESOLUTION);
+
+		writeVarLong(l - lastLeft);
+		writeVarLong(r - lastRight);
+		writeVarLong(h - lastHeading);
+
+		lastLeft = l;
+		lastRight = r;
+		lastHeading = h;
+		samples++;
+	}
+
+	/**
+	 *
+	 * @return The number of samples written
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Write a zig-zag encoded variable length integer
+	 */
+	private void writeVarLong(long value) throws IOException {
+		long raw = (value << 1) ^ (value >> 63);
+		while ((raw & ~0x7FL) != 0) {
+			out.writeByte((int) ((raw & 0x7F) | 0x80));
+			raw >>>= 7;
+		}
+		out.writeByte((int) raw);
+	}
+}
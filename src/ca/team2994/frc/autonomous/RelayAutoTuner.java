@@ -0,0 +1,263 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Finds PID constants with a relay feedback experiment. The output is switched
+ * between +d and -d whenever the measurement crosses the setpoint (with some
+ * hysteresis), which makes the robot oscillate around the setpoint. The
+ * amplitude a and period Tu of the oscillation give the ultimate gain
+ * Ku = 4d / (pi * sqrt(a^2 - h^2)), and the constants follow from a
+ * Ziegler-Nichols style rule. They are converted to the per-cycle form
+ * {@link ca.team2994.frc.utils.SimPID} uses with the measured tick period.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class RelayAutoTuner {
+
+	/**
+	 * The result of one relay experiment
+	 */
+	public static class Result {
+
+		/**
+		 * Whether a steady oscillation was measured
+		 */
+		public final boolean success;
+
+		/**
+		 * The ultimate gain
+		 */
+		public final double ku;
+
+		/**
+		 * The oscillation period in seconds
+		 */
+		public final double tu;
+
+		/**
+		 * The average tick period in seconds
+		 */
+		public final double dt;
+
+		/**
+		 * The SimPID constants
+		 */
+		public final double p, i, d;
+
+		Result(boolean success, double ku, double tu, double dt, double p,
+				double i, double d) {
+			this.success = success;
+			this.ku = ku;
+			this.tu = tu;
+			this.dt = dt;
+			this.p = p;
+			this.i = i;
+			this.d = d;
+		}
+
+		@Override
+		public String toString() {
+			return "Ku=" + ku + ", Tu=" + tu + "s, dt=" + dt + "s, P=" + p
+					+ ", I=" + i + ", D=" + d;
+		}
+	}
+
+	/**
+	 * Run the auto-tuner against a {@link DrivetrainModel} and write the
+	 * constants to the files drive.properties points gyroPID.file and
+	 * encoderPID.file at.
+	 *
+	 * @param args
+	 *            Optionally, the configuration file to use
+	 */
+	public static void main(String[] args) {
+		ConfigFile conf = args.length > 0 ? new ConfigFile(args[0])
+				: new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		FlightEvents.configure(conf);
+		SimDriveIO io = new SimDriveIO(new DrivetrainModel(conf),
+				DriveIO.ENABLED | DriveIO.TEST);
+		new DriveManagerImpl(io, conf).runAutoTune();
+	}
+
+	/**
+	 * The IO to run the experiment on
+	 */
+	private final DriveIO io;
+
+	/**
+	 * The relay output amplitude
+	 */
+	private final double relayOutput;
+
+	/**
+	 * The relay hysteresis for turning, in degrees
+	 */
+	private final double turnHysteresis;
+
+	/**
+	 * The relay hysteresis for driving, in units
+	 */
+	private final double driveHysteresis;
+
+	/**
+	 * The number of oscillations to measure
+	 */
+	private final int cycles;
+
+	/**
+	 * The number of oscillations to let settle before measuring
+	 */
+	private final int settleCycles;
+
+	/**
+	 * The longest an experiment may take, in seconds
+	 */
+	private final double timeout;
+
+	/**
+	 * Whether to use the "no overshoot" rule instead of classic
+	 * Ziegler-Nichols
+	 */
+	private final boolean noOvershoot;
+
+	/**
+	 * Initialize the tuner from the "autotune." keys of a configuration file
+	 *
+	 * @param io
+	 *            The IO to run the experiment on
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public RelayAutoTuner(DriveIO io, ConfigFile conf) {
+		this.io = io;
+		this.relayOutput = conf.getPropertyAsDouble("autotune.relayOutput", 0.25);
+		this.turnHysteresis = conf.getPropertyAsDouble("autotune.turnHysteresis", 1.0);
+		this.driveHysteresis = conf.getPropertyAsDouble("autotune.driveHysteresis", 0.05);
+		this.cycles = conf.getPropertyAsInteger("autotune.cycles", 4);
+		this.settleCycles = conf.getPropertyAsInteger("autotune.settleCycles", 2);
+		this.timeout = conf.getPropertyAsDouble("autotune.timeout", 15.0);
+		this.noOvershoot = conf.getProperty("autotune.rule", "noOvershoot")
+				.equalsIgnoreCase("noOvershoot");
+	}
+
+	/**
+	 * Run the experiment for turning: the measurement is the negated heading
+	 * and the outputs are (u, -u), as in
+	 * {@link DriveManager#driveTurn(int)}.
+	 *
+	 * @return The measured result
+	 */
+	public Result tuneTurn() {
+		return run(true, turnHysteresis);
+	}
+
+	/**
+	 * Run the experiment for driving straight: the measurement is the average
+	 * encoder distance and the outputs are (u, u), as in
+	 * {@link DriveManager#driveStraight(double)}.
+	 *
+	 * @return The measured result
+	 */
+	public Result tuneDrive() {
+		return run(false, driveHysteresis);
+	}
+
+	/**
+	 * Run one relay experiment
+	 */
+	private Result run(boolean turn, double hysteresis) {
+		io.update();
+		io.resetEncoders();
+		io.resetHeading(0);
+
+		long start = io.getTime();
+		long lastTick = start;
+		long tickSum = 0;
+		int ticks = 0;
+
+		int state = 1;
+		int risingEdges = 0;
+		long lastRise = 0;
+		double max = Double.NEGATIVE_INFINITY;
+		double min = Double.POSITIVE_INFINITY;
+
+		double amplitudeSum = 0;
+		double periodSum = 0;
+		int measured = 0;
+
+		while (io.isEnabled() && measured < cycles
+				&& (io.getTime() - start) / 1.0e9 < timeout) {
+			double pv = turn ? -io.getHeading()
+					: (io.getLeftDistance() + io.getRightDistance()) / 2.0;
+			max = Math.max(max, pv);
+			min = Math.min(min, pv);
+
+			if (state > 0 && pv > hysteresis) {
+				state = -1;
+			} else if (state < 0 && pv < -hysteresis) {
+				state = 1;
+
+				// One full oscillation ends at every switch back to +d
+				if (risingEdges > settleCycles) {
+					amplitudeSum += (max - min) / 2.0;
+					periodSum += (io.getTime() - lastRise) / 1.0e9;
+					measured++;
+				}
+				risingEdges++;
+				lastRise = io.getTime();
+				max = Double.NEGATIVE_INFINITY;
+				min = Double.POSITIVE_INFINITY;
+			}
+
+			double u = state * relayOutput;
+			if (turn) {
+				io.setOutputs(u, -u);
+			} else {
+				io.setOutputs(u, u);
+			}
+
+			io.update();
+			tickSum += io.getTime() - lastTick;
+			lastTick = io.getTime();
+			ticks++;
+		}
+		io.setOutputs(0, 0);
+
+		double dt = ticks == 0 ? 0 : tickSum / 1.0e9 / ticks;
+		if (measured == 0) {
+			Utils.ROBOT_LOGGER.log(WARNING, "Relay auto-tune ("
+					+ (turn ? "turn" : "drive") + ") did not oscillate");
+			return new Result(false, 0, 0, dt, 0, 0, 0);
+		}
+
+		double a = amplitudeSum / measured;
+		double tu = periodSum / measured;
+		double ku = 4 * relayOutput
+				/ (Math.PI * Math.sqrt(Math.max(a * a - hysteresis * hysteresis, 1e-12)));
+
+		double kp, ti, td;
+		if (noOvershoot) {
+			kp = 0.2 * ku;
+			ti = tu / 2;
+			td = tu / 3;
+		} else {
+			kp = 0.6 * ku;
+			ti = tu / 2;
+			td = tu / 8;
+		}
+
+		// SimPID sums the error once per cycle and differences the
+		// measurement once per cycle
+		Result result = new Result(true, ku, tu, dt, kp, kp * dt / ti, kp * td / dt);
+		Utils.ROBOT_LOGGER.log(INFO, "Relay auto-tune ("
+				+ (turn ? "turn" : "drive") + "): " + result);
+		return result;
+	}
+}
@@ -4,15 +4,19 @@ package ca.team2994.frc.autonomous;
 
 import static java.util.logging.Level.INFO;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
+import ca.team2994.frc.utils.ConfigFile;
 import ca.team2994.frc.utils.EJoystick;
 import ca.team2994.frc.utils.SimGyro;
+import ca.team2994.frc.utils.StartupTracker;
 import ca.team2994.frc.utils.Utils;
 import edu.wpi.first.wpilibj.AnalogInput;
 import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.SampleRobot;
-import edu.wpi.first.wpilibj.Timer;
 
 /**
  * The entry class for the robot, handling autonomous, tele-op, and test mode.
@@ -30,9 +34,23 @@ public class Robot extends SampleRobot {
 	int autoLoopCounter;
 	
 	/**
-	 * Whether to use regular tele-op or to log waypoints
+	 * What to do in test mode: "calibrate" to calibrate the encoders,
+	 * "autotune" to find the PID values or "characterize" to find the
+	 * feedforward constants
 	 */
-	private static final boolean SAVE_WAYPOINTS = true;
+	private String testMode = "calibrate";
+	
+	/**
+	 * What to do in tele-op: "drive" for regular tele-op, "waypoints" to log
+	 * waypoints, "path" to continuously record the driven path or "ghost" to
+	 * record the motor outputs
+	 */
+	private String teleopMode = "waypoints";
+	
+	/**
+	 * The mode the robot is in, for the flight recorder
+	 */
+	private String mode = "disabled";
 	
 	
 	/**
@@ -44,7 +62,6 @@ public class Robot extends SampleRobot {
 	 * 
 	 */
 	public static DriveManager driveManager;
-	// TODO: Implement mode-switching functionality
 	
 	/**
 	 * 
@@ -56,58 +73,187 @@ public class Robot extends SampleRobot {
 	 */
 	private SimGyro gyro;
 	
+	/**
+	 * Times startup and runs its independent phases at the same time
+	 */
+	private final StartupTracker startup = new StartupTracker(4);
+	
+	/**
+	 * The thread the control loops run on
+	 */
+	private ControlThread control;
+	
     /**
      * This is the code first run when the robot code is started
      */
 	public void robotInit() {
-		Utils.configureRobotLogger();
+		// The logger and configuration file don't depend on anything, so
+		// they load while the hardware is created
+		CompletableFuture<Void> logger = startup.start("logger", new Runnable() {
+			@Override
+			public void run() {
+				Utils.configureRobotLogger();
+			}
+		});
+		CompletableFuture<ConfigFile> config = startup.start("config",
+				new Callable<ConfigFile>() {
+					@Override
+					public ConfigFile call() {
+						ConfigFile conf = new ConfigFile(
+								ConfigFile.DEFAULT_CONFIGURATION_FILE);
+						FlightEvents.configure(conf);
+						return conf;
+					}
+				});
+		
+		stick = startup.time("joystick", new Callable<EJoystick>() {
+			@Override
+			public EJoystick call() {
+				return new EJoystick(0);
+			}
+		});
+		final RobotDrive robotDrive = startup.time("drive train",
+				new Callable<RobotDrive>() {
+					@Override
+					public RobotDrive call() {
+						return new RobotDrive(0, 1);
+					}
+				});
+		
+		logger.join();
 		Utils.ROBOT_LOGGER.log(INFO, "Robo-Init");
 		
-		stick = new EJoystick(0);
+		final ConfigFile conf = config.join();
+		teleopMode = conf.getProperty("teleop.mode", teleopMode);
+		testMode = conf.getProperty("test.mode", testMode);
+		control = new ControlThread(conf);
 		
-		driveManager = new DriveManagerImpl(new RobotDrive(0, 1), this, gyro,
-				new Encoder(0, 1, true), new Encoder(2, 3, true), stick);
+		final DriveManagerImpl manager = startup.time("drive manager",
+				new Callable<DriveManagerImpl>() {
+					@Override
+					public DriveManagerImpl call() {
+						return new DriveManagerImpl(robotDrive, Robot.this,
+								gyro, new Encoder(0, 1, true), new Encoder(2,
+										3, true), stick, conf, startup);
+					}
+				});
+		driveManager = manager;
+		
+		startup.start("routine", new Runnable() {
+			@Override
+			public void run() {
+				manager.loadAutonomous();
+				// Picked from the dashboard while disabled
+				manager.getRoutines().publish();
+			}
+		});
+		
+		// Waits for the gyro too
+		startup.ready();
 	}
 
 	/**
-	 * Initialize gyro before robot code says that it is ready
+	 * Start calibrating the gyro, which takes over a second, so it runs while
+	 * robotInit loads everything else. The robot code is not ready until it
+	 * is done.
 	 */
 	public Robot() {
 		gyro = new SimGyro(new AnalogInput(1), 0);
-		gyro.initGyro();
+		startup.start("gyro", new Runnable() {
+			@Override
+			public void run() {
+				gyro.initGyro();
+			}
+		});
 	}
 	
+    /**
+     * Warm up the autonomous code against a simulation while nothing else is
+     * running
+     */
+    public void disabled() {
+    	driveManager.runWarmUp(new BooleanSupplier() {
+    		@Override
+    		public boolean getAsBoolean() {
+    			return isDisabled();
+    		}
+    	});
+    }
+    
     /**
      * Initialize PID values for the gyro, then call {@link DriveManager#runAutonomous() runAutonomous()}
      */
     public void autonomous() {
-    	driveManager.readPIDValues();
-    	driveManager.runAutonomous();
+    	enterMode("autonomous");
+    	control.run(new Runnable() {
+    		@Override
+    		public void run() {
+    			driveManager.readPIDValues();
+    			driveManager.runAutonomous();
+    		}
+    	});
+    	enterMode("disabled");
     }
     
     /**
-     * Runs the motors with arcade steering or log waypoints (TODO).
+     * Runs the motors with arcade steering, logs waypoints or records the path
+     * or motor outputs.
      */
     public void operatorControl() {
-    	if(!SAVE_WAYPOINTS) {
-    		Utils.ROBOT_LOGGER.log(INFO, "Tele-Op");
-    		while (isOperatorControl() && isEnabled()) {
-    			driveManager.arcadeDrive();
-    			Timer.delay(0.005);		// wait for a motor update time
+    	enterMode("operatorControl");
+    	control.run(new Runnable() {
+    		@Override
+    		public void run() {
+    			if(teleopMode.equalsIgnoreCase("waypoints")) {
+    				driveManager.runTeleOPLogging();
+    			}
+    			else if(teleopMode.equalsIgnoreCase("path")) {
+    				driveManager.runTeleOPPathRecording();
+    			}
+    			else if(teleopMode.equalsIgnoreCase("ghost")) {
+    				driveManager.runTeleOPGhostRecording();
+    			}
+    			else {
+    				Utils.ROBOT_LOGGER.log(INFO, "Tele-Op");
+    				driveManager.runTeleOP();
+    			}
     		}
-    	}
-    	else {
-    		driveManager.runTeleOPLogging();
-    	}
+    	});
+    	enterMode("disabled");
     }
 
     
     /**
-     * Calibration for encoders
+     * Calibration for encoders, or PID auto-tuning
      * TODO: Tell user to drive 5 feet
      */
     public void test() {
-    	driveManager.runCalibration();
+    	enterMode("test");
+    	control.run(new Runnable() {
+    		@Override
+    		public void run() {
+    			if(testMode.equalsIgnoreCase("autotune")) {
+    				driveManager.runAutoTune();
+    			}
+    			else if(testMode.equalsIgnoreCase("characterize")) {
+    				driveManager.runCharacterization();
+    			}
+    			else {
+    				driveManager.runCalibration();
+    			}
+    		}
+    	});
+    	enterMode("disabled");
+    }
+    
+    /**
+     * Record a mode change for the flight recorder
+     * 
+     * @param next The mode the robot is entering
+     */
+    private void enterMode(String next) {
+    	FlightEvents.modeTransition(mode, next);
+    	mode = next;
     }
     
     
@@ -0,0 +1,221 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.IOException;
+
+import ca.team2994.frc.utils.EJoystick;
+import ca.team2994.frc.utils.SimGyro;
+import ca.team2994.frc.utils.Utils;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotDrive;
+
+/**
+ * A {@link DriveIO} for the real robot hardware. Optionally writes every tick
+ * to a {@link DriveTraceWriter} so it can be replayed offline, and the
+ * joystick of every tele-op tick to a {@link JoystickRecorder}. Both write
+ * the file from a worker thread, so recording only copies each tick into a
+ * buffer.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class RobotDriveIO extends DriveIO {
+
+	/**
+	 * The battery voltage the driver station reports
+	 */
+	public static final VoltageSource DRIVER_STATION = new VoltageSource() {
+		@Override
+		public double getVoltage() {
+			return DriverStation.getInstance().getBatteryVoltage();
+		}
+	};
+
+	/**
+	 *
+	 */
+	private final RobotDrive drive;
+
+	/**
+	 * Robot - used to read the robot state
+	 */
+	private final RobotBase robot;
+
+	/**
+	 *
+	 */
+	private final SimGyro gyro;
+
+	/**
+	 *
+	 */
+	private final Encoder leftEncoder;
+
+	/**
+	 *
+	 */
+	private final Encoder rightEncoder;
+
+	/**
+	 *
+	 */
+	private final EJoystick stick;
+
+	/**
+	 * The trace to write ticks to, or null
+	 */
+	private DriveTraceWriter trace;
+
+	/**
+	 * The recorder to write the joystick of tele-op ticks to, or null
+	 */
+	private JoystickRecorder joystickRecorder;
+
+	/**
+	 * The outputs commanded since the last update
+	 */
+	private double leftOutput = Double.NaN, rightOutput = Double.NaN;
+
+	/**
+	 * Whether update has been called since the trace was started
+	 */
+	private boolean inTick;
+
+	/**
+	 * Initialize the IO for the robot hardware
+	 *
+	 * @param drive
+	 *            The RobotDrive of the drive train
+	 * @param robot
+	 *            The running robot, used to read the robot state
+	 * @param gyro
+	 *            The gyro
+	 * @param leftEncoder
+	 *            The left encoder
+	 * @param rightEncoder
+	 *            The right encoder
+	 * @param stick
+	 *            The driver's joystick
+	 */
+	public RobotDriveIO(RobotDrive drive, RobotBase robot, SimGyro gyro,
+			Encoder leftEncoder, Encoder rightEncoder, EJoystick stick) {
+		this.drive = drive;
+		this.robot = robot;
+		this.gyro = gyro;
+		this.leftEncoder = leftEncoder;
+		this.rightEncoder = rightEncoder;
+		this.stick = stick;
+		this.voltageSource = DRIVER_STATION;
+	}
+
+	/**
+	 * Start writing every tick to a trace
+	 *
+	 * @param trace
+	 *            The trace to write to
+	 */
+	public void setTrace(DriveTraceWriter trace) {
+		this.trace = trace;
+		this.inTick = false;
+	}
+
+	/**
+	 * Start recording the joystick of every tele-op tick
+	 *
+	 * @param recorder
+	 *            The recorder to write to
+	 */
+	public void setJoystickRecorder(JoystickRecorder recorder) {
+		this.joystickRecorder = recorder;
+	}
+
+	@Override
+	public void update() {
+		if (trace != null && inTick) {
+			try {
+				trace.write(time, leftRaw, rightRaw, gyroRaw, stickX, stickY,
+						buttons, flags, leftOutput, rightOutput, voltage);
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+				trace = null;
+			}
+		}
+
+		time = System.nanoTime();
+		leftRaw = leftEncoder.getDistance();
+		rightRaw = rightEncoder.getDistance();
+		gyroRaw = gyro.getRawAngle();
+		voltage = voltageSource.getVoltage();
+		stickX = stick.getX();
+		stickY = stick.getY();
+		flags = (robot.isEnabled() ? ENABLED : 0)
+				| (robot.isAutonomous() ? AUTONOMOUS : 0)
+				| (robot.isOperatorControl() ? OPERATOR_CONTROL : 0)
+				| (robot.isTest() ? TEST : 0);
+		updateEstimates();
+
+		int b = 0;
+		for (int i = 1; i <= EJoystick.EJOYSTICK_NUM_BUTTONS; i++) {
+			if (stick.getRawButton(i)) {
+				b |= 1 << (i - 1);
+			}
+		}
+		buttons = b;
+
+		if (joystickRecorder != null && (flags & OPERATOR_CONTROL) != 0) {
+			try {
+				joystickRecorder.sample(time, stickX, stickY, buttons, flags);
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+				joystickRecorder = null;
+			}
+		}
+
+		leftOutput = Double.NaN;
+		rightOutput = Double.NaN;
+		inTick = true;
+	}
+
+	@Override
+	public void setOutputs(double left, double right) {
+		drive.setLeftRightMotorOutputs(left, right);
+		leftOutput = left;
+		rightOutput = right;
+	}
+
+	@Override
+	public void setDistancePerPulse(double left, double right) {
+		leftEncoder.setDistancePerPulse(left);
+		rightEncoder.setDistancePerPulse(right);
+	}
+
+	@Override
+	public void flush() {
+		if (trace != null) {
+			try {
+				trace.flush();
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+		if (joystickRecorder != null) {
+			try {
+				joystickRecorder.flush();
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void sleep(long millis) throws InterruptedException {
+		Thread.sleep(millis);
+	}
+}
@@ -0,0 +1,251 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import ca.team2994.frc.utils.Clock;
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Every autonomous routine the robot can run, loaded ahead of time. At
+ * startup every waypoint, path and ghost file in the routine directory is
+ * read, parsed and optimized at the same time, and the ones that load and
+ * have at least one waypoint are kept ready to run. The drive team picks one
+ * while the robot is disabled from the dashboard, or with the
+ * autonomous.routine key, so starting autonomous only looks the routine up.
+ *
+ * Each routine is named after its file without the extension. The routine
+ * autonomous has always run (see autonomous.file) is included too, and is
+ * selected when nothing else is.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class RoutineLibrary {
+
+	/**
+	 * The dashboard key of the routine chooser
+	 */
+	public static final String DASHBOARD_KEY = "Autonomous routine";
+
+	/**
+	 * The extensions of the files routines are read from
+	 */
+	private static final List<String> EXTENSIONS = Arrays.asList(".txt",
+			".log", ".path", ".ghost");
+
+	/**
+	 * The loaded routines by name, in the order they are offered
+	 */
+	private final Map<String, AutoMode> routines;
+
+	/**
+	 * The routine selected by the configuration file, or null
+	 */
+	private final String configured;
+
+	/**
+	 * The dashboard chooser, or null if it has not been published
+	 */
+	private SendableChooser chooser;
+
+	/**
+	 * Initialize a library of already loaded routines
+	 */
+	private RoutineLibrary(Map<String, AutoMode> routines, String configured) {
+		this.routines = routines;
+		this.configured = configured;
+	}
+
+	/**
+	 * Load every routine in autonomous.directory, and the routine in the
+	 * given file, on worker threads
+	 *
+	 * @param defaultFile
+	 *            The file of the routine autonomous runs by default
+	 * @param drive
+	 *            The drive manager the routines drive with
+	 * @param clock
+	 *            The clock the routines are scheduled with
+	 * @param conf
+	 *            The drive configuration file
+	 * @return The routines that loaded
+	 */
+	public static RoutineLibrary load(String defaultFile,
+			final DriveManager drive, final Clock clock, final ConfigFile conf) {
+		List<String> files = new ArrayList<>();
+		File[] listed = new File(conf.getProperty("autonomous.directory",
+				Utils.ROUTINE_DIR_LOC)).listFiles();
+		if (listed != null) {
+			for (File file : listed) {
+				if (file.isFile()
+						&& EXTENSIONS.contains(extension(file.getName()))) {
+					files.add(file.getPath());
+				}
+			}
+		}
+		Collections.sort(files);
+		if (new File(defaultFile).isFile() && !files.contains(defaultFile)) {
+			files.add(0, defaultFile);
+		}
+
+		final AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+				conf.getPropertyAsInteger("autonomous.loadThreads", Runtime
+						.getRuntime().availableProcessors())),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Routine-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		List<CompletableFuture<AutoMode>> loads = new ArrayList<>();
+		for (final String file : files) {
+			loads.add(CompletableFuture.supplyAsync(new Supplier<AutoMode>() {
+				@Override
+				public AutoMode get() {
+					return loadRoutine(file, drive, clock, conf);
+				}
+			}, executor));
+		}
+
+		Map<String, AutoMode> routines = new LinkedHashMap<>();
+		for (CompletableFuture<AutoMode> load : loads) {
+			AutoMode routine = load.join();
+			if (routine != null && !routines.containsKey(routine.getName())) {
+				routines.put(routine.getName(), routine);
+			}
+		}
+		executor.shutdown();
+
+		Utils.ROBOT_LOGGER.log(INFO, "Loaded " + routines.size() + " of "
+				+ files.size() + " autonomous routines: " + routines.keySet());
+		String configured = conf.getProperty("autonomous.routine", null);
+		if (configured != null && !routines.containsKey(configured)) {
+			Utils.ROBOT_LOGGER.log(WARNING, "autonomous.routine " + configured
+					+ " did not load");
+		}
+		return new RoutineLibrary(routines, configured);
+	}
+
+	/**
+	 * Load and check one routine
+	 *
+	 * @return The routine, or null if it could not be loaded or is empty
+	 */
+	private static AutoMode loadRoutine(String file, DriveManager drive,
+			Clock clock, ConfigFile conf) {
+		String name = new File(file).getName();
+		name = name.substring(0, name.length() - extension(name).length());
+		try {
+			AutoMode routine = AutoMode.load(name, file, drive, clock, conf);
+			if (routine.size() == 0) {
+				Utils.ROBOT_LOGGER.log(WARNING, "Routine " + file
+						+ " has no waypoints");
+				return null;
+			}
+			return routine;
+		} catch (IOException | RuntimeException e) {
+			// A malformed line throws out of the parser
+			Utils.ROBOT_LOGGER.log(WARNING, "Routine " + file
+					+ " could not be loaded");
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @return The extension of a file name, with its dot, or "" if it has
+	 *         none
+	 */
+	private static String extension(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot);
+	}
+
+	/**
+	 * Offer the routines on the dashboard, starting on the one the
+	 * configuration file selects
+	 */
+	public void publish() {
+		chooser = new SendableChooser();
+		String initial = getConfigured();
+		for (String name : routines.keySet()) {
+			if (name.equals(initial)) {
+				chooser.addDefault(name, name);
+			} else {
+				chooser.addObject(name, name);
+			}
+		}
+		SmartDashboard.putData(DASHBOARD_KEY, chooser);
+	}
+
+	/**
+	 *
+	 * @return The routine the configuration file selects, or the first if it
+	 *         selects none that loaded
+	 */
+	private String getConfigured() {
+		if (configured != null && routines.containsKey(configured)) {
+			return configured;
+		}
+		return routines.isEmpty() ? null : routines.keySet().iterator().next();
+	}
+
+	/**
+	 *
+	 * @return The routine selected on the dashboard, or by the configuration
+	 *         file if there is no dashboard, or null if none loaded
+	 */
+	public AutoMode getSelected() {
+		Object selected = chooser != null ? chooser.getSelected() : null;
+		AutoMode routine = selected != null ? routines.get(selected) : null;
+		return routine != null ? routine : routines.get(getConfigured());
+	}
+
+	/**
+	 * Read a routine again, as when its file has changed since it was loaded
+	 *
+	 * @param routine
+	 *            The routine to read again
+	 * @return The routine as it is now
+	 * @throws IOException
+	 *             If the file can no longer be read
+	 */
+	public AutoMode reload(AutoMode routine) throws IOException {
+		AutoMode reloaded = routine.reload();
+		routines.put(reloaded.getName(), reloaded);
+		return reloaded;
+	}
+
+	/**
+	 *
+	 * @return The names of the loaded routines
+	 */
+	public List<String> getNames() {
+		return new ArrayList<>(routines.keySet());
+	}
+}
@@ -0,0 +1,130 @@
+package ca.team2994.frc.autonomous;
+
+/**
+ * A {@link DriveIO} backed by a {@link DrivetrainModel} and a virtual clock.
+ * Every update advances the model by one time step, so code runs against it as
+ * fast as the CPU allows. The battery voltage comes from the model's
+ * simulated battery unless another source is set.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class SimDriveIO extends DriveIO {
+
+	/**
+	 * The simulated drive train
+	 */
+	private final DrivetrainModel model;
+
+	/**
+	 * The length of one time step in nanoseconds
+	 */
+	private final long stepNanos;
+
+	/**
+	 * The current virtual time in nanoseconds
+	 */
+	private long virtualTime;
+
+	/**
+	 * The outputs set since the last step
+	 */
+	private double leftOutput, rightOutput;
+
+	/**
+	 * The robot state flags reported on every update
+	 */
+	private int simFlags;
+
+	/**
+	 * The number of updates after which the robot is disabled, or -1
+	 */
+	private long tickLimit = -1;
+
+	/**
+	 * The number of updates so far
+	 */
+	private long ticks;
+
+	/**
+	 * Initialize a simulated robot
+	 *
+	 * @param model
+	 *            The drive train to simulate
+	 * @param flags
+	 *            The robot state flags to report
+	 */
+	public SimDriveIO(DrivetrainModel model, int flags) {
+		this.model = model;
+		this.stepNanos = (long) (model.getStep() * 1.0e9);
+		this.simFlags = flags;
+		this.voltageSource = model;
+	}
+
+	/**
+	 * Set the robot state flags reported from the next update on
+	 *
+	 * @param flags
+	 *            The flags to report
+	 */
+	public void setFlags(int flags) {
+		this.simFlags = flags;
+	}
+
+	/**
+	 * Disable the robot after a number of updates, so loops that don't finish
+	 * on their own still end
+	 *
+	 * @param ticks
+	 *            The number of updates from now, or -1 for no limit
+	 */
+	public void setTickLimit(long ticks) {
+		this.tickLimit = ticks < 0 ? -1 : this.ticks + ticks;
+	}
+
+	/**
+	 *
+	 * @return The simulated drive train
+	 */
+	public DrivetrainModel getModel() {
+		return model;
+	}
+
+	@Override
+	public void update() {
+		model.step(leftOutput, rightOutput);
+		virtualTime += stepNanos;
+		ticks++;
+
+		time = virtualTime;
+		leftRaw = model.getLeftDistance();
+		rightRaw = model.getRightDistance();
+		gyroRaw = model.getGyroAngle();
+		voltage = voltageSource.getVoltage();
+		flags = (tickLimit >= 0 && ticks > tickLimit) ? 0 : simFlags;
+		updateEstimates();
+	}
+
+	@Override
+	public void setOutputs(double left, double right) {
+		leftOutput = left;
+		rightOutput = right;
+	}
+
+	@Override
+	public long nanoTime() {
+		return virtualTime;
+	}
+
+	@Override
+	public void sleep(long millis) {
+		// Time passes for the robot too
+		long end = virtualTime + millis * 1000000L;
+		while (virtualTime + stepNanos <= end) {
+			model.step(leftOutput, rightOutput);
+			virtualTime += stepNanos;
+		}
+		virtualTime = end;
+	}
+}
@@ -0,0 +1,234 @@
+package ca.team2994.frc.autonomous;
+
+import java.util.Arrays;
+
+/**
+ * A {@link DriveIO} that feeds back a recorded {@link DriveTrace} one tick per
+ * {@link #update()}, with a virtual clock that only moves when the trace does
+ * (or when the code sleeps). The outputs the code commands are compared to the
+ * outputs that were recorded for the same tick.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class TraceDriveIO extends DriveIO {
+
+	/**
+	 * The trace being replayed
+	 */
+	private final DriveTrace trace;
+
+	/**
+	 * The tick currently latched, -1 before the first update
+	 */
+	private int index = -1;
+
+	/**
+	 * The current virtual time in nanoseconds
+	 */
+	private long virtualTime;
+
+	/**
+	 * The outputs commanded since the last update
+	 */
+	private double leftOutput = Double.NaN, rightOutput = Double.NaN;
+
+	/**
+	 * The real time the last update happened, to measure compute time
+	 */
+	private long lastUpdate;
+
+	/*
+	 * Divergence statistics
+	 */
+	private int compared;
+	private int diverged;
+	private int missing;
+	private int firstDivergence = -1;
+	private double maxError;
+	private double sumSquaredError;
+
+	/**
+	 * The real compute time of each replayed tick
+	 */
+	private final long[] computeTime;
+
+	/**
+	 * The tolerance before an output counts as diverged
+	 */
+	private final double tolerance;
+
+	/**
+	 * Initialize the replay of a trace
+	 *
+	 * @param trace
+	 *            The trace to replay
+	 * @param tolerance
+	 *            The output difference that counts as a divergence
+	 */
+	public TraceDriveIO(DriveTrace trace, double tolerance) {
+		this.trace = trace;
+		this.tolerance = tolerance;
+		this.computeTime = new long[trace.count];
+	}
+
+	/**
+	 *
+	 * @return Whether there are ticks left to replay
+	 */
+	public boolean hasNext() {
+		return index + 1 < trace.count;
+	}
+
+	/**
+	 *
+	 * @return The robot state flags of the next tick, or 0 if there are none
+	 */
+	public int peekFlags() {
+		return hasNext() ? trace.flags[index + 1] : 0;
+	}
+
+	/**
+	 * Skip the next tick without running any code for it
+	 */
+	public void skip() {
+		if (hasNext()) {
+			index++;
+		}
+	}
+
+	@Override
+	public void update() {
+		long now = System.nanoTime();
+		if (index >= 0 && index < trace.count) {
+			compare(index);
+			computeTime[index] = now - lastUpdate;
+		}
+		lastUpdate = now;
+
+		leftOutput = Double.NaN;
+		rightOutput = Double.NaN;
+		index++;
+
+		if (index >= trace.count) {
+			// Out of trace: disable the robot so every loop bails out
+			flags = 0;
+			return;
+		}
+
+		time = trace.time[index];
+		virtualTime = Math.max(virtualTime, time);
+		leftRaw = trace.leftRaw[index];
+		rightRaw = trace.rightRaw[index];
+		gyroRaw = trace.gyroRaw[index];
+		voltage = trace.voltage[index];
+		stickX = trace.stickX[index];
+		stickY = trace.stickY[index];
+		buttons = trace.buttons[index] & 0xFFFF;
+		flags = trace.flags[index];
+		updateEstimates();
+	}
+
+	/**
+	 * Compare the outputs commanded in a tick to the recorded ones
+	 */
+	private void compare(int i) {
+		boolean recorded = !Double.isNaN(trace.leftOutput[i]);
+		boolean commanded = !Double.isNaN(leftOutput);
+
+		if (recorded != commanded) {
+			missing++;
+			if (firstDivergence < 0) {
+				firstDivergence = i;
+			}
+			return;
+		}
+		if (!recorded) {
+			return;
+		}
+
+		double error = Math.max(Math.abs(leftOutput - trace.leftOutput[i]),
+				Math.abs(rightOutput - trace.rightOutput[i]));
+		compared++;
+		sumSquaredError += error * error;
+		maxError = Math.max(maxError, error);
+		if (error > tolerance) {
+			diverged++;
+			if (firstDivergence < 0) {
+				firstDivergence = i;
+			}
+		}
+	}
+
+	@Override
+	public void setOutputs(double left, double right) {
+		leftOutput = left;
+		rightOutput = right;
+	}
+
+	@Override
+	public long nanoTime() {
+		return virtualTime;
+	}
+
+	@Override
+	public void sleep(long millis) {
+		virtualTime += millis * 1000000L;
+	}
+
+	/**
+	 * Build a report of the output divergence and loop timing of the replay
+	 * so far
+	 *
+	 * @return The report, one statistic per line
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		int ticks = Math.min(index, trace.count);
+
+		sb.append("Ticks replayed: ").append(ticks).append(" of ")
+				.append(trace.count).append('\n');
+		sb.append("Outputs compared: ").append(compared).append('\n');
+		sb.append("Outputs diverged (> ").append(tolerance).append("): ")
+				.append(diverged).append('\n');
+		sb.append("Ticks with output on only one side: ").append(missing)
+				.append('\n');
+		sb.append("First divergent tick: ").append(firstDivergence)
+				.append('\n');
+		sb.append("Max output error: ").append(maxError).append('\n');
+		sb.append("RMS output error: ")
+				.append(compared == 0 ? 0 : Math.sqrt(sumSquaredError / compared))
+				.append('\n');
+
+		if (ticks > 1) {
+			long[] periods = new long[ticks - 1];
+			for (int i = 1; i < ticks; i++) {
+				periods[i - 1] = trace.time[i] - trace.time[i - 1];
+			}
+			appendPercentiles(sb, "Recorded tick period", periods);
+			appendPercentiles(sb, "Replay compute time",
+					Arrays.copyOf(computeTime, ticks));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Append the mean, median, 99th percentile and max of a set of times
+	 */
+	private static void appendPercentiles(StringBuilder sb, String name,
+			long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double sum = 0;
+		for (long v : sorted) {
+			sum += v;
+		}
+		sb.append(name).append(" (us): mean ")
+				.append(sum / sorted.length / 1000.0).append(", p50 ")
+				.append(sorted[sorted.length / 2] / 1000.0).append(", p99 ")
+				.append(sorted[(int) (sorted.length * 0.99)] / 1000.0)
+				.append(", max ").append(sorted[sorted.length - 1] / 1000.0)
+				.append('\n');
+	}
+}
@@ -0,0 +1,108 @@
+package ca.team2994.frc.autonomous;
+
+import java.io.File;
+import java.io.IOException;
+
+import ca.team2994.frc.utils.ConfigFile;
+
+/**
+ * Replays a recorded {@link DriveTrace} offline through
+ * {@link DriveManagerImpl}, {@link AutoMode} and the PID loops, as fast as the
+ * CPU allows, and reports how far the outputs the code commands now are from
+ * the outputs the robot commanded when the trace was recorded. Run it with:
+ *
+ * <pre>
+ * java ca.team2994.frc.autonomous.TraceReplay match.trace [drive.properties] [tolerance]
+ * </pre>
+ *
+ * The configuration file should point calibration.file, gyroPID.file,
+ * encoderPID.file, trim.file and autonomous.file at copies of the robot's
+ * files. The trim is held at what trim.file held when the replay started:
+ * it does not learn from the trace and is never saved. Tele-op is replayed
+ * when teleop.mode is "drive" or "waypoints"; waypoint logging reads its
+ * buttons from the trace.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class TraceReplay {
+
+	/**
+	 * The robot state flags that select what code runs
+	 */
+	private static final int MODE_FLAGS = DriveIO.ENABLED | DriveIO.AUTONOMOUS
+			| DriveIO.OPERATOR_CONTROL | DriveIO.TEST;
+
+	/**
+	 * Replay a trace file and print the report
+	 *
+	 * @param args
+	 *            The trace file, optionally followed by the configuration file
+	 *            and the output divergence tolerance
+	 * @throws IOException
+	 *             If the trace cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: TraceReplay <trace file> "
+					+ "[drive.properties] [tolerance]");
+			System.exit(1);
+		}
+
+		DriveTrace trace = DriveTrace.read(new File(args[0]));
+		ConfigFile conf = args.length > 1 ? new ConfigFile(args[1])
+				: new ConfigFile(ConfigFile.DEFAULT_CONFIGURATION_FILE);
+		FlightEvents.configure(conf);
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 1e-9;
+
+		TraceDriveIO io = new TraceDriveIO(trace, tolerance);
+		DriveManagerImpl drive = new DriveManagerImpl(io, conf);
+		// The same trim every run, and the robot's trim file left alone
+		drive.freezeTrim();
+
+		long start = System.nanoTime();
+		replay(io, drive, conf.getProperty("teleop.mode", "waypoints"));
+		long elapsed = System.nanoTime() - start;
+
+		System.out.print(io.report());
+		System.out.println("Replay wall time (ms): " + elapsed / 1.0e6);
+	}
+
+	/**
+	 * Run the same code the robot ran for each mode in the trace, the way
+	 * {@link Robot} dispatches it. Each mode is started once when the trace
+	 * enters it; ticks the code does not consume are skipped.
+	 *
+	 * @param io
+	 *            The trace to replay
+	 * @param drive
+	 *            The DriveManager to replay through
+	 * @param teleopMode
+	 *            The teleop.mode the robot was running with
+	 */
+	public static void replay(TraceDriveIO io, DriveManager drive,
+			String teleopMode) {
+		int lastMode = 0;
+		while (io.hasNext()) {
+			int mode = io.peekFlags() & MODE_FLAGS;
+			boolean entered = mode != lastMode;
+			lastMode = mode;
+
+			if (entered && mode == (DriveIO.ENABLED | DriveIO.AUTONOMOUS)) {
+				drive.readPIDValues();
+				drive.runAutonomous();
+			} else if (entered
+					&& mode == (DriveIO.ENABLED | DriveIO.OPERATOR_CONTROL)
+					&& teleopMode.equalsIgnoreCase("drive")) {
+				drive.runTeleOP();
+			} else if (entered
+					&& mode == (DriveIO.ENABLED | DriveIO.OPERATOR_CONTROL)
+					&& teleopMode.equalsIgnoreCase("waypoints")) {
+				drive.runTeleOPLogging();
+			} else {
+				io.skip();
+			}
+		}
+	}
+}
@@ -36,6 +36,14 @@ public class TurnWaypoint implements Waypoint {
 		this.manager = manager;
 	}
 	
+	/**
+	 * 
+	 * @return The number of degrees to turn
+	 */
+	public int getAngle() {
+		return angle;
+	}
+	
 	@Override
 	public long getTime() {
 		return time;
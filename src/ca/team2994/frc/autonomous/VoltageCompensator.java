@@ -0,0 +1,137 @@
+package ca.team2994.frc.autonomous;
+
+import ca.team2994.frc.utils.ConfigFile;
+
+/**
+ * Scales motor outputs so they give the same speed whatever the battery
+ * charge. A duty cycle gives the motors a share of the battery voltage, so an
+ * output is multiplied by the nominal voltage over the battery voltage to
+ * give the motors the voltage it would have at nominal. The battery reading
+ * is low-pass filtered first, so the brief sag when the motors start does not
+ * make the outputs jump, and it is not trusted below a floor so a brownout
+ * cannot scale the outputs without bound.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class VoltageCompensator {
+
+	/**
+	 * Whether outputs are scaled at all
+	 */
+	private final boolean enabled;
+
+	/**
+	 * The voltage outputs are scaled to
+	 */
+	private final double nominal;
+
+	/**
+	 * The lowest filtered voltage outputs are scaled for
+	 */
+	private final double minimum;
+
+	/**
+	 * The time constant of the voltage filter, in seconds
+	 */
+	private final double tau;
+
+	/**
+	 * The filtered battery voltage
+	 */
+	private double voltage;
+
+	/**
+	 * The time of the last reading in nanoseconds
+	 */
+	private long lastTime;
+
+	/**
+	 * Whether there has been a reading yet
+	 */
+	private boolean started;
+
+	/**
+	 * Initialize a compensator from the "voltage." keys of a configuration
+	 * file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public VoltageCompensator(ConfigFile conf) {
+		this(conf.getPropertyAsBoolean("voltage.compensation", true),
+				conf.getPropertyAsDouble("voltage.nominal",
+						VoltageSource.NOMINAL_VOLTAGE),
+				conf.getPropertyAsDouble("voltage.minimum", 8.0),
+				conf.getPropertyAsDouble("voltage.filterTau", 0.1));
+	}
+
+	/**
+	 * Initialize a compensator
+	 *
+	 * @param enabled
+	 *            Whether to scale outputs at all
+	 * @param nominal
+	 *            The voltage to scale outputs to
+	 * @param minimum
+	 *            The lowest filtered voltage to scale outputs for
+	 * @param tau
+	 *            The time constant of the voltage filter in seconds
+	 */
+	public VoltageCompensator(boolean enabled, double nominal, double minimum,
+			double tau) {
+		this.enabled = enabled;
+		this.nominal = nominal;
+		this.minimum = minimum;
+		this.tau = tau;
+		this.voltage = nominal;
+	}
+
+	/**
+	 * Filter a battery reading. Readings at the same time as the last are
+	 * ignored, so this can be called every time outputs are set.
+	 *
+	 * @param time
+	 *            The time of the reading in nanoseconds
+	 * @param reading
+	 *            The battery voltage
+	 */
+	public void update(long time, double reading) {
+		if (!started) {
+			voltage = reading;
+			lastTime = time;
+			started = true;
+			return;
+		}
+		double dt = (time - lastTime) / 1.0e9;
+		if (dt <= 0) {
+			return;
+		}
+		lastTime = time;
+		voltage += (reading - voltage) * dt / (tau + dt);
+	}
+
+	/**
+	 * Scale an output for the filtered battery voltage
+	 *
+	 * @param output
+	 *            The output at the nominal voltage
+	 * @return The output that gives the same motor voltage now, from -1 to 1
+	 */
+	public double compensate(double output) {
+		if (!enabled) {
+			return output;
+		}
+		double scaled = output * nominal / Math.max(voltage, minimum);
+		return Math.max(-1, Math.min(1, scaled));
+	}
+
+	/**
+	 *
+	 * @return The filtered battery voltage
+	 */
+	public double getVoltage() {
+		return voltage;
+	}
+}
@@ -0,0 +1,34 @@
+package ca.team2994.frc.autonomous;
+
+/**
+ * A source of the battery voltage. The drive code reads the voltage through a
+ * VoltageSource instead of the driver station so it can be run against a
+ * simulated battery.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public interface VoltageSource {
+
+	/**
+	 * The voltage motor outputs are scaled to
+	 */
+	public static final double NOMINAL_VOLTAGE = 12.0;
+
+	/**
+	 * A battery that always reads the nominal voltage
+	 */
+	public static final VoltageSource NOMINAL = new VoltageSource() {
+		@Override
+		public double getVoltage() {
+			return NOMINAL_VOLTAGE;
+		}
+	};
+
+	/**
+	 *
+	 * @return The current battery voltage
+	 */
+	public double getVoltage();
+}
@@ -0,0 +1,247 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.BooleanSupplier;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Runs the autonomous control code while the robot is disabled, so the JIT
+ * has compiled it before the match starts instead of interpreting the first
+ * seconds of autonomous. Every round loads and runs the autonomous routine,
+ * with its waypoint parsing, PID loops and output computation, on a
+ * {@link DriveManagerImpl#simulated(DriveIO) simulated} manager driving a
+ * {@link SimDriveIO}, so no motor is ever set. Rounds stop once the JIT has
+ * stopped compiling for a while, and the time a drive takes to set its
+ * first output is measured before and after to show the effect.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class WarmUp {
+
+	/**
+	 * The manager whose constants the simulated managers copy
+	 */
+	private final DriveManagerImpl drive;
+
+	/**
+	 * The drive configuration file
+	 */
+	private final ConfigFile conf;
+
+	/**
+	 * The drive train every round is simulated on
+	 */
+	private final DrivetrainModel model;
+
+	/**
+	 * The routine to run, or null to drive and turn without one
+	 */
+	private final String routine;
+
+	/**
+	 * The number of simulated updates in a round
+	 */
+	private final long ticksPerRound;
+
+	/**
+	 * The fewest rounds to run
+	 */
+	private final int minRounds;
+
+	/**
+	 * The most rounds to run
+	 */
+	private final int maxRounds;
+
+	/**
+	 * The most time to spend warming up, in nanoseconds
+	 */
+	private final long maxTime;
+
+	/**
+	 * How long the JIT has to go without compiling, in nanoseconds of
+	 * warm-up
+	 */
+	private final long quietTime;
+
+	/**
+	 * The JIT, or null if its compilation time cannot be monitored
+	 */
+	private final CompilationMXBean compiler;
+
+	/*
+	 * Progress so far, across calls to run
+	 */
+	private int rounds;
+	private long elapsed;
+	private long lastCompile = -1;
+	private long quietSince;
+	private long coldTick = -1;
+	private boolean done;
+
+	/**
+	 * Initialize a warm-up from the "warmup." keys of a configuration file
+	 *
+	 * @param drive
+	 *            The manager whose constants to use
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public WarmUp(DriveManagerImpl drive, ConfigFile conf) {
+		this.drive = drive;
+		this.conf = conf;
+		this.model = new DrivetrainModel(conf);
+		String file = drive.getAutonomousFile();
+		this.routine = new File(file).exists() ? file : null;
+		this.ticksPerRound = (long) (conf.getPropertyAsDouble(
+				"warmup.roundSeconds", 15.0) / model.getStep());
+		this.minRounds = conf.getPropertyAsInteger("warmup.minRounds", 50);
+		this.maxRounds = conf.getPropertyAsInteger("warmup.maxRounds", 100000);
+		this.maxTime = (long) (conf.getPropertyAsDouble("warmup.maxSeconds",
+				20.0) * 1.0e9);
+		this.quietTime = (long) (conf.getPropertyAsDouble(
+				"warmup.quietSeconds", 0.5) * 1.0e9);
+
+		CompilationMXBean bean = ManagementFactory.getCompilationMXBean();
+		this.compiler = bean != null
+				&& bean.isCompilationTimeMonitoringSupported() ? bean : null;
+	}
+
+	/**
+	 *
+	 * @return Whether the warm-up has finished
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Run rounds until the JIT has stopped compiling, the budget is spent or
+	 * the robot is enabled. If the robot is enabled first, the next call
+	 * carries on.
+	 *
+	 * @param keepGoing
+	 *            Whether the robot is still disabled
+	 */
+	public void run(BooleanSupplier keepGoing) {
+		if (done) {
+			return;
+		}
+
+		long warmTick = -1;
+		try {
+			if (coldTick < 0) {
+				coldTick = firstTick();
+			}
+
+			while (keepGoing.getAsBoolean()) {
+				long start = System.nanoTime();
+				round();
+				rounds++;
+				elapsed += System.nanoTime() - start;
+
+				long compile = compileTime();
+				if (compile != lastCompile) {
+					lastCompile = compile;
+					quietSince = elapsed;
+				}
+
+				if ((rounds >= minRounds && isQuiet()) || rounds >= maxRounds
+						|| elapsed >= maxTime) {
+					done = true;
+					break;
+				}
+			}
+
+			if (done) {
+				warmTick = firstTick();
+			}
+		} catch (RuntimeException e) {
+			// Never let the warm-up keep the robot from running
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+			done = true;
+		}
+
+		if (done && warmTick >= 0) {
+			Utils.ROBOT_LOGGER.log(INFO, "Warm-up: " + rounds + " rounds in "
+					+ elapsed / 1000000 + "ms, "
+					+ (isQuiet() ? "JIT quiet" : "budget spent")
+					+ "; first drive output after " + coldTick / 1000 + "us cold, "
+					+ warmTick / 1000 + "us warm");
+		}
+	}
+
+	/**
+	 *
+	 * @return Whether the JIT has gone long enough without compiling
+	 */
+	private boolean isQuiet() {
+		return compiler != null && elapsed - quietSince >= quietTime;
+	}
+
+	/**
+	 * Load and run the routine once against a fresh simulation
+	 */
+	private void round() {
+		SimDriveIO io = new SimDriveIO(model.copy(), DriveIO.ENABLED
+				| DriveIO.AUTONOMOUS);
+		io.setTickLimit(ticksPerRound);
+		DriveManagerImpl sim = drive.simulated(io);
+		// Every round would otherwise log its drives and turns
+		sim.setQuiet(true);
+
+		if (routine != null) {
+			try {
+				new AutoMode("Warm-up", routine, sim, io, conf);
+				return;
+			} catch (IOException e) {
+				Utils.logException(Utils.ROBOT_LOGGER, e);
+			}
+		}
+		sim.driveStraight(conf.getPropertyAsDouble("warmup.distance", 5.0));
+		sim.driveTurn(90);
+	}
+
+	/**
+	 * Time how long a drive takes to set its first output
+	 *
+	 * @return The time it took, in nanoseconds
+	 */
+	private long firstTick() {
+		final long[] firstOutput = { 0 };
+		SimDriveIO io = new SimDriveIO(model.copy(), DriveIO.ENABLED
+				| DriveIO.AUTONOMOUS) {
+			@Override
+			public void setOutputs(double left, double right) {
+				if (firstOutput[0] == 0) {
+					firstOutput[0] = System.nanoTime();
+				}
+				super.setOutputs(left, right);
+			}
+		};
+		io.setTickLimit(2);
+		DriveManagerImpl sim = drive.simulated(io);
+		sim.setQuiet(true);
+		long start = System.nanoTime();
+		sim.driveStraight(1.0);
+		return firstOutput[0] - start;
+	}
+
+	/**
+	 *
+	 * @return The total time the JIT has spent compiling in milliseconds, or
+	 *         -1 if it is not known
+	 */
+	private long compileTime() {
+		return compiler == null ? -1 : compiler.getTotalCompilationTime();
+	}
+}
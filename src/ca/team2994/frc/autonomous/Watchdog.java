@@ -0,0 +1,190 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.WARNING;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Stops an autonomous segment that will never finish. Every segment gets a
+ * time budget from its length and the expected speed, and a segment is
+ * stalled when it commands a real output but its encoder or gyro reading
+ * stops changing, as happens when a sensor is unplugged or the robot is
+ * blocked. The cause is logged once per segment.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class Watchdog {
+
+	/**
+	 * Whether segments are checked at all
+	 */
+	private final boolean enabled;
+
+	/**
+	 * The expected driving speed, in units per second
+	 */
+	private final double driveSpeed;
+
+	/**
+	 * The expected turning rate, in degrees per second
+	 */
+	private final double turnRate;
+
+	/**
+	 * The factor the expected time is multiplied by
+	 */
+	private final double margin;
+
+	/**
+	 * The time added to every budget for the PID to settle, in seconds
+	 */
+	private final double settleTime;
+
+	/**
+	 * How long a segment may go without moving, in seconds
+	 */
+	private final double stallTime;
+
+	/**
+	 * The slowest driving speed that counts as moving, in units per second
+	 */
+	private final double stallSpeed;
+
+	/**
+	 * The slowest turning rate that counts as moving, in degrees per second
+	 */
+	private final double stallTurnRate;
+
+	/**
+	 * The smallest output that should move the robot
+	 */
+	private final double stallOutput;
+
+	/*
+	 * The current segment
+	 */
+	private String kind;
+	private double target;
+	private long start;
+	private long budget;
+	private double minRate;
+	private long lastMove;
+	private String cause;
+
+	/**
+	 * Initialize the watchdog from the "watchdog." keys of a configuration
+	 * file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public Watchdog(ConfigFile conf) {
+		this.enabled = conf.getPropertyAsBoolean("watchdog.enabled", true);
+		this.driveSpeed = conf.getPropertyAsDouble("watchdog.driveSpeed", 2.0);
+		this.turnRate = conf.getPropertyAsDouble("watchdog.turnRate", 90.0);
+		this.margin = conf.getPropertyAsDouble("watchdog.margin", 2.0);
+		this.settleTime = conf.getPropertyAsDouble("watchdog.settleTime", 1.0);
+		this.stallTime = conf.getPropertyAsDouble("watchdog.stallTime", 0.5);
+		this.stallSpeed = conf.getPropertyAsDouble("watchdog.stallSpeed", 0.1);
+		this.stallTurnRate = conf.getPropertyAsDouble("watchdog.stallTurnRate", 5.0);
+		this.stallOutput = conf.getPropertyAsDouble("watchdog.stallOutput", 0.1);
+	}
+
+	/**
+	 * Start watching a drive
+	 *
+	 * @param units
+	 *            The distance to drive
+	 * @param now
+	 *            The current time in nanoseconds
+	 */
+	public void startDrive(double units, long now) {
+		start("drive", units, Math.abs(units) / driveSpeed, stallSpeed, now);
+	}
+
+	/**
+	 * Start watching a turn
+	 *
+	 * @param degrees
+	 *            The angle to turn
+	 * @param now
+	 *            The current time in nanoseconds
+	 */
+	public void startTurn(double degrees, long now) {
+		start("turn", degrees, Math.abs(degrees) / turnRate, stallTurnRate,
+				now);
+	}
+
+	/**
+	 * Start watching a segment. Its name is only put together if it fails,
+	 * so starting a segment allocates nothing.
+	 */
+	private void start(String kind, double target, double expected,
+			double minRate, long now) {
+		this.kind = kind;
+		this.target = target;
+		this.start = now;
+		this.budget = (long) ((expected * margin + settleTime) * 1.0e9);
+		this.minRate = minRate;
+		this.lastMove = now;
+		this.cause = null;
+	}
+
+	/**
+	 * Check the segment once per control cycle
+	 *
+	 * @param now
+	 *            The current time in nanoseconds
+	 * @param position
+	 *            The distance driven or angle turned so far
+	 * @param rate
+	 *            The estimated speed or turning rate, per second
+	 * @param output
+	 *            The output about to be commanded
+	 * @return False if the segment should be stopped
+	 */
+	public boolean check(long now, double position, double rate,
+			double output) {
+		if (!enabled) {
+			return true;
+		}
+		if (cause != null) {
+			return false;
+		}
+
+		if (Math.abs(rate) >= minRate || Math.abs(output) < stallOutput) {
+			// Moving, or not trying to
+			lastMove = now;
+		} else if (now - lastMove > stallTime * 1.0e9) {
+			fail("stalled at " + position + " with output " + output, now);
+			return false;
+		}
+
+		if (now - start > budget) {
+			fail("ran out of its " + budget / 1.0e9 + "s budget at "
+					+ position, now);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Record and log why the segment was stopped
+	 */
+	private void fail(String reason, long now) {
+		cause = kind + " " + target + " " + reason + " after " + (now - start) / 1.0e9
+				+ "s";
+		Utils.ROBOT_LOGGER.log(WARNING, "Watchdog: " + cause);
+	}
+
+	/**
+	 *
+	 * @return Why the last segment was stopped, or null if it was not
+	 */
+	public String getCause() {
+		return cause;
+	}
+}
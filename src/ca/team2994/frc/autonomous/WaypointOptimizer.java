@@ -0,0 +1,523 @@
+package ca.team2994.frc.autonomous;
+
+import static java.util.logging.Level.INFO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.team2994.frc.utils.ConfigFile;
+import ca.team2994.frc.utils.Utils;
+
+/**
+ * Simplifies a list of recorded waypoints before it is run. Waypoints recorded
+ * in tele-op tend to contain consecutive drives, tiny correction turns and
+ * turns that cancel each other out, and every one of them costs a full PID
+ * settle. This pass merges collinear drives, folds negligible turns into the
+ * next turn, cancels opposing turns and can optionally simplify the driven
+ * path with the Ramer-Douglas-Peucker algorithm. It is off unless
+ * optimizer.enabled is set, and by default never moves the driven path: a
+ * small turn is only put off past a drive if the sideways error that causes
+ * stays within optimizer.maxLateralError.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class WaypointOptimizer {
+
+	/**
+	 * Turns with a smaller magnitude than this (in degrees) may be folded into
+	 * the next turn
+	 */
+	private final double minTurnDegrees;
+
+	/**
+	 * How far (in calibrated units) the drives after a small turn may be
+	 * moved sideways by putting the turn off until the next one
+	 */
+	private final double maxLateralError;
+
+	/**
+	 * The maximum distance (in calibrated units) a recorded point may be moved
+	 * by path simplification. Zero disables simplification.
+	 */
+	private final double rdpTolerance;
+
+	/**
+	 * Whether the waypoint times should be moved up by the time that was saved
+	 */
+	private final boolean retime;
+
+	/**
+	 * The expected speed when driving straight, in units per second
+	 */
+	private final double driveSpeed;
+
+	/**
+	 * The expected turn rate, in degrees per second
+	 */
+	private final double turnRate;
+
+	/**
+	 * The expected time for a PID loop to settle at the end of a motion, in
+	 * seconds
+	 */
+	private final double settleTime;
+
+	/**
+	 * The number of motions removed by the last call to
+	 * {@link #optimize(List, DriveManager)}
+	 */
+	private int motionsSaved;
+
+	/**
+	 * The estimated time (in milliseconds) saved by the last call to
+	 * {@link #optimize(List, DriveManager)}
+	 */
+	private long timeSaved;
+
+	/**
+	 * Initialize the optimizer from the "optimizer." keys of a configuration
+	 * file
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 */
+	public WaypointOptimizer(ConfigFile conf) {
+		this(conf.getPropertyAsDouble("optimizer.minTurnDegrees", 3.0),
+				conf.getPropertyAsDouble("optimizer.maxLateralError", 0.0),
+				conf.getPropertyAsDouble("optimizer.rdpTolerance", 0.0),
+				conf.getPropertyAsBoolean("optimizer.retime", true),
+				conf.getPropertyAsDouble("optimizer.driveSpeed", 3.0),
+				conf.getPropertyAsDouble("optimizer.turnRate", 90.0),
+				conf.getPropertyAsDouble("optimizer.settleTime", 0.5));
+	}
+
+	/**
+	 * Initialize the optimizer
+	 *
+	 * @param minTurnDegrees
+	 *            Turns smaller than this may be folded into the next turn
+	 * @param maxLateralError
+	 *            How far drives may be moved sideways by folding a turn past
+	 *            them, in units
+	 * @param rdpTolerance
+	 *            The path simplification tolerance in units, or 0 to disable
+	 *            it
+	 * @param retime
+	 *            Whether to move waypoint times up by the time saved
+	 * @param driveSpeed
+	 *            The expected drive speed in units per second
+	 * @param turnRate
+	 *            The expected turn rate in degrees per second
+	 * @param settleTime
+	 *            The expected PID settle time in seconds
+	 */
+	public WaypointOptimizer(double minTurnDegrees, double maxLateralError,
+			double rdpTolerance, boolean retime, double driveSpeed,
+			double turnRate, double settleTime) {
+		this.minTurnDegrees = minTurnDegrees;
+		this.maxLateralError = maxLateralError;
+		this.rdpTolerance = rdpTolerance;
+		this.retime = retime;
+		this.driveSpeed = driveSpeed;
+		this.turnRate = turnRate;
+		this.settleTime = settleTime;
+	}
+
+	/**
+	 * Optimize a list of waypoints that is sorted by time. The original list is
+	 * not modified.
+	 *
+	 * @param waypoints
+	 *            The waypoints to optimize
+	 * @param manager
+	 *            The DriveManager the new waypoints will drive with
+	 * @return The optimized list of waypoints
+	 */
+	public List<Waypoint> optimize(List<Waypoint> waypoints,
+			DriveManager manager) {
+		List<Waypoint> result = mergeMotions(waypoints, manager);
+
+		if (rdpTolerance > 0) {
+			result = simplifyPath(result, manager);
+		}
+
+		if (retime) {
+			result = retime(waypoints, result, manager);
+		}
+
+		motionsSaved = waypoints.size() - result.size();
+		timeSaved = estimateTime(waypoints) - estimateTime(result);
+
+		if (!manager.isQuiet()) {
+			Utils.ROBOT_LOGGER.log(INFO, "Waypoint optimizer: "
+					+ waypoints.size() + " -> " + result.size()
+					+ " motions, saved " + motionsSaved + " motions and about "
+					+ timeSaved + "ms");
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 * @return The number of motions removed by the last optimization
+	 */
+	public int getMotionsSaved() {
+		return motionsSaved;
+	}
+
+	/**
+	 *
+	 * @return The estimated time in milliseconds saved by the last
+	 *         optimization
+	 */
+	public long getTimeSaved() {
+		return timeSaved;
+	}
+
+	/**
+	 * Merge consecutive drives, merge consecutive turns (which cancels opposing
+	 * turns) and fold turns that are too small into the next turn, as long as
+	 * the drives they are put off past are not moved sideways too far. A turn
+	 * left over at the end is always made, so the final heading is kept.
+	 */
+	private List<Waypoint> mergeMotions(List<Waypoint> waypoints,
+			DriveManager manager) {
+		List<Waypoint> result = new ArrayList<>();
+
+		int pendingTurn = 0;
+		long pendingTurnTime = -1;
+		// How far the drives since the pending turn was put off have been
+		// moved sideways
+		double lateral = 0;
+
+		for (Waypoint w : waypoints) {
+			if (w instanceof TurnWaypoint) {
+				if (pendingTurnTime < 0) {
+					pendingTurnTime = w.getTime();
+				}
+				pendingTurn += ((TurnWaypoint) w).getAngle();
+			} else if (w instanceof DriveWaypoint) {
+				if (pendingTurn != 0) {
+					double shift = lateral
+							+ Math.abs(((DriveWaypoint) w).getDistance()
+									* Math.sin(Math.toRadians(pendingTurn)));
+					if (Math.abs(pendingTurn) >= minTurnDegrees
+							|| shift > maxLateralError) {
+						// Turn here, so this drive is a separate motion
+						result.add(new TurnWaypoint(pendingTurn,
+								pendingTurnTime < 0 ? w.getTime()
+										: pendingTurnTime, manager));
+						pendingTurn = 0;
+						lateral = 0;
+					} else {
+						// Folded into the next turn
+						lateral = shift;
+					}
+				}
+				pendingTurnTime = -1;
+
+				Waypoint last = result.isEmpty() ? null : result.get(result.size() - 1);
+				if (last instanceof DriveWaypoint) {
+					double distance = ((DriveWaypoint) last).getDistance()
+							+ ((DriveWaypoint) w).getDistance();
+					result.set(result.size() - 1, new DriveWaypoint(distance,
+							last.getTime(), manager));
+				} else {
+					result.add(w);
+				}
+			} else {
+				// Unknown waypoints are never moved past, so flush any turn
+				if (pendingTurn != 0) {
+					result.add(new TurnWaypoint(pendingTurn,
+							pendingTurnTime < 0 ? w.getTime() : pendingTurnTime, manager));
+					pendingTurn = 0;
+				}
+				pendingTurnTime = -1;
+				lateral = 0;
+				result.add(w);
+			}
+		}
+
+		if (pendingTurn != 0) {
+			result.add(new TurnWaypoint(pendingTurn, pendingTurnTime >= 0
+					? pendingTurnTime
+					: waypoints.get(waypoints.size() - 1).getTime(), manager));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Simplify the driven path with Ramer-Douglas-Peucker. The path is split
+	 * into runs of drives in the same direction, and each run is dead-reckoned
+	 * into points, simplified, and turned back into turns and drives.
+	 */
+	private List<Waypoint> simplifyPath(List<Waypoint> waypoints,
+			DriveManager manager) {
+		List<Waypoint> result = new ArrayList<>();
+
+		int start = 0;
+		while (start < waypoints.size()) {
+			if (!isMotion(waypoints.get(start))) {
+				result.add(waypoints.get(start));
+				start++;
+				continue;
+			}
+
+			// Find the end of the run of motions where all drives have the
+			// same sign
+			int sign = 0;
+			int end = start;
+			while (end < waypoints.size() && isMotion(waypoints.get(end))) {
+				Waypoint w = waypoints.get(end);
+				if (w instanceof DriveWaypoint) {
+					int s = ((DriveWaypoint) w).getDistance() < 0 ? -1 : 1;
+					if (sign != 0 && s != sign) {
+						break;
+					}
+					sign = s;
+				}
+				end++;
+			}
+
+			result.addAll(simplifyRun(waypoints.subList(start, end),
+					sign == 0 ? 1 : sign, manager));
+			start = end;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Simplify one run of motions where all drives have the given sign
+	 */
+	private List<Waypoint> simplifyRun(List<Waypoint> run, int sign,
+			DriveManager manager) {
+		int drives = 0;
+		for (Waypoint w : run) {
+			if (w instanceof DriveWaypoint) {
+				drives++;
+			}
+		}
+
+		if (drives < 2) {
+			return run;
+		}
+
+		double[] x = new double[drives + 1];
+		double[] y = new double[drives + 1];
+		long[] times = new long[drives + 1];
+
+		double heading = 0;
+		int count = 1;
+		long segmentTime = -1;
+		for (Waypoint w : run) {
+			if (segmentTime < 0) {
+				segmentTime = w.getTime();
+			}
+			if (w instanceof TurnWaypoint) {
+				heading += ((TurnWaypoint) w).getAngle();
+			} else {
+				double distance = ((DriveWaypoint) w).getDistance();
+				times[count - 1] = segmentTime;
+				x[count] = x[count - 1] + distance * Math.cos(Math.toRadians(heading));
+				y[count] = y[count - 1] + distance * Math.sin(Math.toRadians(heading));
+				count++;
+				segmentTime = -1;
+			}
+		}
+		double finalHeading = heading;
+		long finalTime = segmentTime < 0 ? run.get(run.size() - 1).getTime() : segmentTime;
+
+		boolean[] keep = simplify(x, y, count, rdpTolerance);
+
+		List<Waypoint> result = new ArrayList<>();
+		double current = 0;
+		int from = 0;
+		for (int to = 1; to < count; to++) {
+			if (!keep[to]) {
+				continue;
+			}
+
+			double dx = x[to] - x[from];
+			double dy = y[to] - y[from];
+			double travel = Math.toDegrees(Math.atan2(dy, dx));
+			double target = sign > 0 ? travel : travel + 180;
+
+			int turn = (int) Math.round(normalizeAngle(target - current));
+			if (turn != 0) {
+				result.add(new TurnWaypoint(turn, times[from], manager));
+				current += turn;
+			}
+			result.add(new DriveWaypoint(sign * Math.hypot(dx, dy), times[from], manager));
+			from = to;
+		}
+
+		int turn = (int) Math.round(normalizeAngle(finalHeading - current));
+		if (turn != 0) {
+			result.add(new TurnWaypoint(turn, finalTime, manager));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Move waypoint times up by the estimated time saved by the motions before
+	 * them, so the routine does not wait out the time that was saved.
+	 */
+	private List<Waypoint> retime(List<Waypoint> original,
+			List<Waypoint> optimized, DriveManager manager) {
+		List<Waypoint> result = new ArrayList<>(optimized.size());
+
+		long newBefore = 0;
+		long previous = Long.MIN_VALUE;
+		for (Waypoint w : optimized) {
+			long originalBefore = 0;
+			for (Waypoint o : original) {
+				if (o.getTime() < w.getTime()) {
+					originalBefore += estimateTime(o);
+				}
+			}
+
+			long time = w.getTime() - Math.max(0, originalBefore - newBefore);
+			time = Math.max(time, previous);
+			previous = time;
+			newBefore += estimateTime(w);
+
+			if (time == w.getTime()) {
+				result.add(w);
+			} else if (w instanceof DriveWaypoint) {
+				result.add(new DriveWaypoint(((DriveWaypoint) w).getDistance(), time, manager));
+			} else if (w instanceof TurnWaypoint) {
+				result.add(new TurnWaypoint(((TurnWaypoint) w).getAngle(), time, manager));
+			} else {
+				result.add(w);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Estimate the time it takes to run a list of waypoints
+	 *
+	 * @param waypoints
+	 *            The waypoints to estimate
+	 * @return The estimated time in milliseconds
+	 */
+	public long estimateTime(List<Waypoint> waypoints) {
+		long total = 0;
+		for (Waypoint w : waypoints) {
+			total += estimateTime(w);
+		}
+		return total;
+	}
+
+	/**
+	 * Estimate the time it takes to run a single waypoint
+	 *
+	 * @param w
+	 *            The waypoint to estimate
+	 * @return The estimated time in milliseconds
+	 */
+	public long estimateTime(Waypoint w) {
+		double seconds;
+		if (w instanceof DriveWaypoint) {
+			seconds = settleTime + Math.abs(((DriveWaypoint) w).getDistance()) / driveSpeed;
+		} else if (w instanceof TurnWaypoint) {
+			seconds = settleTime + Math.abs(((TurnWaypoint) w).getAngle()) / turnRate;
+		} else {
+			seconds = 0;
+		}
+		return Math.round(seconds * 1000);
+	}
+
+	/**
+	 * Ramer-Douglas-Peucker line simplification.
+	 *
+	 * @param x
+	 *            The x coordinates of the points
+	 * @param y
+	 *            The y coordinates of the points
+	 * @param count
+	 *            The number of points to use from the arrays
+	 * @param tolerance
+	 *            The maximum distance a removed point may be from the
+	 *            simplified line
+	 * @return For each point, whether it is kept. The first and last points
+	 *         are always kept.
+	 */
+	public static boolean[] simplify(double[] x, double[] y, int count,
+			double tolerance) {
+		boolean[] keep = new boolean[count];
+		if (count == 0) {
+			return keep;
+		}
+		keep[0] = true;
+		keep[count - 1] = true;
+
+		int[] stack = new int[2 * count];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = count - 1;
+
+		while (top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+
+			double dx = x[last] - x[first];
+			double dy = y[last] - y[first];
+			double length = Math.hypot(dx, dy);
+
+			double maxDistance = -1;
+			int index = -1;
+			for (int i = first + 1; i < last; i++) {
+				double distance;
+				if (length == 0) {
+					distance = Math.hypot(x[i] - x[first], y[i] - y[first]);
+				} else {
+					distance = Math.abs(dy * x[i] - dx * y[i] + x[last] * y[first]
+							- y[last] * x[first]) / length;
+				}
+				if (distance > maxDistance) {
+					maxDistance = distance;
+					index = i;
+				}
+			}
+
+			if (index >= 0 && maxDistance > tolerance) {
+				keep[index] = true;
+				stack[top++] = first;
+				stack[top++] = index;
+				stack[top++] = index;
+				stack[top++] = last;
+			}
+		}
+
+		return keep;
+	}
+
+	/**
+	 * Normalize an angle to the range (-180, 180]
+	 */
+	private static double normalizeAngle(double degrees) {
+		double angle = degrees % 360;
+		if (angle > 180) {
+			angle -= 360;
+		} else if (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+
+	/**
+	 *
+	 * @return Whether the waypoint is a drive or a turn
+	 */
+	private static boolean isMotion(Waypoint w) {
+		return w instanceof DriveWaypoint || w instanceof TurnWaypoint;
+	}
+}
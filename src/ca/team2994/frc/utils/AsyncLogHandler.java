@@ -0,0 +1,82 @@
+package ca.team2994.frc.utils;
+
+import java.util.function.Consumer;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands records to a {@link BackgroundWorker}, which
+ * formats and writes them with the real handlers. Logging from the control
+ * thread then never waits on the file system or the console, and stack
+ * traces are rendered on the worker.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class AsyncLogHandler extends Handler {
+
+	/**
+	 * The handlers that write the records
+	 */
+	private final Handler[] targets;
+
+	/**
+	 * The thread that runs the handlers
+	 */
+	private final BackgroundWorker<LogRecord> worker;
+
+	/**
+	 * Initialize a handler and start its worker
+	 *
+	 * @param capacity
+	 *            The most records that can wait to be written
+	 * @param targets
+	 *            The handlers that write the records
+	 */
+	public AsyncLogHandler(int capacity, final Handler... targets) {
+		this.targets = targets;
+		this.worker = new BackgroundWorker<LogRecord>("Logging", capacity,
+				new Consumer<LogRecord>() {
+					@Override
+					public void accept(LogRecord record) {
+						for (Handler target : targets) {
+							target.publish(record);
+						}
+					}
+				});
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		if (!isLoggable(record)) {
+			return;
+		}
+		// The caller is found from the stack, so it has to be found here
+		record.getSourceClassName();
+		worker.offer(record);
+	}
+
+	/**
+	 *
+	 * @return The number of records dropped because the worker fell behind
+	 */
+	public long getDropped() {
+		return worker.getDropped();
+	}
+
+	@Override
+	public void flush() {
+		for (Handler target : targets) {
+			target.flush();
+		}
+	}
+
+	@Override
+	public void close() {
+		worker.stop(1000);
+		for (Handler target : targets) {
+			target.close();
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package ca.team2994.frc.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A buffered stream that writes its buffers from a {@link BackgroundWorker},
+ * so a control loop recording to a file never waits on the file system.
+ * Bytes are copied into one of a fixed set of chunks; a full chunk, or the
+ * current one when the stream is flushed, is handed to the worker, which
+ * writes it to the real stream and hands it back. Writing and flushing
+ * allocate nothing.
+ *
+ * The writer only waits if the worker has fallen behind by every chunk, as
+ * dropping bytes would corrupt the file. A write that fails on the worker is
+ * thrown from the next write, flush or close, and everything after it is
+ * discarded.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class AsyncOutputStream extends OutputStream {
+
+	/**
+	 * The size of each chunk in bytes
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 13;
+
+	/**
+	 * The number of chunks
+	 */
+	public static final int DEFAULT_CHUNKS = 16;
+
+	/**
+	 * The longest close waits for the worker, in milliseconds
+	 */
+	private static final long CLOSE_WAIT = 5000;
+
+	/**
+	 * Bytes waiting to be written
+	 */
+	private static class Chunk {
+		final byte[] data;
+		int length;
+		boolean flush;
+
+		Chunk(int size) {
+			this.data = new byte[size];
+		}
+	}
+
+	/**
+	 * The stream the chunks are written to
+	 */
+	private final OutputStream target;
+
+	/**
+	 * Chunks free to be filled in
+	 */
+	private final BoundedQueue<Chunk> free;
+
+	/**
+	 * Writes the chunks handed to it
+	 */
+	private final BackgroundWorker<Chunk> worker;
+
+	/**
+	 * The chunk being filled in, or null once closed
+	 */
+	private Chunk current;
+
+	/**
+	 * The first write that failed on the worker, or null
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Initialize a stream with the default chunks
+	 *
+	 * @param target
+	 *            The stream to write to
+	 * @param name
+	 *            The name of the worker thread
+	 */
+	public AsyncOutputStream(OutputStream target, String name) {
+		this(target, name, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS);
+	}
+
+	/**
+	 * Initialize a stream and start its worker
+	 *
+	 * @param target
+	 *            The stream to write to
+	 * @param name
+	 *            The name of the worker thread
+	 * @param chunkSize
+	 *            The size of each chunk in bytes
+	 * @param chunks
+	 *            The number of chunks, rounded up to a power of two
+	 */
+	public AsyncOutputStream(final OutputStream target, String name,
+			int chunkSize, int chunks) {
+		this.target = target;
+		this.free = new BoundedQueue<Chunk>(chunks);
+		// Every chunk but the current one can be waiting, so handing one over
+		// always fits
+		this.worker = new BackgroundWorker<Chunk>(name, free.capacity(),
+				new Consumer<Chunk>() {
+					@Override
+					public void accept(Chunk chunk) {
+						if (failure == null) {
+							try {
+								target.write(chunk.data, 0, chunk.length);
+								if (chunk.flush) {
+									target.flush();
+								}
+							} catch (IOException e) {
+								failure = e;
+							}
+						}
+						chunk.length = 0;
+						chunk.flush = false;
+						free.offer(chunk);
+					}
+				});
+		for (int i = 0; i < free.capacity(); i++) {
+			free.offer(new Chunk(Math.max(1, chunkSize)));
+		}
+		this.current = free.poll();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (current == null) {
+			throw new IOException("Stream closed");
+		}
+		if (current.length == current.data.length) {
+			hand(false);
+		}
+		current.data[current.length++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (current == null) {
+			throw new IOException("Stream closed");
+		}
+		while (len > 0) {
+			if (current.length == current.data.length) {
+				hand(false);
+			}
+			int count = Math.min(len, current.data.length - current.length);
+			System.arraycopy(b, off, current.data, current.length, count);
+			current.length += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Hand what has been written so far to the worker, which writes it and
+	 * flushes the target. This does not wait for the write.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (current == null) {
+			return;
+		}
+		hand(true);
+	}
+
+	/**
+	 * Write everything handed over, then close the target. This waits for
+	 * the worker, so call it once recording is over.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (current == null) {
+			return;
+		}
+		current.flush = true;
+		worker.offer(current);
+		current = null;
+		worker.stop(CLOSE_WAIT);
+		target.close();
+		checkFailure();
+	}
+
+	/**
+	 * Hand the current chunk to the worker and take a free one
+	 *
+	 * @param flush
+	 *            Whether the worker should flush the target after writing it
+	 */
+	private void hand(boolean flush) throws IOException {
+		checkFailure();
+		current.flush = flush;
+		worker.offer(current);
+		current = free.poll();
+		while (current == null) {
+			LockSupport.parkNanos(this, 100000L);
+			current = free.poll();
+		}
+	}
+
+	/**
+	 * Throw the first write that failed on the worker
+	 */
+	private void checkFailure() throws IOException {
+		IOException e = failure;
+		if (e != null) {
+			throw e;
+		}
+	}
+}
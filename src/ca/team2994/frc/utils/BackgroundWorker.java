@@ -0,0 +1,177 @@
+package ca.team2994.frc.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A low priority daemon thread that handles elements handed to it through a
+ * {@link BoundedQueue}, so file writes and logging never hold up the thread
+ * handing them over. Handing over never blocks or allocates; if the worker
+ * has fallen so far behind that the queue is full, the element is dropped
+ * and counted.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ * @param <T>
+ *            The type of the elements
+ */
+public class BackgroundWorker<T> {
+
+	/**
+	 * The elements waiting to be handled
+	 */
+	private final BoundedQueue<T> queue;
+
+	/**
+	 * Handles each element
+	 */
+	private final Consumer<T> handler;
+
+	/**
+	 * The thread handling the elements
+	 */
+	private final Thread thread;
+
+	/**
+	 * The number of elements dropped because the queue was full
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * The number of elements handed over, and the number handled
+	 */
+	private final AtomicLong offered = new AtomicLong();
+	private volatile long handled;
+
+	/**
+	 * Whether the worker is waiting for elements
+	 */
+	private volatile boolean idle;
+
+	/**
+	 * Whether the worker should stop once the queue is empty
+	 */
+	private volatile boolean stopping;
+
+	/**
+	 * Initialize and start a worker
+	 *
+	 * @param name
+	 *            The name of the thread
+	 * @param capacity
+	 *            The most elements that can wait to be handled
+	 * @param handler
+	 *            Handles each element
+	 */
+	public BackgroundWorker(String name, int capacity, Consumer<T> handler) {
+		this.queue = new BoundedQueue<T>(capacity);
+		this.handler = handler;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, name);
+		this.thread.setDaemon(true);
+		this.thread.setPriority(Thread.MIN_PRIORITY);
+		this.thread.start();
+	}
+
+	/**
+	 * Hand an element to the worker
+	 *
+	 * @param element
+	 *            The element
+	 * @return False if the queue was full and the element was dropped
+	 */
+	public boolean offer(T element) {
+		if (!queue.offer(element)) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		offered.incrementAndGet();
+		if (idle) {
+			LockSupport.unpark(thread);
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return The number of elements dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Wait for the worker to handle everything already handed over
+	 *
+	 * @param millis
+	 *            The longest to wait
+	 * @return Whether everything was handled in time
+	 */
+	public boolean drain(long millis) {
+		long deadline = System.nanoTime() + millis * 1000000L;
+		long target = offered.get();
+		while (handled - target < 0) {
+			if (System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(this, 1000000L);
+		}
+		return true;
+	}
+
+	/**
+	 * Handle everything already handed over, then stop the worker
+	 *
+	 * @param millis
+	 *            The longest to wait for the worker
+	 */
+	public void stop(long millis) {
+		stopping = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Handle elements until stopped
+	 */
+	private void work() {
+		while (true) {
+			T element = queue.poll();
+			if (element == null) {
+				if (stopping) {
+					return;
+				}
+				idle = true;
+				// Check again, in case an element came in before idle was set
+				element = queue.poll();
+				if (element == null) {
+					LockSupport.parkNanos(this, 10000000L);
+				}
+				idle = false;
+				if (element == null) {
+					continue;
+				}
+			}
+
+			try {
+				handler.accept(element);
+			} catch (RuntimeException e) {
+				// Logging it could come straight back here
+				e.printStackTrace();
+			}
+			// Only this thread writes it
+			handled++;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package ca.team2994.frc.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size queue that any number of threads can offer to and poll from
+ * without locking or allocating. Each slot has a sequence number that says
+ * whether it is ready to be written or read in the current lap around the
+ * ring, so a thread claims a slot with a single compare-and-set (Dmitry
+ * Vyukov's bounded queue). A full queue refuses new elements instead of
+ * blocking, so the control thread never waits on a slow consumer.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ * @param <T>
+ *            The type of the elements
+ */
+public class BoundedQueue<T> {
+
+	/**
+	 * The elements
+	 */
+	private final AtomicReferenceArray<T> elements;
+
+	/**
+	 * The sequence number of each slot
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * The capacity less one, to wrap positions into slots
+	 */
+	private final int mask;
+
+	/**
+	 * The next position to write and to read
+	 */
+	private final AtomicLong tail = new AtomicLong(), head = new AtomicLong();
+
+	/**
+	 * Initialize a queue
+	 *
+	 * @param capacity
+	 *            The most elements it can hold, rounded up to a power of two
+	 */
+	public BoundedQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.elements = new AtomicReferenceArray<T>(size);
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add an element if there is room
+	 *
+	 * @param element
+	 *            The element, which must not be null
+	 * @return False if the queue was full
+	 */
+	public boolean offer(T element) {
+		while (true) {
+			long position = tail.get();
+			int slot = (int) position & mask;
+			long difference = sequences.get(slot) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.lazySet(slot, element);
+					sequences.set(slot, position + 1);
+					return true;
+				}
+			} else if (difference < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Remove the oldest element
+	 *
+	 * @return The element, or null if the queue was empty
+	 */
+	public T poll() {
+		while (true) {
+			long position = head.get();
+			int slot = (int) position & mask;
+			long difference = sequences.get(slot) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					T element = elements.get(slot);
+					elements.lazySet(slot, null);
+					sequences.set(slot, position + mask + 1);
+					return element;
+				}
+			} else if (difference < 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of elements the queue can hold
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
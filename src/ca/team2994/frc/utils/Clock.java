@@ -0,0 +1,44 @@
+package ca.team2994.frc.utils;
+
+/**
+ * A source of time. Control code reads the time through a Clock instead of
+ * {@link System#nanoTime()} so it can be run against a virtual clock.
+ * 
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public interface Clock {
+
+	/**
+	 * The system's monotonic clock
+	 */
+	public static final Clock SYSTEM = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep(long millis) throws InterruptedException {
+			Thread.sleep(millis);
+		}
+	};
+
+	/**
+	 * 
+	 * @return The current time in nanoseconds. Only differences between two
+	 *         values are meaningful.
+	 */
+	public long nanoTime();
+
+	/**
+	 * Wait for some time to pass
+	 * 
+	 * @param millis
+	 *            The time to wait in milliseconds
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting
+	 */
+	public void sleep(long millis) throws InterruptedException;
+}
@@ -127,6 +127,33 @@ public class ConfigFile {
 		}
 	}
 
+	/**
+	 * Gets a property as a double value. Anything that is not a double returns
+	 * the default value.
+	 * 
+	 * @param key
+	 *            The key to get and convert to a Double.
+	 * @param defaultValue
+	 *            The value to return if the value does not exist or cannot be
+	 *            converted.
+	 * @return The value of the key, converted to a Double Object as specified
+	 *         above, or defaultValue if the property did not exist or was not
+	 *         a valid double.
+	 */
+	public Double getPropertyAsDouble(String key, double defaultValue) {
+		try {
+			String s = this.getProperty(key);
+
+			if (s == null) {
+				return defaultValue;
+			}
+
+			return Double.parseDouble(s.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * Gets the property specified by the key argument and splits it with the
 	 * given regular expression. If the value does not exist in the Properties
@@ -0,0 +1,169 @@
+package ca.team2994.frc.utils;
+
+/**
+ * Estimates the rate and acceleration of a sampled signal, such as an encoder
+ * distance or a gyro angle, from its last few timestamped samples. A
+ * quadratic is fit to the window by least squares and differentiated at the
+ * newest sample, so noise is smoothed over the whole window without the lag
+ * of filtering a finite difference, and uneven tick timing is handled by
+ * using the real time of every sample. The window is kept in fixed arrays, so
+ * adding a sample never allocates and it can be called every control tick.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class DerivativeEstimator {
+
+	/**
+	 * The smallest window a quadratic can be fit to
+	 */
+	public static final int MIN_WINDOW = 3;
+
+	/*
+	 * The samples in the window, oldest first from the one after the newest
+	 */
+	private final long[] times;
+	private final double[] values;
+
+	/**
+	 * The number of samples in the window
+	 */
+	private int count;
+
+	/**
+	 * The index of the newest sample
+	 */
+	private int newest = -1;
+
+	/**
+	 * The estimated rate at the newest sample, in units per second
+	 */
+	private double rate;
+
+	/**
+	 * The estimated acceleration at the newest sample, in units per second
+	 * squared
+	 */
+	private double acceleration;
+
+	/**
+	 * Initialize an estimator
+	 *
+	 * @param window
+	 *            The number of samples to fit to, at least {@link #MIN_WINDOW}
+	 */
+	public DerivativeEstimator(int window) {
+		window = Math.max(window, MIN_WINDOW);
+		this.times = new long[window];
+		this.values = new double[window];
+	}
+
+	/**
+	 * Add a sample and update the estimates. A sample at the same time as the
+	 * newest replaces it.
+	 *
+	 * @param time
+	 *            The time of the sample in nanoseconds
+	 * @param value
+	 *            The value of the signal
+	 */
+	public void add(long time, double value) {
+		if (count > 0 && time == times[newest]) {
+			values[newest] = value;
+		} else {
+			newest = (newest + 1) % times.length;
+			times[newest] = time;
+			values[newest] = value;
+			if (count < times.length) {
+				count++;
+			}
+		}
+		fit();
+	}
+
+	/**
+	 * Fit a quadratic to the window, measured from the newest sample so the
+	 * sums stay small, and take its derivatives there
+	 */
+	private void fit() {
+		if (count < 2) {
+			rate = 0;
+			acceleration = 0;
+			return;
+		}
+
+		long t0 = times[newest];
+		double x0 = values[newest];
+		double s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+		double sy = 0, sty = 0, st2y = 0;
+		for (int i = 0; i < count; i++) {
+			double t = (times[i] - t0) / 1.0e9;
+			double y = values[i] - x0;
+			double t2 = t * t;
+			s1 += t;
+			s2 += t2;
+			s3 += t2 * t;
+			s4 += t2 * t2;
+			sy += y;
+			sty += t * y;
+			st2y += t2 * y;
+		}
+
+		if (count == 2) {
+			// Not enough for a curve, so it is the slope between the two
+			rate = sty / s2;
+			acceleration = 0;
+			return;
+		}
+
+		// Solve the normal equations for x = a + b t + c t^2 by Cramer's rule
+		double n = count;
+		double det = n * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2
+				* (s1 * s3 - s2 * s2);
+		if (det == 0) {
+			return;
+		}
+		double b = n * (sty * s4 - s3 * st2y) - sy * (s1 * s4 - s3 * s2) + s2
+				* (s1 * st2y - sty * s2);
+		double c = n * (s2 * st2y - sty * s3) - s1 * (s1 * st2y - sty * s2)
+				+ sy * (s1 * s3 - s2 * s2);
+		rate = b / det;
+		acceleration = 2 * c / det;
+	}
+
+	/**
+	 * Forget every sample, as after the signal jumps
+	 */
+	public void reset() {
+		count = 0;
+		newest = -1;
+		rate = 0;
+		acceleration = 0;
+	}
+
+	/**
+	 *
+	 * @return The estimated rate at the newest sample, in units per second
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 *
+	 * @return The estimated acceleration at the newest sample, in units per
+	 *         second squared
+	 */
+	public double getAcceleration() {
+		return acceleration;
+	}
+
+	/**
+	 *
+	 * @return The number of samples fit to
+	 */
+	public int getWindow() {
+		return times.length;
+	}
+}
@@ -0,0 +1,158 @@
+package ca.team2994.frc.utils;
+
+/**
+ * Shapes one joystick axis before it is mixed into motor outputs: a deadband
+ * around the centre, an expo curve that flattens the low end for finer slow
+ * driving, a scale, and a limit on how fast the result may change. The
+ * deadband, curve and scale depend only on the input, so they are computed
+ * once into a lookup table when the settings are read and each tick only
+ * interpolates between two entries. The slew limit depends on the previous
+ * output, so it is applied after the lookup.
+ *
+ * The settings are read from the "shaping.&lt;axis&gt;." keys:
+ * <ul>
+ * <li>deadband: inputs smaller than this give 0, and the rest of the range is
+ * stretched to start from 0 (default 0)</li>
+ * <li>expo: how much of the cube of the input to blend in, from 0 for a
+ * straight line to 1 for a pure cube (default 0)</li>
+ * <li>scale: the output at full stick (default 1)</li>
+ * <li>slewRate: the most the output may change in a second, or 0 for no
+ * limit (default 0)</li>
+ * </ul>
+ * and the number of table entries from shaping.tableSize. With the defaults
+ * the axis is passed through unchanged.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class InputShaper {
+
+	/**
+	 * The shaped output for evenly spaced inputs from -1 to 1
+	 */
+	private final double[] table;
+
+	/**
+	 * The inputs per table entry, to turn an input into a table position
+	 */
+	private final double stepsPerUnit;
+
+	/**
+	 * The most the output may change in a nanosecond, or 0 for no limit
+	 */
+	private final double slewPerNano;
+
+	/**
+	 * The output of the last call and its time, in nanoseconds
+	 */
+	private double last;
+	private long lastTime;
+
+	/**
+	 * Whether there has been a call since the last reset
+	 */
+	private boolean started;
+
+	/**
+	 * Read the shaping of an axis from a configuration file and build its
+	 * table
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 * @param axis
+	 *            The name of the axis in the keys, such as "move"
+	 */
+	public InputShaper(ConfigFile conf, String axis) {
+		this(conf.getPropertyAsDouble("shaping." + axis + ".deadband", 0.0),
+				conf.getPropertyAsDouble("shaping." + axis + ".expo", 0.0),
+				conf.getPropertyAsDouble("shaping." + axis + ".scale", 1.0),
+				conf.getPropertyAsDouble("shaping." + axis + ".slewRate", 0.0),
+				conf.getPropertyAsInteger("shaping.tableSize", 201));
+	}
+
+	/**
+	 * Initialize a shaper and build its table
+	 *
+	 * @param deadband
+	 *            Inputs smaller than this give 0
+	 * @param expo
+	 *            How much of the cube of the input to blend in, from 0 to 1
+	 * @param scale
+	 *            The output at full stick
+	 * @param slewRate
+	 *            The most the output may change in a second, or 0 for no limit
+	 * @param size
+	 *            The number of table entries; odd, so 0 has its own entry
+	 */
+	public InputShaper(double deadband, double expo, double scale,
+			double slewRate, int size) {
+		deadband = Math.min(Math.max(0, deadband), 0.99);
+		size = Math.max(3, size | 1);
+		this.table = new double[size];
+		this.stepsPerUnit = (size - 1) / 2.0;
+		for (int i = 0; i < size; i++) {
+			table[i] = curve(i / stepsPerUnit - 1.0, deadband, expo) * scale;
+		}
+		this.slewPerNano = Math.max(0, slewRate) / 1.0e9;
+	}
+
+	/**
+	 * The deadband and expo curve of one input
+	 */
+	private static double curve(double x, double deadband, double expo) {
+		double magnitude = Math.abs(x);
+		if (magnitude <= deadband) {
+			return 0;
+		}
+		magnitude = (magnitude - deadband) / (1.0 - deadband);
+		expo = SimLib.limitValue(expo);
+		double shaped = (1.0 - expo) * magnitude + expo * magnitude
+				* magnitude * magnitude;
+		return x < 0 ? -shaped : shaped;
+	}
+
+	/**
+	 * Look up the deadband, curve and scale of an input
+	 *
+	 * @param x
+	 *            The input, from -1 to 1
+	 * @return The shaped value, without the slew limit
+	 */
+	public double lookup(double x) {
+		double position = (SimLib.limitValue(x) + 1.0) * stepsPerUnit;
+		int index = Math.min((int) position, table.length - 2);
+		double fraction = position - index;
+		return table[index] + (table[index + 1] - table[index]) * fraction;
+	}
+
+	/**
+	 * Shape an input, limiting how fast the output changes from the last call
+	 *
+	 * @param x
+	 *            The input, from -1 to 1
+	 * @param now
+	 *            The time of the input, in nanoseconds
+	 * @return The shaped value
+	 */
+	public double shape(double x, long now) {
+		double output = lookup(x);
+		if (slewPerNano > 0) {
+			// The first call after a reset ramps up from a stop
+			double step = started ? slewPerNano * (now - lastTime) : 0;
+			output = last + SimLib.limitValue(output - last, step);
+		}
+		last = output;
+		lastTime = now;
+		started = true;
+		return output;
+	}
+
+	/**
+	 * Forget the last output, so the next call ramps up from a stop
+	 */
+	public void reset() {
+		last = 0;
+		started = false;
+	}
+}
@@ -0,0 +1,224 @@
+package ca.team2994.frc.utils;
+
+/**
+ * A fixed size histogram of durations in microseconds, in the style of
+ * HdrHistogram. Values below 64 have their own bucket; above that every power
+ * of two is split into 32 buckets, so every bucket is within about 3% of the
+ * values in it. Recording never allocates, so it can be called every control
+ * tick. It is meant to be recorded from a single thread; snapshots taken from
+ * other threads may be a few samples out of date.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The largest power of two that has its own buckets, about 18 minutes in
+	 * microseconds. Longer values go in the last bucket.
+	 */
+	private static final int MAX_EXPONENT = 30;
+
+	/**
+	 * The number of buckets
+	 */
+	private static final int BUCKETS = (MAX_EXPONENT - 3) * 32;
+
+	/**
+	 * The number of values in each bucket
+	 */
+	private final long[] counts = new long[BUCKETS];
+
+	/*
+	 * Running totals, in microseconds
+	 */
+	private long count;
+	private long sum;
+	private long max;
+
+	/**
+	 * Record a duration
+	 *
+	 * @param nanos
+	 *            The duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		counts[bucket(micros)]++;
+		count++;
+		sum += micros;
+		if (micros > max) {
+			max = micros;
+		}
+	}
+
+	/**
+	 * Forget all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	/**
+	 *
+	 * @return The number of values recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Copy the histogram so it can be queried while recording continues
+	 *
+	 * @return A copy of the histogram
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(counts.clone(), count, sum, max);
+	}
+
+	/**
+	 * Append the same summary as {@link Snapshot#toString()} without copying
+	 * the histogram or allocating, so call it from the recording thread
+	 *
+	 * @param builder
+	 *            The builder to append to
+	 * @return The builder
+	 */
+	public StringBuilder appendTo(StringBuilder builder) {
+		return describe(builder, counts, count, sum, max);
+	}
+
+	/**
+	 * The smallest bucket value that at least a percentage of values are at
+	 * or below
+	 */
+	static long percentile(long[] counts, long count, long max,
+			double percentile) {
+		long target = (long) Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target && seen > 0) {
+				return Math.min(max, lowestValue(i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Append a one line summary of a histogram
+	 */
+	static StringBuilder describe(StringBuilder builder, long[] counts,
+			long count, long sum, long max) {
+		return builder.append("n=").append(count).append(" mean=")
+				.append(count == 0 ? 0 : Math.round((double) sum / count))
+				.append("us p50=").append(percentile(counts, count, max, 50))
+				.append("us p99=").append(percentile(counts, count, max, 99))
+				.append("us max=").append(max).append("us");
+	}
+
+	/**
+	 * The bucket a value goes in
+	 */
+	static int bucket(long micros) {
+		if (micros < 64) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int shift = exponent - 5;
+		return shift * 32 + (int) (micros >>> shift);
+	}
+
+	/**
+	 * The smallest value that goes in a bucket
+	 */
+	static long lowestValue(int bucket) {
+		if (bucket < 64) {
+			return bucket;
+		}
+		int shift = bucket / 32 - 1;
+		return (long) (bucket % 32 + 32) << shift;
+	}
+
+	/**
+	 * A copy of a histogram at one point in time
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 *
+		 * @return The number of values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 *
+		 * @return The mean in microseconds
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 *
+		 * @return The largest value in microseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 *
+		 * @param percentile
+		 *            The percentile, from 0 to 100
+		 * @return The smallest bucket value that at least that percentage of
+		 *         values are at or below, in microseconds
+		 */
+		public long getPercentile(double percentile) {
+			return percentile(counts, count, max, percentile);
+		}
+
+		/**
+		 *
+		 * @param micros
+		 *            A duration in microseconds
+		 * @return The number of values above the bucket the duration is in
+		 */
+		public long countAbove(long micros) {
+			long above = 0;
+			for (int i = bucket(micros) + 1; i < counts.length; i++) {
+				above += counts[i];
+			}
+			return above;
+		}
+
+		@Override
+		public String toString() {
+			return describe(new StringBuilder(), counts, count, sum, max)
+					.toString();
+		}
+	}
+}
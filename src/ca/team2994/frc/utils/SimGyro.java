@@ -40,6 +40,13 @@ public class SimGyro extends Gyro {
         return this.initialAngle - (super.getAngle() - this.resetAdjustment);
     }
     
+    /**
+     * The angle of the underlying gyro, ignoring resets and the initial angle.
+     */
+    public double getRawAngle() {
+        return super.getAngle();
+    }
+    
     public double getAbsoluteAngle() {
         double val = this.getAngle() % 360;
         
@@ -48,6 +48,36 @@ public class SimLib {
         return SimLib.limitValue(y - x);
     }
     
+    /**
+     * The left motor output RobotDrive.arcadeDrive(move, rotate) sets, with
+     * squared inputs.
+     */
+    public static double arcadeLeft(double move, double rotate) {
+        move = SimLib.squareMaintainSign(SimLib.limitValue(move));
+        rotate = SimLib.squareMaintainSign(SimLib.limitValue(rotate));
+        
+        if(move > 0.0) {
+            return rotate > 0.0 ? move - rotate : Math.max(move, -rotate);
+        } else {
+            return rotate > 0.0 ? -Math.max(-move, rotate) : move - rotate;
+        }
+    }
+    
+    /**
+     * The right motor output RobotDrive.arcadeDrive(move, rotate) sets, with
+     * squared inputs.
+     */
+    public static double arcadeRight(double move, double rotate) {
+        move = SimLib.squareMaintainSign(SimLib.limitValue(move));
+        rotate = SimLib.squareMaintainSign(SimLib.limitValue(rotate));
+        
+        if(move > 0.0) {
+            return rotate > 0.0 ? Math.max(move, rotate) : move + rotate;
+        } else {
+            return rotate > 0.0 ? move + rotate : -Math.max(-move, -rotate);
+        }
+    }
+    
     
     
 }
@@ -15,6 +15,7 @@ public class SimPID {
     private double errorIncrement;
     private double errorEpsilon;
     private double doneRange;
+    private double doneRate;
     private boolean firstCycle;
     private double maxOutput;
     private int minCycleCount;
@@ -54,6 +55,11 @@ public class SimPID {
         this.doneRange = range;
     }
     
+    //the fastest the value may be changing to count as done, 0 to not check
+    public void setDoneRate(double rate) {
+        this.doneRate = rate;
+    }
+    
     public void setErrorEpsilon(double eps) {
         this.errorEpsilon = eps;
     }
@@ -148,10 +154,17 @@ public class SimPID {
     }
     
     public boolean isDone() {
+        return isDone(0.0);
+    }
+    
+    //rate is how fast the value is changing, so passing through the target
+    //doesn't count as settling on it
+    public boolean isDone(double rate) {
         double currError = Math.abs(this.desiredVal - this.previousVal);
         
-        //close enough to target
-        if(currError <= this.doneRange) {
+        //close enough to target and slow enough to stay there
+        if(currError <= this.doneRange
+                && (this.doneRate <= 0.0 || Math.abs(rate) <= this.doneRate)) {
             this.cycleCount++;
         }
         //not close enough to target
@@ -0,0 +1,230 @@
+package ca.team2994.frc.utils;
+
+import static java.util.logging.Level.INFO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Times the phases of robot startup and runs the ones that don't depend on
+ * each other at the same time. A phase either runs on the calling thread with
+ * {@link #time(String, Callable)}, or on a worker thread once the phases it
+ * depends on are done with {@link #start(String, Callable, CompletableFuture...)}.
+ * {@link #ready()} waits for every phase and logs when each one started and
+ * how long it took.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class StartupTracker {
+
+	/**
+	 * When and where one phase ran
+	 */
+	private static class Phase {
+
+		final String name;
+		final String thread;
+		final long start;
+		final long end;
+
+		Phase(String name, String thread, long start, long end) {
+			this.name = name;
+			this.thread = thread;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Orders phases by when they started
+	 */
+	private static final Comparator<Phase> BY_START = new Comparator<Phase>() {
+
+		@Override
+		public int compare(Phase o1, Phase o2) {
+			return Long.compare(o1.start, o2.start);
+		}
+
+	};
+
+	/**
+	 * When the tracker was created, in nanoseconds
+	 */
+	private final long created = System.nanoTime();
+
+	/**
+	 * The phases that have finished
+	 */
+	private final List<Phase> phases = new ArrayList<Phase>();
+
+	/**
+	 * The phases started on worker threads
+	 */
+	private final List<CompletableFuture<?>> started = new ArrayList<CompletableFuture<?>>();
+
+	/**
+	 * The worker threads
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Initialize a tracker
+	 *
+	 * @param threads
+	 *            The number of phases that can run on worker threads at once
+	 */
+	public StartupTracker(int threads) {
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Startup-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Run a phase on the calling thread
+	 *
+	 * @param name
+	 *            The name of the phase
+	 * @param task
+	 *            The phase
+	 * @return The result of the phase
+	 * @throws CompletionException
+	 *             If the phase throws, after it has been logged
+	 */
+	public <T> T time(String name, Callable<T> task) {
+		long start = System.nanoTime();
+		try {
+			return task.call();
+		} catch (Exception e) {
+			Utils.logException(Utils.ROBOT_LOGGER, e);
+			throw new CompletionException(name + " failed", e);
+		} finally {
+			long end = System.nanoTime();
+			synchronized (phases) {
+				phases.add(new Phase(name, Thread.currentThread().getName(),
+						start, end));
+			}
+		}
+	}
+
+	/**
+	 * Run a phase on a worker thread once the phases it depends on are done.
+	 * If one of them failed, this phase does not run and fails too.
+	 *
+	 * @param name
+	 *            The name of the phase
+	 * @param task
+	 *            The phase
+	 * @param after
+	 *            The phases it depends on
+	 * @return The result of the phase, when it is done
+	 */
+	public <T> CompletableFuture<T> start(final String name,
+			final Callable<T> task, CompletableFuture<?>... after) {
+		CompletableFuture<T> phase = CompletableFuture.allOf(after)
+				.thenApplyAsync(new Function<Void, T>() {
+					@Override
+					public T apply(Void ignored) {
+						return time(name, task);
+					}
+				}, executor);
+		synchronized (started) {
+			started.add(phase);
+		}
+		return phase;
+	}
+
+	/**
+	 * Run a phase with no result on a worker thread once the phases it
+	 * depends on are done
+	 *
+	 * @param name
+	 *            The name of the phase
+	 * @param task
+	 *            The phase
+	 * @param after
+	 *            The phases it depends on
+	 * @return A future that is done when the phase is
+	 */
+	public CompletableFuture<Void> start(String name, final Runnable task,
+			CompletableFuture<?>... after) {
+		return start(name, new Callable<Void>() {
+			@Override
+			public Void call() {
+				task.run();
+				return null;
+			}
+		}, after);
+	}
+
+	/**
+	 * Wait for every phase, log how long each took and stop the worker
+	 * threads. A phase that failed has already been logged, so it is not
+	 * thrown again here.
+	 *
+	 * @return The time from creating the tracker to ready, in milliseconds
+	 */
+	public long ready() {
+		CompletableFuture<?>[] all;
+		synchronized (started) {
+			all = started.toArray(new CompletableFuture<?>[started.size()]);
+		}
+		for (CompletableFuture<?> phase : all) {
+			try {
+				phase.join();
+			} catch (CompletionException e) {
+				// Logged by the phase that failed
+			}
+		}
+		executor.shutdown();
+
+		long total = (System.nanoTime() - created) / 1000000;
+		Utils.ROBOT_LOGGER.log(INFO, "Ready after " + total + "ms: "
+				+ summary());
+		return total;
+	}
+
+	/**
+	 *
+	 * @return Every finished phase with when it started and ended relative to
+	 *         the tracker, in milliseconds, and the thread it ran on
+	 */
+	public String summary() {
+		List<Phase> sorted;
+		synchronized (phases) {
+			sorted = new ArrayList<Phase>(phases);
+		}
+		Collections.sort(sorted, BY_START);
+
+		StringBuilder builder = new StringBuilder();
+		for (Phase phase : sorted) {
+			if (builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append(phase.name).append(' ')
+					.append((phase.start - created) / 1000000).append('-')
+					.append((phase.end - created) / 1000000).append("ms [")
+					.append(phase.thread).append(']');
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,184 @@
+package ca.team2994.frc.utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reference client for {@link TelemetryServer}: subscribes to the robot's
+ * telemetry and writes every sample as a line of CSV, with a header line of
+ * the channel names. Run it with:
+ *
+ * <pre>
+ * java ca.team2994.frc.utils.TelemetryClient robot-host [port] [out.csv]
+ * </pre>
+ *
+ * The CSV goes to standard output if no file is given. It runs until it is
+ * killed, and reports packets lost on the way and samples the robot dropped
+ * on standard error.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class TelemetryClient {
+
+	/**
+	 * How often the subscription is renewed, in milliseconds
+	 */
+	private static final int RENEW_PERIOD = 1000;
+
+	/**
+	 * The channel names, or null before the first schema
+	 */
+	private String[] channels;
+
+	/**
+	 * The number of the next data packet expected, or -1 before the first
+	 */
+	private long expected = -1;
+
+	/**
+	 * The number of samples the robot had dropped at the last packet
+	 */
+	private int dropped;
+
+	/**
+	 * Where the CSV is written
+	 */
+	private final PrintStream csv;
+
+	/**
+	 * Initialize a client
+	 *
+	 * @param csv
+	 *            Where to write the CSV
+	 */
+	public TelemetryClient(PrintStream csv) {
+		this.csv = csv;
+	}
+
+	/**
+	 * Subscribe to a server and write its stream as CSV until killed
+	 *
+	 * @param args
+	 *            The robot's host, optionally followed by the port and the CSV
+	 *            file
+	 * @throws IOException
+	 *             If the socket or the CSV file cannot be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: TelemetryClient <robot host> [port] "
+					+ "[out.csv]");
+			System.exit(1);
+		}
+		InetSocketAddress server = new InetSocketAddress(args[0],
+				args.length > 1 ? Integer.parseInt(args[1])
+						: TelemetryServer.DEFAULT_PORT);
+		PrintStream csv = args.length > 2 ? new PrintStream(args[2], "UTF-8")
+				: System.out;
+
+		TelemetryClient client = new TelemetryClient(csv);
+		try (DatagramSocket socket = new DatagramSocket()) {
+			socket.setSoTimeout(RENEW_PERIOD);
+			byte[] subscribe = ByteBuffer.allocate(4)
+					.putInt(TelemetryServer.MAGIC).array();
+			DatagramPacket request = new DatagramPacket(subscribe,
+					subscribe.length, server);
+			DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+			long lastRenew = 0;
+			while (true) {
+				if (System.currentTimeMillis() - lastRenew >= RENEW_PERIOD) {
+					socket.send(request);
+					lastRenew = System.currentTimeMillis();
+				}
+				try {
+					packet.setLength(65536);
+					socket.receive(packet);
+				} catch (SocketTimeoutException e) {
+					continue;
+				}
+				client.decode(ByteBuffer.wrap(packet.getData(), 0,
+						packet.getLength()));
+			}
+		}
+	}
+
+	/**
+	 * Decode one packet and write any samples in it
+	 *
+	 * @param in
+	 *            The packet
+	 * @return Whether the packet was a telemetry packet
+	 */
+	public boolean decode(ByteBuffer in) {
+		if (in.remaining() < 7 || in.getInt() != TelemetryServer.MAGIC
+				|| in.getShort() != TelemetryServer.VERSION) {
+			return false;
+		}
+		byte type = in.get();
+		if (type == TelemetryServer.SCHEMA) {
+			readSchema(in);
+		} else if (type == TelemetryServer.DATA && channels != null) {
+			readData(in);
+		}
+		return true;
+	}
+
+	/**
+	 * Read the channel names and write the CSV header if they are new
+	 */
+	private void readSchema(ByteBuffer in) {
+		String[] names = new String[in.getShort()];
+		for (int i = 0; i < names.length; i++) {
+			byte[] name = new byte[in.getShort()];
+			in.get(name);
+			names[i] = new String(name, StandardCharsets.UTF_8);
+		}
+		if (channels != null && Arrays.equals(channels, names)) {
+			return;
+		}
+		channels = names;
+		StringBuilder header = new StringBuilder("time");
+		for (String name : names) {
+			header.append(',').append(name);
+		}
+		csv.println(header);
+	}
+
+	/**
+	 * Write the samples of a data packet, reporting any gap before it
+	 */
+	private void readData(ByteBuffer in) {
+		int sequence = in.getInt();
+		int droppedNow = in.getInt();
+		int count = in.getShort();
+		if (expected >= 0 && sequence != expected) {
+			System.err.println("Lost " + (sequence - expected) + " packets");
+		}
+		expected = sequence + 1L;
+		if (droppedNow != dropped) {
+			System.err.println("Robot dropped " + (droppedNow - dropped)
+					+ " samples");
+			dropped = droppedNow;
+		}
+
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			line.setLength(0);
+			line.append((in.getInt() & 0xFFFFFFFFL) / 1.0e6);
+			for (int c = 0; c < channels.length; c++) {
+				line.append(',').append(in.getFloat());
+			}
+			csv.println(line);
+		}
+		csv.flush();
+	}
+}
@@ -0,0 +1,385 @@
+package ca.team2994.frc.utils;
+
+import static java.util.logging.Level.INFO;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a fixed set of channels over UDP for live plotting. The control
+ * loop publishes one sample of every channel per tick into a ring buffer,
+ * and a daemon thread sends the buffered samples in batches to whoever last
+ * subscribed, so nothing on the control loop waits for the network.
+ * Publishing never blocks or allocates; if the sender has fallen so far
+ * behind that the buffer is full, the sample is dropped and counted.
+ *
+ * A client subscribes by sending any datagram starting with {@link #MAGIC}
+ * to the server's port, and must keep doing so at least every
+ * telemetry.timeout seconds to keep the stream coming. Every packet starts
+ * with the magic number, the version and a type byte:
+ * <ul>
+ * <li>{@link #SCHEMA}: the number of channels as a short, then the name of
+ * each as a short length and its UTF-8 bytes, sent when a client subscribes
+ * and every second after</li>
+ * <li>{@link #DATA}: the packet number as an int, the number of samples
+ * dropped so far as an int, the number of samples as a short, then each
+ * sample as its time in microseconds since the first (an unsigned int) and every
+ * channel as a float</li>
+ * </ul>
+ * {@link TelemetryClient} decodes the stream to CSV.
+ *
+ * @author <a href="https://github.com/eandr127">eandr127</a>
+ * @author <a href="https://github.com/JackMc">JackMc</a>
+ *
+ */
+public class TelemetryServer {
+
+	/**
+	 * The magic number at the start of every packet ("TLMY")
+	 */
+	public static final int MAGIC = 0x544C4D59;
+
+	/**
+	 * The version of the packet format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * Packet type: the channel names
+	 */
+	public static final byte SCHEMA = 0;
+
+	/**
+	 * Packet type: a batch of samples
+	 */
+	public static final byte DATA = 1;
+
+	/**
+	 * The size of the header of a data packet in bytes
+	 */
+	static final int DATA_HEADER_SIZE = 4 + 2 + 1 + 4 + 4 + 2;
+
+	/**
+	 * The port the server listens on when none is configured. FRC leaves
+	 * 5800 to 5810 open for teams.
+	 */
+	public static final int DEFAULT_PORT = 5805;
+
+	/**
+	 * The names of the channels
+	 */
+	private final String[] channels;
+
+	/**
+	 * The most samples sent in one packet
+	 */
+	private final int batch;
+
+	/**
+	 * How long the sender waits for more samples before sending what it has,
+	 * in milliseconds
+	 */
+	private final int period;
+
+	/**
+	 * How long a subscription lasts without being renewed, in nanoseconds
+	 */
+	private final long timeout;
+
+	/*
+	 * The samples waiting to be sent. Slot i holds the time in times[i] and
+	 * the channels from values[i * channels.length].
+	 */
+	private final int[] times;
+	private final float[] values;
+	private final int mask;
+
+	/**
+	 * The number of samples published, and the number taken by the sender
+	 */
+	private final AtomicLong written = new AtomicLong(), read = new AtomicLong();
+
+	/**
+	 * The number of samples dropped because the buffer was full
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * The time of the first sample in nanoseconds
+	 */
+	private long start;
+	private boolean started;
+
+	/**
+	 * The socket the server listens and sends on
+	 */
+	private final DatagramSocket socket;
+
+	/**
+	 * The thread sending the samples
+	 */
+	private final Thread thread;
+
+	/**
+	 * Whether the sender should stop
+	 */
+	private volatile boolean stopping;
+
+	/*
+	 * Owned by the sender thread
+	 */
+	private SocketAddress subscriber;
+	private long lastHeard;
+	private long lastSchema;
+	private int sequence;
+	private final byte[] buffer;
+	private final ByteBuffer out;
+	private final DatagramPacket packet;
+
+	/**
+	 * Initialize a server from the "telemetry." keys of a configuration file
+	 * and start its sender
+	 *
+	 * @param conf
+	 *            The configuration file to read the settings from
+	 * @param channels
+	 *            The names of the channels every sample holds
+	 * @throws IOException
+	 *             If the port cannot be opened
+	 */
+	public TelemetryServer(ConfigFile conf, String... channels)
+			throws IOException {
+		this(conf.getPropertyAsInteger("telemetry.port", DEFAULT_PORT), conf
+				.getPropertyAsInteger("telemetry.batch", 25), conf
+				.getPropertyAsInteger("telemetry.periodMs", 20), conf
+				.getPropertyAsInteger("telemetry.buffer", 1024), conf
+				.getPropertyAsDouble("telemetry.timeout", 5.0), channels);
+	}
+
+	/**
+	 * Initialize a server and start its sender
+	 *
+	 * @param port
+	 *            The UDP port to listen on, or 0 for any free port
+	 * @param batch
+	 *            The most samples to send in one packet
+	 * @param period
+	 *            How long to wait for more samples before sending, in
+	 *            milliseconds
+	 * @param capacity
+	 *            The most samples that can wait to be sent
+	 * @param timeout
+	 *            How long a subscription lasts without being renewed, in
+	 *            seconds
+	 * @param channels
+	 *            The names of the channels every sample holds
+	 * @throws IOException
+	 *             If the port cannot be opened
+	 */
+	public TelemetryServer(int port, int batch, int period, int capacity,
+			double timeout, String... channels) throws IOException {
+		this.channels = channels.clone();
+		this.batch = Math.max(1, batch);
+		this.period = Math.max(1, period);
+		this.timeout = (long) (timeout * 1.0e9);
+
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.times = new int[size];
+		this.values = new float[size * channels.length];
+		this.mask = size - 1;
+
+		this.buffer = new byte[Math.max(DATA_HEADER_SIZE + this.batch
+				* (4 + 4 * channels.length), schemaSize())];
+		this.out = ByteBuffer.wrap(buffer);
+		this.packet = new DatagramPacket(buffer, buffer.length);
+
+		this.socket = new DatagramSocket(port);
+		this.socket.setSoTimeout(this.period);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "telemetry");
+		this.thread.setDaemon(true);
+		this.thread.setPriority(Thread.MIN_PRIORITY);
+		this.thread.start();
+	}
+
+	/**
+	 * Publish one sample. Call from one thread only.
+	 *
+	 * @param time
+	 *            The time of the sample in nanoseconds
+	 * @param sample
+	 *            The value of every channel, in the order they were named
+	 * @return False if the buffer was full and the sample was dropped
+	 */
+	public boolean publish(long time, double[] sample) {
+		long w = written.get();
+		if (w - read.get() > mask) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		if (!started) {
+			start = time;
+			started = true;
+		}
+
+		int slot = (int) (w & mask);
+		times[slot] = (int) ((time - start) / 1000);
+		int base = slot * channels.length;
+		for (int i = 0; i < channels.length; i++) {
+			values[base + i] = (float) sample[i];
+		}
+		written.lazySet(w + 1);
+		return true;
+	}
+
+	/**
+	 *
+	 * @return The number of samples dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 *
+	 * @return The port the server listens on
+	 */
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * Stop the sender and close the socket
+	 *
+	 * @param millis
+	 *            The longest to wait for the sender
+	 */
+	public void stop(long millis) {
+		stopping = true;
+		try {
+			thread.join(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		socket.close();
+	}
+
+	/**
+	 * Listen for subscriptions and send samples until stopped
+	 */
+	private void work() {
+		DatagramPacket request = new DatagramPacket(new byte[64], 64);
+		while (!stopping) {
+			try {
+				request.setLength(64);
+				socket.receive(request);
+				if (request.getLength() >= 4
+						&& ByteBuffer.wrap(request.getData()).getInt() == MAGIC) {
+					if (subscriber == null) {
+						Utils.ROBOT_LOGGER.log(INFO, "Telemetry streaming to "
+								+ request.getSocketAddress());
+					}
+					subscriber = request.getSocketAddress();
+					lastHeard = System.nanoTime();
+				}
+			} catch (SocketTimeoutException e) {
+				// Time to send what has been published
+			} catch (IOException e) {
+				if (!stopping) {
+					Utils.logException(Utils.ROBOT_LOGGER, e);
+				}
+			}
+
+			long now = System.nanoTime();
+			if (subscriber != null && now - lastHeard > timeout) {
+				subscriber = null;
+			}
+			try {
+				if (subscriber != null && now - lastSchema > 1000000000L) {
+					sendSchema();
+					lastSchema = now;
+				}
+				sendSamples();
+			} catch (IOException e) {
+				// The client went away; keep draining until it comes back
+				subscriber = null;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return The size of a schema packet in bytes
+	 */
+	private int schemaSize() {
+		int size = 4 + 2 + 1 + 2;
+		for (String channel : channels) {
+			size += 2 + channel.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Send the channel names to the subscriber
+	 */
+	private void sendSchema() throws IOException {
+		out.clear();
+		out.putInt(MAGIC).putShort(VERSION).put(SCHEMA);
+		out.putShort((short) channels.length);
+		for (String channel : channels) {
+			byte[] name = channel.getBytes(StandardCharsets.UTF_8);
+			out.putShort((short) name.length).put(name);
+		}
+		send();
+	}
+
+	/**
+	 * Send everything published so far in batches, or drop it if nobody is
+	 * listening
+	 */
+	private void sendSamples() throws IOException {
+		long r = read.get();
+		long w = written.get();
+		while (r < w) {
+			int count = (int) Math.min(batch, w - r);
+			if (subscriber != null) {
+				out.clear();
+				out.putInt(MAGIC).putShort(VERSION).put(DATA);
+				out.putInt(sequence++).putInt((int) dropped.get());
+				out.putShort((short) count);
+				for (int i = 0; i < count; i++) {
+					int slot = (int) ((r + i) & mask);
+					out.putInt(times[slot]);
+					int base = slot * channels.length;
+					for (int c = 0; c < channels.length; c++) {
+						out.putFloat(values[base + c]);
+					}
+				}
+			}
+			r += count;
+			read.lazySet(r);
+			if (subscriber != null) {
+				send();
+			}
+		}
+	}
+
+	/**
+	 * Send the packet built in the buffer to the subscriber
+	 */
+	private void send() throws IOException {
+		packet.setData(buffer, 0, out.position());
+		packet.setSocketAddress(subscriber);
+		socket.send(packet);
+	}
+}
@@ -5,9 +5,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.util.function.Consumer;
+import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
@@ -45,11 +46,61 @@ public class Utils {
 	 */
 	public static final String CALIBRATION_OUTPUT_FILE_LOC = "/home/lvuser/calibration.txt";
 	
+	/**
+	 * The location of the binary calibration store
+	 */
+	public static final String CALIBRATION_STORE_FILE_LOC = "/home/lvuser/calibration.bin";
+	
+	/**
+	 * The location of the gyro PID constants file
+	 */
+	public static final String GYRO_PID_FILE_LOC = "/home/lvuser/gyroPID.txt";
+	
+	/**
+	 * The location of the learned drivetrain trim file
+	 */
+	public static final String TRIM_FILE_LOC = "/home/lvuser/trim.txt";
+	
+	/**
+	 * The location of the drivetrain feedforward constants file
+	 */
+	public static final String FEEDFORWARD_FILE_LOC = "/home/lvuser/feedforward.txt";
+	
+	/**
+	 * The location of the encoder PID constants file
+	 */
+	public static final String ENCODER_PID_FILE_LOC = "/home/lvuser/encoderPID.txt";
+	
 	/**
 	 * Location of Autonomous output file
 	 */
 	public static final String AUTONOMOUS_OUTPUT_FILE_LOC = "/home/lvuser/auto.log";
 	
+	/**
+	 * Location of the directory of autonomous routines to choose from
+	 */
+	public static final String ROUTINE_DIR_LOC = "/home/lvuser/routines";
+	
+	/**
+	 * Location of the continuously recorded path file
+	 */
+	public static final String PATH_OUTPUT_FILE_LOC = "/home/lvuser/auto.path";
+	
+	/**
+	 * Location of the recorded tele-op motor outputs
+	 */
+	public static final String GHOST_OUTPUT_FILE_LOC = "/home/lvuser/auto.ghost";
+	
+	/**
+	 * Location of the control tick trace
+	 */
+	public static final String TRACE_OUTPUT_FILE_LOC = "/home/lvuser/match.trace";
+	
+	/**
+	 * Location of the recorded tele-op joystick session
+	 */
+	public static final String JOYSTICK_OUTPUT_FILE_LOC = "/home/lvuser/session.joy";
+	
 	/**
 	 * The print stream to write to a file using {@link #writeLineToFile(String, File) writeLineToFile(java.lang.String line java.io.File file)}
 	 */
@@ -77,9 +128,14 @@ public class Utils {
 	 */
 	public static void configureRobotLogger() {
 		try {
-			final FileHandler fh = new FileHandler(ROBOT_LOG_FILENAME, true);
+			FileHandler fh = new FileHandler(ROBOT_LOG_FILENAME, true);
 			fh.setFormatter(new SimpleFormatter());
-			ROBOT_LOGGER.addHandler(fh);
+			// Written from a worker thread, so logging never holds up the
+			// control loops
+			final AsyncLogHandler handler = new AsyncLogHandler(1024, fh,
+					new ConsoleHandler());
+			ROBOT_LOGGER.addHandler(handler);
+			ROBOT_LOGGER.setUseParentHandlers(false);
 			
 			Runtime.getRuntime().addShutdownHook(new Thread()
 			{
@@ -87,8 +143,7 @@ public class Utils {
 			    public void run()
 			    {
 			    	Utils.ROBOT_LOGGER.info("Closing logger");
-			    	fh.flush();
-			    	fh.close();
+			    	handler.close();
 			    }
 			});
 			
@@ -176,30 +231,142 @@ public class Utils {
 	 * @param e The exception to log
 	 */
 	public static void logException(Logger log, Exception e) {
-		StringWriter errors = new StringWriter();
-		e.printStackTrace(new PrintWriter(errors));
-		String exception = errors.toString();
-		
-		log.severe(exception);
+		// The handler renders the stack trace, on its own thread
+		log.log(Level.SEVERE, e.toString(), e);
 	}
 
 	/**
-	 * 
-	 * @param values
+	 * A line waiting to be written to the autonomous output file
+	 */
+	private static class Line {
+		long time;
+		String actionType;
+		double value;
+		String[] values;
+	}
+	
+	/**
+	 * Writes the lines on a worker thread, so the control loops never wait on
+	 * the file system. The lines are reused, so adding one allocates nothing.
+	 */
+	private static class LineWriter {
+		
+		/**
+		 * Lines free to be filled in
+		 */
+		static final BoundedQueue<Line> FREE = new BoundedQueue<Line>(16);
+		
+		/**
+		 * Writes the lines handed to it
+		 */
+		static final BackgroundWorker<Line> WORKER = new BackgroundWorker<Line>(
+				"Waypoint writer", FREE.capacity(), new Consumer<Line>() {
+					@Override
+					public void accept(Line line) {
+						writeLine(line);
+						FREE.offer(line);
+					}
+				});
+		
+		static {
+			for(int i = 0; i < FREE.capacity(); i++) {
+				FREE.offer(new Line());
+			}
+		}
+		
+		/**
+		 * Hand a line to the worker, or write it here if the worker has
+		 * fallen so far behind that there is no free line
+		 */
+		static void add(long time, String actionType, double value, String[] values) {
+			Line line = FREE.poll();
+			boolean queued = line != null;
+			if(!queued) {
+				line = new Line();
+			}
+			line.time = time;
+			line.actionType = actionType;
+			line.value = value;
+			line.values = values;
+			if(!queued || !WORKER.offer(line)) {
+				writeLine(line);
+			}
+		}
+	}
+	
+	/**
+	 * Reused by the writer to put together each line
+	 */
+	private static final StringBuilder LINE = new StringBuilder(64);
+	
+	/**
+	 * Reused by the writer to hold the bytes of the line
+	 */
+	private static byte[] lineBytes = new byte[64];
+	
+	/**
+	 * Writes values to the autonomous output file as one comma separated line
+	 * @param values The values to write
 	 */
 	public static void addLine(String[] values) {
-		boolean isFirst = true;
-		for(String d : values) {
-			
-			if(!isFirst) {
-				writeStringToFile(", ", new File(AUTONOMOUS_OUTPUT_FILE_LOC));
+		LineWriter.add(0, null, 0, values);
+	}
+	
+	/**
+	 * Writes one waypoint to the autonomous output file from a worker thread,
+	 * without allocating
+	 * @param time The time since the start of autonomous, in milliseconds
+	 * @param actionType The type of the waypoint
+	 * @param value The distance or angle of the waypoint
+	 */
+	public static void addLine(long time, String actionType, double value) {
+		LineWriter.add(time, actionType, value, null);
+	}
+	
+	/**
+	 * Wait for the lines already added to be written, then flush the
+	 * autonomous output file
+	 */
+	public static void flushLines() {
+		LineWriter.WORKER.drain(1000);
+		synchronized(Utils.class) {
+			if(stream != null) {
+				stream.flush();
 			}
-			else {
-				isFirst = false;
+		}
+	}
+	
+	/**
+	 * Writes a line to the autonomous output file. The line is ASCII, so its
+	 * characters are copied straight into bytes.
+	 * @param line The line to write
+	 */
+	private static synchronized void writeLine(Line line) {
+		LINE.setLength(0);
+		if(line.values != null) {
+			for(int i = 0; i < line.values.length; i++) {
+				if(i > 0) {
+					LINE.append(", ");
+				}
+				LINE.append(line.values[i]);
 			}
-			
-			writeStringToFile("" + d, new File(AUTONOMOUS_OUTPUT_FILE_LOC));
 		}
-		writeStringToFile("\n", new File(AUTONOMOUS_OUTPUT_FILE_LOC));
+		else {
+			LINE.append(line.time).append(", ").append(line.actionType)
+					.append(", ").append(line.value);
+		}
+		LINE.append('\n');
+		
+		if(stream == null && !writeStringToFile("", AUTONOMOUS_OUTPUT_FILE)) {
+			return;
+		}
+		int length = LINE.length();
+		if(lineBytes.length < length) {
+			lineBytes = new byte[length * 2];
+		}
+		for(int i = 0; i < length; i++) {
+			lineBytes[i] = (byte) LINE.charAt(i);
+		}
+		stream.write(lineBytes, 0, length);
 	}
 }